@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the file snapshots of a task property held in a {@link java.util.LinkedHashMap} with {@link CompactFileSnapshotMap}.
+ *
+ * <p>The build benchmarks create the snapshots the same way as they are read from the task history. Apart from the normalized snapshots,
+ * which only the {@code LinkedHashMap} retains, everything they allocate is retained, so running with {@code -prof gc} and comparing
+ * {@code gc.alloc.rate.norm} gives the heap footprint of each representation (an upper bound for the compact one).</p>
+ */
+@State(Scope.Benchmark)
+public class FileSnapshotMapBenchmark {
+    @Param({"100", "10000"})
+    int fileCount;
+
+    List<String> paths;
+    List<FileContentSnapshot> contents;
+    int rootLength;
+    Map<String, NormalizedFileSnapshot> linkedHashMap;
+    Map<String, NormalizedFileSnapshot> compactMap;
+
+    @Setup
+    public void prepare() {
+        paths = Lists.newArrayListWithCapacity(fileCount);
+        contents = Lists.newArrayListWithCapacity(fileCount);
+        String root = "/home/user/project/build/classes/java/main/";
+        rootLength = root.length();
+        for (int i = 0; i < fileCount; i++) {
+            paths.add(root + "org/gradle/package" + (i % 100) + "/Class" + i + ".class");
+            contents.add(new FileHashSnapshot(HashCode.fromInt(i)));
+        }
+        linkedHashMap = build_linkedHashMap();
+        compactMap = build_compact();
+    }
+
+    @Benchmark
+    public Map<String, NormalizedFileSnapshot> build_linkedHashMap() {
+        Map<String, NormalizedFileSnapshot> map = Maps.newLinkedHashMap();
+        for (int i = 0; i < fileCount; i++) {
+            String path = paths.get(i);
+            map.put(path, new IndexedNormalizedFileSnapshot(path, rootLength, contents.get(i)));
+        }
+        return map;
+    }
+
+    @Benchmark
+    public Map<String, NormalizedFileSnapshot> build_compact() {
+        CompactFileSnapshotMap.Builder builder = CompactFileSnapshotMap.builder(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            String path = paths.get(i);
+            builder.put(path, new IndexedNormalizedFileSnapshot(path, rootLength, contents.get(i)));
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public void lookup_linkedHashMap(Blackhole bh) {
+        for (String path : paths) {
+            bh.consume(linkedHashMap.get(path));
+        }
+    }
+
+    @Benchmark
+    public void lookup_compact(Blackhole bh) {
+        for (String path : paths) {
+            bh.consume(compactMap.get(path));
+        }
+    }
+
+    @Benchmark
+    public void compare_linkedHashMap(Blackhole bh) {
+        compare(linkedHashMap, linkedHashMap, bh);
+    }
+
+    @Benchmark
+    public void compare_compact(Blackhole bh) {
+        compare(compactMap, compactMap, bh);
+    }
+
+    private static void compare(Map<String, NormalizedFileSnapshot> current, Map<String, NormalizedFileSnapshot> previous, Blackhole bh) {
+        bh.consume(TaskFilePropertyCompareStrategy.UNORDERED.iterateContentChangesSince(current, previous, "Input", true).hasNext());
+    }
+}
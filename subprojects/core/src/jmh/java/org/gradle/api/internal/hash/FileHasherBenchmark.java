@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.hash;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.api.internal.file.DefaultFileVisitDetails;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares hashing a tree of files one by one through a stream with memory mapped and parallel hashing.
+ */
+@State(Scope.Benchmark)
+public class FileHasherBenchmark {
+    @Param({"small", "large"})
+    String tree;
+
+    File root;
+    List<FileTreeElement> files;
+    FileHasher streamingHasher;
+    FileHasher memoryMappingHasher;
+    ParallelFileHasher parallelFileHasher;
+
+    @Setup
+    public void prepare() throws IOException {
+        root = File.createTempFile("jmh", "hashing");
+        root.delete();
+        root.mkdirs();
+
+        // 5000 files of 4 KB or 20 files of 8 MB
+        boolean small = tree.equals("small");
+        int fileCount = small ? 5000 : 20;
+        byte[] content = new byte[small ? 4 * 1024 : 8 * 1024 * 1024];
+        Random random = new Random(1);
+        files = Lists.newArrayListWithCapacity(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            File file = new File(root, "dir" + (i % 50) + "/file" + i);
+            file.getParentFile().mkdirs();
+            random.nextBytes(content);
+            FileOutputStream outputStream = new FileOutputStream(file);
+            try {
+                outputStream.write(content);
+            } finally {
+                outputStream.close();
+            }
+            files.add(new DefaultFileVisitDetails(file, null, null));
+        }
+
+        streamingHasher = new DefaultFileHasher(false);
+        memoryMappingHasher = new DefaultFileHasher(true);
+        parallelFileHasher = new ParallelFileHasher(new DefaultExecutorFactory());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        parallelFileHasher.stop();
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Benchmark
+    public void stream_sequential(Blackhole bh) {
+        for (FileTreeElement file : files) {
+            bh.consume(streamingHasher.hash(file));
+        }
+    }
+
+    @Benchmark
+    public void mapped_sequential(Blackhole bh) {
+        for (FileTreeElement file : files) {
+            bh.consume(memoryMappingHasher.hash(file));
+        }
+    }
+
+    @Benchmark
+    public void stream_parallel(Blackhole bh) {
+        bh.consume(parallelFileHasher.hashAll(streamingHasher, files));
+    }
+
+    @Benchmark
+    public void mapped_parallel(Blackhole bh) {
+        bh.consume(parallelFileHasher.hashAll(memoryMappingHasher, files));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares reading and writing random entries of a cache whose blocks are read from the file with one whose blocks are read through memory mapped regions.
+ */
+@State(Scope.Benchmark)
+public class BTreePersistentIndexedCacheBenchmark {
+    private static final int ENTRY_COUNT = 50000;
+
+    @Param({"false", "true"})
+    boolean memoryMapped;
+
+    File cacheFile;
+    BTreePersistentIndexedCache<String, String> cache;
+    String[] keys;
+    String value;
+    Random random;
+
+    @Setup
+    public void prepare() throws IOException {
+        cacheFile = File.createTempFile("jmh", "btree");
+        cacheFile.delete();
+        cache = new BTreePersistentIndexedCache<String, String>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER, (short) 150, 100, memoryMapped);
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            builder.append("some cached value ");
+        }
+        value = builder.toString();
+        keys = new String[ENTRY_COUNT];
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            keys[i] = "key" + i;
+            cache.put(keys[i], value);
+        }
+        random = new Random(1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        cache.close();
+        cacheFile.delete();
+    }
+
+    @Benchmark
+    public String get() {
+        return cache.get(keys[random.nextInt(ENTRY_COUNT)]);
+    }
+
+    @Benchmark
+    public void put() {
+        cache.put(keys[random.nextInt(ENTRY_COUNT)], value);
+    }
+}
@@ -18,7 +18,8 @@ package org.gradle.api.internal.changedetection.state;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.file.FileVisitDetails;
@@ -31,13 +32,15 @@ import org.gradle.api.internal.file.FileTreeInternal;
 import org.gradle.api.internal.file.collections.DirectoryFileTree;
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
 import org.gradle.api.internal.hash.FileHasher;
+import org.gradle.api.internal.hash.ParallelFileHasher;
 import org.gradle.internal.nativeintegration.filesystem.FileMetadataSnapshot;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 import org.gradle.internal.serialize.SerializerRegistry;
 
 import java.io.File;
 import java.util.List;
-import java.util.Map;
+import java.util.ListIterator;
+import java.util.Set;
 
 import static org.gradle.internal.nativeintegration.filesystem.FileType.*;
 
@@ -46,13 +49,15 @@ import static org.gradle.internal.nativeintegration.filesystem.FileType.*;
  */
 public abstract class AbstractFileCollectionSnapshotter implements FileCollectionSnapshotter {
     private final FileHasher hasher;
+    private final ParallelFileHasher parallelFileHasher;
     private final StringInterner stringInterner;
     private final FileSystem fileSystem;
     private final DirectoryFileTreeFactory directoryFileTreeFactory;
     private final FileSystemMirror fileSystemMirror;
 
-    public AbstractFileCollectionSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror) {
+    public AbstractFileCollectionSnapshotter(FileHasher hasher, ParallelFileHasher parallelFileHasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror) {
         this.hasher = hasher;
+        this.parallelFileHasher = parallelFileHasher;
         this.stringInterner = stringInterner;
         this.fileSystem = fileSystem;
         this.directoryFileTreeFactory = directoryFileTreeFactory;
@@ -65,7 +70,7 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
 
     @Override
     public FileCollectionSnapshot snapshot(FileCollection input, TaskFilePropertyCompareStrategy compareStrategy, final SnapshotNormalizationStrategy snapshotNormalizationStrategy) {
-        List<FileSnapshot> fileTreeElements = Lists.newLinkedList();
+        List<FileSnapshot> fileTreeElements = Lists.newArrayList();
         FileCollectionInternal fileCollection = (FileCollectionInternal) input;
         FileCollectionVisitorImpl visitor = new FileCollectionVisitorImpl(fileTreeElements);
         fileCollection.visitRootElements(visitor);
@@ -74,17 +79,19 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
             return FileCollectionSnapshot.EMPTY;
         }
 
-        Map<String, NormalizedFileSnapshot> snapshots = Maps.newLinkedHashMap();
+        CompactFileSnapshotMap.Builder snapshots = CompactFileSnapshotMap.builder(fileTreeElements.size());
+        Set<String> seenPaths = Sets.newHashSetWithExpectedSize(fileTreeElements.size());
         for (FileSnapshot fileSnapshot : fileTreeElements) {
             String absolutePath = fileSnapshot.getPath();
-            if (!snapshots.containsKey(absolutePath)) {
+            if (!seenPaths.contains(absolutePath)) {
                 NormalizedFileSnapshot normalizedSnapshot = snapshotNormalizationStrategy.getNormalizedSnapshot(fileSnapshot, stringInterner);
                 if (normalizedSnapshot != null) {
+                    seenPaths.add(absolutePath);
                     snapshots.put(absolutePath, normalizedSnapshot);
                 }
             }
         }
-        return new DefaultFileCollectionSnapshot(snapshots, compareStrategy, snapshotNormalizationStrategy.isPathAbsolute());
+        return new DefaultFileCollectionSnapshot(snapshots.build(), compareStrategy, snapshotNormalizationStrategy.isPathAbsolute());
     }
 
     private DirSnapshot dirSnapshot() {
@@ -182,8 +189,9 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
             List<FileSnapshot> elements;
             if (!directoryTree.getPatterns().isEmpty()) {
                 // Currently handle only those trees where we want everything from a directory
-                elements = Lists.newArrayList();
-                directoryTree.visit(new FileVisitorImpl(elements));
+                DirectoryWalkVisitor visitor = new DirectoryWalkVisitor();
+                directoryTree.visit(visitor);
+                elements = visitor.getElements();
             } else {
                 DirectoryTreeDetails treeDetails = fileSystemMirror.getDirectoryTree(directoryTree.getDir().getAbsolutePath());
                 if (treeDetails != null) {
@@ -192,8 +200,9 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
                 } else {
                     // Scan the directory
                     String path = getPath(directoryTree.getDir());
-                    elements = Lists.newArrayList();
-                    directoryTree.visit(new FileVisitorImpl(elements));
+                    DirectoryWalkVisitor visitor = new DirectoryWalkVisitor();
+                    directoryTree.visit(visitor);
+                    elements = visitor.getElements();
                     DirectoryTreeDetails details = new DirectoryTreeDetails(path, ImmutableList.copyOf(elements));
                     fileSystemMirror.putDirectory(details);
                 }
@@ -221,4 +230,38 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
             fileTreeElements.add(new DefaultFileSnapshot(getPath(fileDetails.getFile()), fileDetails.getRelativePath(), RegularFile, false, fileSnapshot(fileDetails)));
         }
     }
+
+    /**
+     * Collects the elements of a directory walk, and hashes the regular files found in a single batch once the walk is complete.
+     */
+    private class DirectoryWalkVisitor implements FileVisitor {
+        private final List<FileSnapshot> elements = Lists.newArrayList();
+        private final List<FileVisitDetails> files = Lists.newArrayList();
+
+        @Override
+        public void visitDir(FileVisitDetails dirDetails) {
+            elements.add(new DefaultFileSnapshot(getPath(dirDetails.getFile()), dirDetails.getRelativePath(), Directory, false, dirSnapshot()));
+        }
+
+        @Override
+        public void visitFile(FileVisitDetails fileDetails) {
+            // Placeholder, replaced once the file has been hashed
+            elements.add(null);
+            files.add(fileDetails);
+        }
+
+        List<FileSnapshot> getElements() {
+            List<HashCode> hashes = parallelFileHasher.hashAll(hasher, files);
+            int nextFile = 0;
+            for (ListIterator<FileSnapshot> iterator = elements.listIterator(); iterator.hasNext();) {
+                if (iterator.next() == null) {
+                    FileVisitDetails fileDetails = files.get(nextFile);
+                    FileHashSnapshot content = new FileHashSnapshot(hashes.get(nextFile), fileDetails.getLastModified());
+                    iterator.set(new DefaultFileSnapshot(getPath(fileDetails.getFile()), fileDetails.getRelativePath(), RegularFile, false, content));
+                    nextFile++;
+                }
+            }
+            return elements;
+        }
+    }
 }
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.collect.AbstractIterator;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable map from absolute path to {@link NormalizedFileSnapshot}, which keeps the entries in insertion order.
+ *
+ * <p>Rather than an object per entry, the entries are stored in arrays indexed by their position: the (interned) absolute paths,
+ * the content snapshots and the kind of normalization, with the normalized paths and indexes only stored for the entries that need them.
+ * The normalized snapshots are created on demand. Lookups use binary search over the positions sorted by path.</p>
+ */
+class CompactFileSnapshotMap extends AbstractMap<String, NormalizedFileSnapshot> {
+    private static final byte NO_NORMALIZATION = 0;
+    private static final byte DEFAULT_NORMALIZATION = 1;
+    private static final byte INDEXED_NORMALIZATION = 2;
+    private static final byte IGNORED_PATH_NORMALIZATION = 3;
+    private static final byte OTHER_NORMALIZATION = 4;
+
+    private final String[] paths;
+    private final FileContentSnapshot[] contents;
+    private final byte[] normalizations;
+    // The normalized path for default normalization, or the snapshot itself for other kinds of snapshot, when any entry needs it
+    private final Object[] details;
+    // The index of the normalized path for indexed normalization, when any entry needs it
+    private final int[] indexes;
+    // Positions sorted by path
+    private final int[] sortedPositions;
+    private EntrySet entrySet;
+
+    private CompactFileSnapshotMap(String[] paths, FileContentSnapshot[] contents, byte[] normalizations, Object[] details, int[] indexes) {
+        this.paths = paths;
+        this.contents = contents;
+        this.normalizations = normalizations;
+        this.details = details;
+        this.indexes = indexes;
+        this.sortedPositions = sortPositions(paths);
+    }
+
+    public static Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    public static CompactFileSnapshotMap copyOf(Map<String, NormalizedFileSnapshot> snapshots) {
+        if (snapshots instanceof CompactFileSnapshotMap) {
+            return (CompactFileSnapshotMap) snapshots;
+        }
+        Builder builder = new Builder(snapshots.size());
+        for (Entry<String, NormalizedFileSnapshot> entry : snapshots.entrySet()) {
+            builder.put(entry.getKey(), entry.getValue());
+        }
+        return builder.build();
+    }
+
+    @Override
+    public int size() {
+        return paths.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && indexOf((String) key) >= 0;
+    }
+
+    @Override
+    public NormalizedFileSnapshot get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int position = indexOf((String) key);
+        return position < 0 ? null : getSnapshot(position);
+    }
+
+    /**
+     * Returns the position of the given path in insertion order, or -1 when there is no entry for the path.
+     */
+    public int indexOf(String path) {
+        int low = 0;
+        int high = sortedPositions.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int position = sortedPositions[mid];
+            int result = paths[position].compareTo(path);
+            if (result < 0) {
+                low = mid + 1;
+            } else if (result > 0) {
+                high = mid - 1;
+            } else {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    public String getPath(int position) {
+        return paths[position];
+    }
+
+    public FileContentSnapshot getContent(int position) {
+        return contents[position];
+    }
+
+    public NormalizedFileSnapshot getSnapshot(int position) {
+        FileContentSnapshot content = contents[position];
+        switch (normalizations[position]) {
+            case NO_NORMALIZATION:
+                return new NonNormalizedFileSnapshot(paths[position], content);
+            case DEFAULT_NORMALIZATION:
+                return new DefaultNormalizedFileSnapshot((String) details[position], content);
+            case INDEXED_NORMALIZATION:
+                return new IndexedNormalizedFileSnapshot(paths[position], indexes[position], content);
+            case IGNORED_PATH_NORMALIZATION:
+                return new IgnoredPathFileSnapshot(content);
+            case OTHER_NORMALIZATION:
+                return (NormalizedFileSnapshot) details[position];
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    @Override
+    public Set<Entry<String, NormalizedFileSnapshot>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    @Override
+    public NormalizedFileSnapshot put(String key, NormalizedFileSnapshot value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NormalizedFileSnapshot remove(Object key) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static int[] sortPositions(final String[] paths) {
+        Integer[] positions = new Integer[paths.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i;
+        }
+        Arrays.sort(positions, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer left, Integer right) {
+                return paths[left].compareTo(paths[right]);
+            }
+        });
+        int[] sortedPositions = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            sortedPositions[i] = positions[i];
+            if (i > 0 && paths[positions[i]].equals(paths[positions[i - 1]])) {
+                throw new IllegalArgumentException("Duplicate snapshot for path " + paths[positions[i]]);
+            }
+        }
+        return sortedPositions;
+    }
+
+    private class EntrySet extends AbstractSet<Entry<String, NormalizedFileSnapshot>> {
+        @Override
+        public int size() {
+            return paths.length;
+        }
+
+        @Override
+        public Iterator<Entry<String, NormalizedFileSnapshot>> iterator() {
+            return new AbstractIterator<Entry<String, NormalizedFileSnapshot>>() {
+                private int position;
+
+                @Override
+                protected Entry<String, NormalizedFileSnapshot> computeNext() {
+                    if (position == paths.length) {
+                        return endOfData();
+                    }
+                    Entry<String, NormalizedFileSnapshot> entry = new SimpleImmutableEntry<String, NormalizedFileSnapshot>(paths[position], getSnapshot(position));
+                    position++;
+                    return entry;
+                }
+            };
+        }
+    }
+
+    public static class Builder {
+        private String[] paths;
+        private FileContentSnapshot[] contents;
+        private byte[] normalizations;
+        private Object[] details;
+        private int[] indexes;
+        private int size;
+
+        private Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 4);
+            paths = new String[capacity];
+            contents = new FileContentSnapshot[capacity];
+            normalizations = new byte[capacity];
+        }
+
+        public Builder put(String path, NormalizedFileSnapshot snapshot) {
+            if (size == paths.length) {
+                grow();
+            }
+            paths[size] = path;
+            contents[size] = snapshot.getSnapshot();
+            if (snapshot instanceof NonNormalizedFileSnapshot && snapshot.getNormalizedPath().equals(path)) {
+                normalizations[size] = NO_NORMALIZATION;
+            } else if (snapshot instanceof DefaultNormalizedFileSnapshot) {
+                normalizations[size] = DEFAULT_NORMALIZATION;
+                setDetails(snapshot.getNormalizedPath());
+            } else if (snapshot instanceof IndexedNormalizedFileSnapshot && ((IndexedNormalizedFileSnapshot) snapshot).getAbsolutePath().equals(path)) {
+                normalizations[size] = INDEXED_NORMALIZATION;
+                if (indexes == null) {
+                    indexes = new int[paths.length];
+                }
+                indexes[size] = ((IndexedNormalizedFileSnapshot) snapshot).getIndex();
+            } else if (snapshot instanceof IgnoredPathFileSnapshot) {
+                normalizations[size] = IGNORED_PATH_NORMALIZATION;
+            } else {
+                normalizations[size] = OTHER_NORMALIZATION;
+                setDetails(snapshot);
+            }
+            size++;
+            return this;
+        }
+
+        private void setDetails(Object value) {
+            if (details == null) {
+                details = new Object[paths.length];
+            }
+            details[size] = value;
+        }
+
+        private void grow() {
+            int capacity = paths.length * 2;
+            paths = Arrays.copyOf(paths, capacity);
+            contents = Arrays.copyOf(contents, capacity);
+            normalizations = Arrays.copyOf(normalizations, capacity);
+            if (details != null) {
+                details = Arrays.copyOf(details, capacity);
+            }
+            if (indexes != null) {
+                indexes = Arrays.copyOf(indexes, capacity);
+            }
+        }
+
+        public CompactFileSnapshotMap build() {
+            return new CompactFileSnapshotMap(
+                trim(paths),
+                trim(contents),
+                normalizations.length == size ? normalizations : Arrays.copyOf(normalizations, size),
+                details == null ? null : trim(details),
+                indexes == null ? null : indexes.length == size ? indexes : Arrays.copyOf(indexes, size)
+            );
+        }
+
+        private <T> T[] trim(T[] array) {
+            return array.length == size ? array : Arrays.copyOf(array, size);
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 the original author or authors.
+ * Copyright 2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,54 +18,400 @@ package org.gradle.api.internal.changedetection.state;
 
 import org.gradle.BuildAdapter;
 import org.gradle.BuildResult;
+import org.gradle.api.Action;
 import org.gradle.api.Nullable;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.TaskOutputsInternal;
+import org.gradle.api.internal.file.FileSystemSubset;
+import org.gradle.api.internal.tasks.TaskOutputFilePropertySpec;
 import org.gradle.api.internal.tasks.execution.TaskOutputsGenerationListener;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.filewatch.FileWatcher;
+import org.gradle.internal.filewatch.FileWatcherEvent;
+import org.gradle.internal.filewatch.FileWatcherFactory;
+import org.gradle.internal.filewatch.FileWatcherListener;
+import org.gradle.internal.nativeintegration.filesystem.FileMetadataSnapshot;
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+import org.gradle.internal.nativeintegration.filesystem.FileType;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Mirrors the files and directory trees snapshotted during a build.
+ *
+ * <p>Before a task generates its outputs, the details for its declared output files, the files and trees below them and the trees containing them are discarded.
+ * The maps are sorted by path, so that the details below an output can be found without scanning all details.
+ * When a task has not declared any outputs, it may change any file and all details are discarded.</p>
+ *
+ * <p>When configured to retain details between builds, the details of the previous build are validated against the timestamps of the files before they are used.
+ * Details for files which have changed too shortly before they were snapshotted are not retained, as the timestamp may not be granular enough to detect a later change.</p>
+ *
+ * <p>When also configured to watch the file system, the roots of the retained trees are watched for changes, and the retained details are discarded as changes are reported.
+ * A tree is then reused without validation when its root was already watched in an earlier build, so the tree is neither walked nor checked.
+ * When the events for a directory are lost, the retained details for the trees containing it or below it are discarded, and these trees are snapshotted again.
+ * As the events are delivered asynchronously, a change made right before a build starts may not be noticed by that build, which is why watching is opt-in.</p>
+ */
+public class DefaultFileSystemMirror extends BuildAdapter implements FileSystemMirror, TaskOutputsGenerationListener, Stoppable {
+    public static final String RETAIN_BETWEEN_BUILDS_PROPERTY = "org.gradle.internal.file-system-mirror.retain";
+    public static final String WATCH_FILE_SYSTEM_PROPERTY = "org.gradle.internal.file-system-mirror.watch";
+    static final long TIMESTAMP_GRANULARITY_MILLIS = 2000;
+    private static final Logger LOGGER = Logging.getLogger(DefaultFileSystemMirror.class);
 
-public class DefaultFileSystemMirror extends BuildAdapter implements FileSystemMirror, TaskOutputsGenerationListener {
     // Map from interned absolute path for a file to known details for the file. Currently not shared with trees
-    private final Map<String, FileSnapshot> files = new ConcurrentHashMap<String, FileSnapshot>();
+    private final ConcurrentNavigableMap<String, FileSnapshot> files = new ConcurrentSkipListMap<String, FileSnapshot>();
     // Map from interned absolute path for a directory to known details for the directory.
-    private final Map<String, DirectoryTreeDetails> trees = new ConcurrentHashMap<String, DirectoryTreeDetails>();
+    private final ConcurrentNavigableMap<String, DirectoryTreeDetails> trees = new ConcurrentSkipListMap<String, DirectoryTreeDetails>();
+    // Details from the current build which can be retained for the next build
+    private final ConcurrentNavigableMap<String, FileSnapshot> retainableFiles = new ConcurrentSkipListMap<String, FileSnapshot>();
+    private final ConcurrentNavigableMap<String, RetainedTree> retainableTrees = new ConcurrentSkipListMap<String, RetainedTree>();
+    // Details retained from the previous build, which need to be validated before use
+    private final ConcurrentNavigableMap<String, FileSnapshot> previousBuildFiles = new ConcurrentSkipListMap<String, FileSnapshot>();
+    private final ConcurrentNavigableMap<String, RetainedTree> previousBuildTrees = new ConcurrentSkipListMap<String, RetainedTree>();
+
+    // Map from the root of each watched directory tree to the build in which it started to be watched
+    private final ConcurrentNavigableMap<String, Integer> watchedRoots = new ConcurrentSkipListMap<String, Integer>();
+    // Paths changed during the current build, which may have been reported before their details were retained
+    private final ConcurrentNavigableMap<String, Boolean> changedPaths = new ConcurrentSkipListMap<String, Boolean>();
+    // Guards moving retained details between the maps against concurrent changes
+    private final Object retainedStateLock = new Object();
+
+    private final FileSystem fileSystem;
+    private final boolean retainBetweenBuilds;
+    private final FileWatcherFactory fileWatcherFactory;
+    private FileWatcher watcher;
+    private volatile boolean watching;
+    private volatile int buildNumber;
+
+    public DefaultFileSystemMirror(FileSystem fileSystem, boolean retainBetweenBuilds) {
+        this(fileSystem, retainBetweenBuilds, null);
+    }
+
+    /**
+     * @param fileWatcherFactory used to watch the retained trees for changes, or null to validate retained details against the file system instead.
+     */
+    public DefaultFileSystemMirror(FileSystem fileSystem, boolean retainBetweenBuilds, @Nullable FileWatcherFactory fileWatcherFactory) {
+        this.fileSystem = fileSystem;
+        this.retainBetweenBuilds = retainBetweenBuilds;
+        this.fileWatcherFactory = retainBetweenBuilds ? fileWatcherFactory : null;
+        this.watching = this.fileWatcherFactory != null;
+    }
 
     @Nullable
     @Override
     public FileSnapshot getFile(String path) {
-        return files.get(path);
+        FileSnapshot file = files.get(path);
+        if (file == null && retainBetweenBuilds) {
+            FileSnapshot previous = previousBuildFiles.remove(path);
+            if (previous != null && isUpToDate(previous)) {
+                files.put(path, previous);
+                retainableFiles.put(path, previous);
+                return previous;
+            }
+        }
+        return file;
     }
 
     @Override
     public void putFile(FileSnapshot file) {
         files.put(file.getPath(), file);
+        if (retainBetweenBuilds && canRetain(file, System.currentTimeMillis())) {
+            retainableFiles.put(file.getPath(), file);
+        }
     }
 
     @Nullable
     @Override
     public DirectoryTreeDetails getDirectoryTree(String path) {
-        return trees.get(path);
+        DirectoryTreeDetails tree = trees.get(path);
+        if (tree == null && retainBetweenBuilds) {
+            synchronized (retainedStateLock) {
+                RetainedTree previous = previousBuildTrees.remove(path);
+                if (previous != null && (previous.watched || previous.isUpToDate())) {
+                    trees.put(path, previous.details);
+                    retainableTrees.put(path, previous.watched ? previous : previous.withWatched(isWatchedSinceEarlierBuild(path)));
+                    return previous.details;
+                }
+            }
+        }
+        return tree;
     }
 
     @Override
     public void putDirectory(DirectoryTreeDetails directory) {
         trees.put(directory.path, directory);
+        if (retainBetweenBuilds) {
+            RetainedTree retainedTree = createRetainedTree(directory);
+            if (retainedTree != null) {
+                retainableTrees.put(directory.path, retainedTree);
+                if (watching) {
+                    watch(directory.path);
+                }
+            }
+        }
     }
 
     @Override
-    public void beforeTaskOutputsGenerated() {
-        // When the task outputs are generated, throw away all cached state. This is intentionally very simple, to be improved later
-        throwAwayAllCachedState();
+    public void beforeTaskOutputsGenerated(TaskInternal task) {
+        TaskOutputsInternal outputs = task.getOutputs();
+        if (!outputs.hasDeclaredOutputs()) {
+            // The task may change any file
+            throwAwayAllCachedState();
+            return;
+        }
+        for (TaskOutputFilePropertySpec property : outputs.getFileProperties()) {
+            for (File file : property.getPropertyFiles()) {
+                invalidate(file.getAbsolutePath());
+            }
+        }
     }
 
     @Override
     public void buildFinished(BuildResult result) {
-        // We throw away all cached state between builds
-        throwAwayAllCachedState();
+        synchronized (retainedStateLock) {
+            previousBuildFiles.clear();
+            previousBuildTrees.clear();
+            if (retainBetweenBuilds) {
+                for (String path : changedPaths.keySet()) {
+                    invalidate(path, retainableFiles);
+                    invalidate(path, retainableTrees);
+                }
+                previousBuildFiles.putAll(retainableFiles);
+                previousBuildTrees.putAll(retainableTrees);
+            }
+            files.clear();
+            trees.clear();
+            retainableFiles.clear();
+            retainableTrees.clear();
+            changedPaths.clear();
+            buildNumber++;
+        }
+    }
+
+    @Override
+    public void stop() {
+        FileWatcher watcher;
+        synchronized (this) {
+            watching = false;
+            watcher = this.watcher;
+            this.watcher = null;
+        }
+        if (watcher != null) {
+            watcher.stop();
+        }
+    }
+
+    private void watch(String root) {
+        if (isWatched(root)) {
+            return;
+        }
+        synchronized (this) {
+            if (!watching || isWatched(root)) {
+                return;
+            }
+            try {
+                if (watcher == null) {
+                    watcher = fileWatcherFactory.watch(new Action<Throwable>() {
+                        @Override
+                        public void execute(Throwable failure) {
+                            stopWatching(failure);
+                        }
+                    }, new ChangeListener());
+                }
+                watcher.watch(FileSystemSubset.builder().add(new File(root)).build());
+                watchedRoots.put(root, buildNumber);
+            } catch (IOException e) {
+                stopWatching(e);
+            }
+        }
+    }
+
+    private boolean isWatched(String path) {
+        for (String candidate = path; candidate != null; candidate = getParent(candidate)) {
+            if (watchedRoots.containsKey(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether changes to the given path have been watched since before the current build started, so any details snapshotted in this build stay up-to-date until a change is reported.
+     */
+    private boolean isWatchedSinceEarlierBuild(String path) {
+        if (!watching) {
+            return false;
+        }
+        for (String candidate = path; candidate != null; candidate = getParent(candidate)) {
+            Integer watchedSince = watchedRoots.get(candidate);
+            if (watchedSince != null && watchedSince < buildNumber) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void stopWatching(Throwable failure) {
+        LOGGER.info("Could not watch the file system for changes, retained file details will be checked before use instead.");
+        LOGGER.debug("Failure while watching the file system", failure);
+        watching = false;
+        synchronized (retainedStateLock) {
+            watchedRoots.clear();
+            // The trees reused without validation may have changed
+            retainableTrees.clear();
+            previousBuildTrees.clear();
+        }
+    }
+
+    private void changed(FileWatcherEvent event) {
+        File file = event.getFile();
+        synchronized (retainedStateLock) {
+            if (file == null) {
+                // Events were lost, and it is not known where
+                watchedRoots.clear();
+                retainableFiles.clear();
+                retainableTrees.clear();
+                previousBuildFiles.clear();
+                previousBuildTrees.clear();
+                return;
+            }
+            String path = file.getAbsolutePath();
+            changedPaths.put(path, Boolean.TRUE);
+            invalidate(path, retainableFiles);
+            invalidate(path, retainableTrees);
+            invalidate(path, previousBuildFiles);
+            invalidate(path, previousBuildTrees);
+            if (event.getType() == FileWatcherEvent.Type.DELETE || event.getType() == FileWatcherEvent.Type.UNDEFINED) {
+                // Directories below the path may no longer be watched, so watch the containing trees again
+                invalidate(path, watchedRoots);
+            }
+        }
     }
 
     private void throwAwayAllCachedState() {
-        files.clear();
-        trees.clear();
+        synchronized (retainedStateLock) {
+            files.clear();
+            trees.clear();
+            retainableFiles.clear();
+            retainableTrees.clear();
+            previousBuildFiles.clear();
+            previousBuildTrees.clear();
+        }
+    }
+
+    /**
+     * Discards the details for the given path, everything below it, and the trees and directories containing it.
+     */
+    private void invalidate(String path) {
+        invalidate(path, files);
+        invalidate(path, trees);
+        invalidate(path, retainableFiles);
+        invalidate(path, retainableTrees);
+        invalidate(path, previousBuildFiles);
+        invalidate(path, previousBuildTrees);
+    }
+
+    private static void invalidate(String path, ConcurrentNavigableMap<String, ?> map) {
+        map.remove(path);
+        // Children sort between the path followed by a separator and the path followed by the next character
+        map.subMap(path + File.separatorChar, path + (char) (File.separatorChar + 1)).clear();
+        // A tree includes all its elements, and a parent may change from missing to a directory
+        for (String parent = getParent(path); parent != null; parent = getParent(parent)) {
+            map.remove(parent);
+        }
+    }
+
+    @Nullable
+    private static String getParent(String path) {
+        int separator = path.lastIndexOf(File.separatorChar);
+        return separator > 0 ? path.substring(0, separator) : null;
+    }
+
+    private static boolean canRetain(FileSnapshot file, long snapshotTime) {
+        if (file.getType() != FileType.RegularFile) {
+            return true;
+        }
+        return file.getContent() instanceof FileHashSnapshot
+            && ((FileHashSnapshot) file.getContent()).getLastModified() < snapshotTime - TIMESTAMP_GRANULARITY_MILLIS;
+    }
+
+    private boolean isUpToDate(FileSnapshot file) {
+        FileMetadataSnapshot stat = fileSystem.stat(new File(file.getPath()));
+        if (stat.getType() != file.getType()) {
+            return false;
+        }
+        return file.getType() != FileType.RegularFile
+            || stat.getLastModified() == ((FileHashSnapshot) file.getContent()).getLastModified();
+    }
+
+    @Nullable
+    private RetainedTree createRetainedTree(DirectoryTreeDetails tree) {
+        long snapshotTime = System.currentTimeMillis();
+        List<String> directories = new ArrayList<String>();
+        directories.add(tree.path);
+        for (FileSnapshot element : tree.elements) {
+            if (element.getType() == FileType.Directory) {
+                directories.add(element.getPath());
+            } else if (!canRetain(element, snapshotTime)) {
+                return null;
+            }
+        }
+        // Directory timestamps change when entries are added or removed
+        long[] directoryTimestamps = new long[directories.size()];
+        for (int i = 0; i < directoryTimestamps.length; i++) {
+            FileMetadataSnapshot stat = fileSystem.stat(new File(directories.get(i)));
+            if (stat.getType() != FileType.Directory || stat.getLastModified() >= snapshotTime - TIMESTAMP_GRANULARITY_MILLIS) {
+                return null;
+            }
+            directoryTimestamps[i] = stat.getLastModified();
+        }
+        return new RetainedTree(tree, directories, directoryTimestamps, isWatchedSinceEarlierBuild(tree.path));
+    }
+
+    private class ChangeListener implements FileWatcherListener {
+        @Override
+        public void onChange(FileWatcher watcher, FileWatcherEvent event) {
+            changed(event);
+        }
+    }
+
+    private class RetainedTree {
+        private final DirectoryTreeDetails details;
+        private final List<String> directories;
+        private final long[] directoryTimestamps;
+        // Whether changes to the tree are reported, so that it does not need to be checked before use
+        private final boolean watched;
+
+        RetainedTree(DirectoryTreeDetails details, List<String> directories, long[] directoryTimestamps, boolean watched) {
+            this.details = details;
+            this.directories = directories;
+            this.directoryTimestamps = directoryTimestamps;
+            this.watched = watched;
+        }
+
+        RetainedTree withWatched(boolean watched) {
+            return watched == this.watched ? this : new RetainedTree(details, directories, directoryTimestamps, watched);
+        }
+
+        boolean isUpToDate() {
+            for (int i = 0; i < directoryTimestamps.length; i++) {
+                FileMetadataSnapshot stat = fileSystem.stat(new File(directories.get(i)));
+                if (stat.getType() != FileType.Directory || stat.getLastModified() != directoryTimestamps[i]) {
+                    return false;
+                }
+            }
+            for (FileSnapshot element : details.elements) {
+                if (element.getType() == FileType.RegularFile && !DefaultFileSystemMirror.this.isUpToDate(element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 }
@@ -27,6 +27,7 @@ import org.gradle.api.internal.changedetection.rules.TaskStateChange;
 import org.gradle.caching.internal.BuildCacheHasher;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -64,6 +65,9 @@ class OrderInsensitiveTaskFilePropertyCompareStrategy implements TaskFilePropert
      * A more efficient implementation when absolute paths are used.
      */
     private Iterator<TaskStateChange> iterateChangesForAbsolutePaths(final Map<String, NormalizedFileSnapshot> current, final Map<String, NormalizedFileSnapshot> previous, final String fileType) {
+        if (previous instanceof CompactFileSnapshotMap) {
+            return iterateChangesForAbsolutePaths(current, (CompactFileSnapshotMap) previous, fileType);
+        }
         final Set<String> unaccountedForPreviousSnapshots = new LinkedHashSet<String>(previous.keySet());
         final Iterator<Entry<String, NormalizedFileSnapshot>> currentEntries = current.entrySet().iterator();
         final List<String> added = new ArrayList<String>();
@@ -113,6 +117,56 @@ class OrderInsensitiveTaskFilePropertyCompareStrategy implements TaskFilePropert
         };
     }
 
+    /**
+     * Tracks the unaccounted for previous snapshots by their position, rather than by copying their paths into a set.
+     */
+    private Iterator<TaskStateChange> iterateChangesForAbsolutePaths(final Map<String, NormalizedFileSnapshot> current, final CompactFileSnapshotMap previous, final String fileType) {
+        final BitSet accountedForPreviousSnapshots = new BitSet(previous.size());
+        final Iterator<Entry<String, NormalizedFileSnapshot>> currentEntries = current.entrySet().iterator();
+        final List<String> added = new ArrayList<String>();
+        return new AbstractIterator<TaskStateChange>() {
+            private int nextPreviousPosition;
+            private Iterator<String> addedIterator;
+
+            @Override
+            protected TaskStateChange computeNext() {
+                while (currentEntries.hasNext()) {
+                    Entry<String, NormalizedFileSnapshot> currentEntry = currentEntries.next();
+                    String currentAbsolutePath = currentEntry.getKey();
+                    int previousPosition = previous.indexOf(currentAbsolutePath);
+                    if (previousPosition >= 0 && !accountedForPreviousSnapshots.get(previousPosition)) {
+                        accountedForPreviousSnapshots.set(previousPosition);
+                        FileContentSnapshot currentSnapshot = currentEntry.getValue().getSnapshot();
+                        if (!currentSnapshot.isContentUpToDate(previous.getContent(previousPosition))) {
+                            return new FileChange(currentAbsolutePath, ChangeType.MODIFIED, fileType);
+                        }
+                        // else, unchanged; check next file
+                    } else {
+                        added.add(currentAbsolutePath);
+                    }
+                }
+
+                nextPreviousPosition = accountedForPreviousSnapshots.nextClearBit(nextPreviousPosition);
+                if (nextPreviousPosition < previous.size()) {
+                    String previousAbsolutePath = previous.getPath(nextPreviousPosition++);
+                    return new FileChange(previousAbsolutePath, ChangeType.REMOVED, fileType);
+                }
+
+                if (includeAdded) {
+                    if (addedIterator == null) {
+                        addedIterator = added.iterator();
+                    }
+                    if (addedIterator.hasNext()) {
+                        String newAbsolutePath = addedIterator.next();
+                        return new FileChange(newAbsolutePath, ChangeType.ADDED, fileType);
+                    }
+                }
+
+                return endOfData();
+            }
+        };
+    }
+
     private Iterator<TaskStateChange> iterateChangesForRelativePaths(final Map<String, NormalizedFileSnapshot> current, Map<String, NormalizedFileSnapshot> previous, final String fileType) {
         final ListMultimap<NormalizedFileSnapshot, IncrementalFileSnapshotWithAbsolutePath> unaccountedForPreviousSnapshots = MultimapBuilder.hashKeys().linkedListValues().build();
         for (Entry<String, NormalizedFileSnapshot> entry : previous.entrySet()) {
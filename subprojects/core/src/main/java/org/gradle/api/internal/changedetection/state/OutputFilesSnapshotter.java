@@ -16,7 +16,6 @@
 
 package org.gradle.api.internal.changedetection.state;
 
-import com.google.common.collect.ImmutableMap;
 import org.gradle.api.internal.TaskExecutionHistory;
 import org.gradle.internal.nativeintegration.filesystem.FileType;
 
@@ -60,7 +59,7 @@ public class OutputFilesSnapshotter {
             Map<String, NormalizedFileSnapshot> beforeSnapshots = beforeExecution.getSnapshots();
             Map<String, NormalizedFileSnapshot> afterPreviousSnapshots = afterPreviousExecution != null ? afterPreviousExecution.getSnapshots() : new HashMap<String, NormalizedFileSnapshot>();
             int newEntryCount = 0;
-            ImmutableMap.Builder<String, NormalizedFileSnapshot> outputEntries = ImmutableMap.builder();
+            CompactFileSnapshotMap.Builder outputEntries = CompactFileSnapshotMap.builder(afterSnapshots.size());
 
             for (Map.Entry<String, NormalizedFileSnapshot> entry : afterSnapshots.entrySet()) {
                 final String path = entry.getKey();
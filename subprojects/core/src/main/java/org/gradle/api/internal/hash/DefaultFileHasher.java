@@ -22,18 +22,37 @@ import com.google.common.hash.Hashing;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.internal.nativeintegration.filesystem.FileMetadataSnapshot;
+import org.gradle.internal.os.OperatingSystem;
 import org.gradle.internal.resource.TextResource;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 
+/**
+ * Hashes file content. Files of at least {@link #MEMORY_MAPPING_THRESHOLD} bytes are memory mapped instead of read through a stream.
+ *
+ * <p>Memory mapping is not used on Windows, where a file cannot be deleted while it is mapped.</p>
+ */
 public class DefaultFileHasher implements FileHasher {
+    static final long MEMORY_MAPPING_THRESHOLD = 256 * 1024;
+    private static final long MAX_MAPPED_REGION_SIZE = 64 * 1024 * 1024;
     private static final byte[] SIGNATURE = Hashing.md5().hashString(DefaultFileHasher.class.getName(), Charsets.UTF_8).asBytes();
     private final Queue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(16);
+    private final boolean memoryMapLargeFiles;
+
+    public DefaultFileHasher() {
+        this(!OperatingSystem.current().isWindows());
+    }
+
+    public DefaultFileHasher(boolean memoryMapLargeFiles) {
+        this.memoryMapLargeFiles = memoryMapLargeFiles;
+    }
 
     @Override
     public HashCode hash(InputStream inputStream) {
@@ -54,7 +73,18 @@ public class DefaultFileHasher implements FileHasher {
     @Override
     public HashCode hash(File file) {
         try {
-            InputStream inputStream = new FileInputStream(file);
+            FileInputStream inputStream = new FileInputStream(file);
+            if (memoryMapLargeFiles) {
+                FileChannel channel = inputStream.getChannel();
+                long size = channel.size();
+                if (size >= MEMORY_MAPPING_THRESHOLD) {
+                    try {
+                        return doHash(channel, size);
+                    } finally {
+                        inputStream.close();
+                    }
+                }
+            }
             return doHash(inputStream);
         } catch (IOException e) {
             throw new UncheckedIOException(String.format("Failed to create MD5 hash for file '%s'.", file), e);
@@ -82,6 +112,24 @@ public class DefaultFileHasher implements FileHasher {
         }
     }
 
+    private HashCode doHash(FileChannel channel, long size) throws IOException {
+        byte[] buffer = takeBuffer();
+        try {
+            Hasher hasher = createFileHasher();
+            for (long position = 0; position < size; position += MAX_MAPPED_REGION_SIZE) {
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_MAPPED_REGION_SIZE, size - position));
+                while (region.hasRemaining()) {
+                    int nread = Math.min(region.remaining(), buffer.length);
+                    region.get(buffer, 0, nread);
+                    hasher.putBytes(buffer, 0, nread);
+                }
+            }
+            return hasher.hash();
+        } finally {
+            returnBuffer(buffer);
+        }
+    }
+
     private void returnBuffer(byte[] buffer) {
         // Retain buffer if there is capacity in the queue, otherwise discard
         buffers.offer(buffer);
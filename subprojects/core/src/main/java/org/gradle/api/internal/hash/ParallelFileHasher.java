@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash;
+
+import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hashes batches of files, such as the result of a directory walk, across a bounded pool of worker threads.
+ *
+ * <p>The calling thread takes part in hashing the batch, so a batch always completes even when all workers are busy with the batches of other callers.
+ * Small batches are hashed on the calling thread only.</p>
+ */
+public class ParallelFileHasher implements Stoppable {
+    static final int FILES_PER_CLAIM = 16;
+    private static final int MIN_PARALLEL_BATCH_SIZE = 2 * FILES_PER_CLAIM;
+
+    private final int maxWorkers;
+    private final StoppableExecutor executor;
+
+    public ParallelFileHasher(ExecutorFactory executorFactory, int maxWorkers) {
+        this.maxWorkers = maxWorkers;
+        this.executor = maxWorkers > 0 ? executorFactory.create("File hashing", maxWorkers) : null;
+    }
+
+    public ParallelFileHasher(ExecutorFactory executorFactory) {
+        this(executorFactory, Math.min(Runtime.getRuntime().availableProcessors(), 8) - 1);
+    }
+
+    /**
+     * Hashes the given files with the given hasher, returning the hashes in the same order as the files.
+     *
+     * <p>The hasher must be safe to use from multiple threads.</p>
+     */
+    public List<HashCode> hashAll(FileHasher hasher, List<? extends FileTreeElement> files) {
+        HashCode[] hashes = new HashCode[files.size()];
+        BatchHashingAction action = new BatchHashingAction(hasher, files, hashes);
+        if (executor == null || files.size() < MIN_PARALLEL_BATCH_SIZE) {
+            action.run();
+            return Arrays.asList(hashes);
+        }
+
+        int claims = (files.size() + FILES_PER_CLAIM - 1) / FILES_PER_CLAIM;
+        int workers = Math.min(maxWorkers, claims - 1);
+        List<Future<?>> futures = Lists.newArrayListWithCapacity(workers);
+        for (int i = 0; i < workers; i++) {
+            futures.add(executor.submit(action));
+        }
+        action.run();
+
+        for (Future<?> future : futures) {
+            // Workers which have not started yet have nothing left to do
+            if (!future.cancel(false)) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                } catch (ExecutionException e) {
+                    throw UncheckedException.throwAsUncheckedException(e.getCause());
+                }
+            }
+        }
+        action.rethrowFailure();
+        return Arrays.asList(hashes);
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+
+    private static class BatchHashingAction implements Runnable {
+        private final FileHasher hasher;
+        private final List<? extends FileTreeElement> files;
+        private final HashCode[] hashes;
+        private final AtomicInteger nextClaim = new AtomicInteger();
+        private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        BatchHashingAction(FileHasher hasher, List<? extends FileTreeElement> files, HashCode[] hashes) {
+            this.hasher = hasher;
+            this.files = files;
+            this.hashes = hashes;
+        }
+
+        @Override
+        public void run() {
+            while (failure.get() == null) {
+                int start = nextClaim.getAndIncrement() * FILES_PER_CLAIM;
+                if (start >= hashes.length) {
+                    return;
+                }
+                int end = Math.min(start + FILES_PER_CLAIM, hashes.length);
+                try {
+                    for (int i = start; i < end; i++) {
+                        hashes[i] = hasher.hash(files.get(i));
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+            rethrowFailure();
+        }
+
+        void rethrowFailure() {
+            Throwable t = failure.get();
+            if (t != null) {
+                throw UncheckedException.throwAsUncheckedException(t);
+            }
+        }
+    }
+}
@@ -21,10 +21,12 @@ import com.google.common.base.Objects;
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
 import com.google.common.hash.HashCode;
 import org.gradle.api.Nullable;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
+import org.gradle.initialization.SessionLifecycleListener;
 import org.gradle.internal.classloader.ClassLoaderUtils;
 import org.gradle.internal.classloader.ClasspathHasher;
 import org.gradle.internal.classloader.FilteringClassLoader;
@@ -32,20 +34,40 @@ import org.gradle.internal.classloader.HashingClassLoaderFactory;
 import org.gradle.internal.classpath.ClassPath;
 import org.gradle.internal.concurrent.Stoppable;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
-public class DefaultClassLoaderCache implements ClassLoaderCache, Stoppable {
+/**
+ * Caches class loaders across builds, sharing a class loader between all IDs that use the same classpath, parent and filter.
+ *
+ * <p>At the end of each build session, if the class metadata memory pool is fuller than the percentage given by the {@value #EVICTION_THRESHOLD_PROPERTY}
+ * system property, 80 by default, the class loaders of all IDs that were not used during that session are discarded, so that their classes can be
+ * unloaded rather than filling up the daemon. The JVM does not report the metadata used by each class loader, so all unused class loaders are discarded at
+ * once rather than just enough of them.</p>
+ */
+public class DefaultClassLoaderCache implements ClassLoaderCache, Stoppable, SessionLifecycleListener {
+    public static final String EVICTION_THRESHOLD_PROPERTY = "org.gradle.internal.classloaders.metaspace-eviction-threshold";
+    private static final int DEFAULT_EVICTION_THRESHOLD = 80;
     private static final Logger LOGGER = Logging.getLogger(DefaultClassLoaderCache.class);
 
     private final Object lock = new Object();
     private final Map<ClassLoaderId, CachedClassLoader> byId = Maps.newHashMap();
     private final Map<ClassLoaderSpec, CachedClassLoader> bySpec = Maps.newHashMap();
+    private final Set<ClassLoaderId> usedThisSession = Sets.newHashSet();
     private final ClasspathHasher classpathHasher;
     private final HashingClassLoaderFactory classLoaderFactory;
+    private final MetaspaceUsage metaspaceUsage;
 
     public DefaultClassLoaderCache(HashingClassLoaderFactory classLoaderFactory, ClasspathHasher classpathHasher) {
+        this(classLoaderFactory, classpathHasher, new MetaspaceUsage());
+    }
+
+    public DefaultClassLoaderCache(HashingClassLoaderFactory classLoaderFactory, ClasspathHasher classpathHasher, MetaspaceUsage metaspaceUsage) {
         this.classLoaderFactory = classLoaderFactory;
         this.classpathHasher = classpathHasher;
+        this.metaspaceUsage = metaspaceUsage;
     }
 
     @Override
@@ -61,6 +83,7 @@ public class DefaultClassLoaderCache implements ClassLoaderCache, Stoppable {
         ManagedClassLoaderSpec spec = new ManagedClassLoaderSpec(parent, classPath, implementationHash, filterSpec);
 
         synchronized (lock) {
+            usedThisSession.add(id);
             CachedClassLoader cachedLoader = byId.get(id);
             if (cachedLoader == null || !cachedLoader.is(spec)) {
                 CachedClassLoader newLoader = getAndRetainLoader(classPath, spec, id);
@@ -82,6 +105,7 @@ public class DefaultClassLoaderCache implements ClassLoaderCache, Stoppable {
     public <T extends ClassLoader> T put(ClassLoaderId id, T classLoader) {
         synchronized (lock) {
             remove(id);
+            usedThisSession.add(id);
             ClassLoaderSpec spec = new UnmanagedClassLoaderSpec(classLoader);
             CachedClassLoader cachedClassLoader = new CachedClassLoader(classLoader, spec, null);
             cachedClassLoader.retain(id);
@@ -119,6 +143,33 @@ public class DefaultClassLoaderCache implements ClassLoaderCache, Stoppable {
         return cachedLoader.retain(id);
     }
 
+    @Override
+    public void afterStart() {
+    }
+
+    @Override
+    public void beforeComplete() {
+        int threshold = Integer.getInteger(EVICTION_THRESHOLD_PROPERTY, DEFAULT_EVICTION_THRESHOLD);
+        int usage = metaspaceUsage.getUsagePercent();
+        synchronized (lock) {
+            if (usage >= threshold) {
+                List<ClassLoaderId> unused = new ArrayList<ClassLoaderId>();
+                for (ClassLoaderId id : byId.keySet()) {
+                    if (!usedThisSession.contains(id)) {
+                        unused.add(id);
+                    }
+                }
+                if (!unused.isEmpty()) {
+                    LOGGER.debug("Class metadata space is {}% full, discarding class loaders for {} unused ID(s)", usage, unused.size());
+                    for (ClassLoaderId id : unused) {
+                        remove(id);
+                    }
+                }
+            }
+            usedThisSession.clear();
+        }
+    }
+
     @Override
     public int size() {
         synchronized (lock) {
@@ -134,6 +185,7 @@ public class DefaultClassLoaderCache implements ClassLoaderCache, Stoppable {
             }
             byId.clear();
             bySpec.clear();
+            usedThisSession.clear();
         }
     }
 
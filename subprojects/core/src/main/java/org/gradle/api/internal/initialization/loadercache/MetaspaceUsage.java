@@ -0,0 +1,42 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.initialization.loadercache;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Reports how full the memory pool holding class metadata is. This is the metaspace on Java 8 and later, and the permanent generation before that.
+ */
+public class MetaspaceUsage {
+    /**
+     * Returns the used percentage of the maximum size of the class metadata pool, or -1 when the pool has no maximum size or cannot be found.
+     */
+    public int getUsagePercent() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.NON_HEAP && (pool.getName().equals("Metaspace") || pool.getName().endsWith("Perm Gen"))) {
+                MemoryUsage usage = pool.getUsage();
+                if (usage != null && usage.getMax() > 0) {
+                    return (int) (usage.getUsed() * 100 / usage.getMax());
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.execution;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.SetMultimap;
+import org.gradle.BuildAdapter;
+import org.gradle.BuildResult;
+import org.gradle.api.Task;
+import org.gradle.api.execution.TaskExecutionGraph;
+import org.gradle.api.execution.TaskExecutionGraphListener;
+import org.gradle.api.execution.TaskExecutionListener;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.TaskArtifactState;
+import org.gradle.api.internal.changedetection.TaskArtifactStateRepository;
+import org.gradle.api.tasks.TaskState;
+import org.gradle.caching.internal.PrefetchingBuildCacheServiceDecorator;
+import org.gradle.caching.internal.tasks.TaskOutputCachingBuildCacheKey;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads the outputs of tasks from the build cache before the tasks start, so that {@link SkipCachedTaskExecuter} finds them locally.
+ *
+ * <p>A task is prefetched once all of its dependencies in the task graph have been executed, as its inputs are then known.
+ * The cache key is calculated in the background in the same way {@link ResolveBuildCacheKeyExecuter} does it, so a task whose
+ * inputs change after that simply does not find the prefetched entry. Tasks that are up-to-date or that have already started
+ * are not prefetched.</p>
+ *
+ * <p>Calculating the cache key evaluates the inputs of the task, which can use any part of the model of its project, and snapshots
+ * its inputs and outputs. Like {@link org.gradle.execution.taskgraph.DefaultTaskExecutionPlan} does for the tasks themselves, the
+ * calculation for a project is only done while no other task of the project is executing and no other key of the project is being
+ * calculated. A task that starts meanwhile waits for the calculation to finish before it executes, and the tasks whose calculation
+ * had to be deferred are scheduled again once the project is idle. Only loading the entry runs alongside the tasks of the project.</p>
+ */
+public class TaskOutputCachePrefetcher extends BuildAdapter implements TaskExecutionGraphListener, TaskExecutionListener {
+    public static final String PREFETCH_PROPERTY = "org.gradle.cache.tasks.prefetch";
+    public static final String PREFETCH_CONCURRENCY_PROPERTY = "org.gradle.cache.tasks.prefetch.concurrency";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskOutputCachePrefetcher.class);
+
+    private final TaskArtifactStateRepository repository;
+    private final PrefetchingBuildCacheServiceDecorator buildCache;
+    private final ExecutorFactory executorFactory;
+    private final int concurrency;
+
+    private final Object lock = new Object();
+    private final Map<Task, Set<Task>> dependents = new HashMap<Task, Set<Task>>();
+    private final Map<Task, Integer> remainingDependencies = new HashMap<Task, Integer>();
+    private final Set<Task> startedTasks = new HashSet<Task>();
+    private final Multiset<String> projectsWithRunningTasks = HashMultiset.create();
+    private final Set<String> projectsBeingCalculated = new HashSet<String>();
+    private final SetMultimap<String, TaskInternal> deferredTasks = LinkedHashMultimap.create();
+    private StoppableExecutor executor;
+    private boolean stopped;
+
+    public TaskOutputCachePrefetcher(TaskArtifactStateRepository repository, PrefetchingBuildCacheServiceDecorator buildCache, ExecutorFactory executorFactory, int concurrency) {
+        this.repository = repository;
+        this.buildCache = buildCache;
+        this.executorFactory = executorFactory;
+        this.concurrency = concurrency;
+    }
+
+    @Override
+    public void graphPopulated(TaskExecutionGraph graph) {
+        List<Task> tasks = graph.getAllTasks();
+        Set<Task> scheduledTasks = new HashSet<Task>(tasks);
+        synchronized (lock) {
+            if (executor == null) {
+                executor = executorFactory.create("Build cache prefetch", concurrency);
+            }
+            for (Task task : tasks) {
+                int dependencyCount = 0;
+                for (Task dependency : task.getTaskDependencies().getDependencies(task)) {
+                    if (scheduledTasks.contains(dependency)) {
+                        Set<Task> dependentsOfDependency = dependents.get(dependency);
+                        if (dependentsOfDependency == null) {
+                            dependentsOfDependency = new HashSet<Task>();
+                            dependents.put(dependency, dependentsOfDependency);
+                        }
+                        dependentsOfDependency.add(task);
+                        dependencyCount++;
+                    }
+                }
+                if (dependencyCount == 0) {
+                    schedule((TaskInternal) task);
+                } else {
+                    remainingDependencies.put(task, dependencyCount);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void beforeExecute(Task task) {
+        String projectPath = task.getProject().getPath();
+        synchronized (lock) {
+            startedTasks.add(task);
+            projectsWithRunningTasks.add(projectPath);
+            boolean interrupted = false;
+            while (projectsBeingCalculated.contains(projectPath)) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void afterExecute(Task task, TaskState state) {
+        String projectPath = task.getProject().getPath();
+        synchronized (lock) {
+            projectsWithRunningTasks.remove(projectPath);
+            scheduleDeferredTasks(projectPath);
+            Set<Task> dependentsOfTask = dependents.remove(task);
+            if (dependentsOfTask == null || state.getFailure() != null) {
+                return;
+            }
+            for (Task dependent : dependentsOfTask) {
+                Integer remaining = remainingDependencies.get(dependent);
+                if (remaining == null) {
+                    continue;
+                }
+                if (remaining == 1) {
+                    remainingDependencies.remove(dependent);
+                    schedule((TaskInternal) dependent);
+                } else {
+                    remainingDependencies.put(dependent, remaining - 1);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void buildFinished(BuildResult result) {
+        StoppableExecutor executor;
+        synchronized (lock) {
+            stopped = true;
+            executor = this.executor;
+            this.executor = null;
+            dependents.clear();
+            remainingDependencies.clear();
+            startedTasks.clear();
+            projectsWithRunningTasks.clear();
+            deferredTasks.clear();
+        }
+        if (executor != null) {
+            executor.stop();
+        }
+        buildCache.discardPrefetchedEntries();
+    }
+
+    private void schedule(final TaskInternal task) {
+        if (stopped || startedTasks.contains(task)) {
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                prefetch(task);
+            }
+        });
+    }
+
+    private void prefetch(TaskInternal task) {
+        TaskOutputCachingBuildCacheKey cacheKey = calculateCacheKey(task);
+        if (cacheKey == null || !shouldPrefetch(task)) {
+            return;
+        }
+        LOGGER.debug("Prefetching outputs of {} from the build cache", task);
+        try {
+            buildCache.prefetch(cacheKey);
+        } catch (Exception e) {
+            LOGGER.debug("Could not prefetch outputs of {} from the build cache", task, e);
+        }
+    }
+
+    private void scheduleDeferredTasks(String projectPath) {
+        if (projectsWithRunningTasks.contains(projectPath) || projectsBeingCalculated.contains(projectPath)) {
+            return;
+        }
+        for (TaskInternal task : deferredTasks.removeAll(projectPath)) {
+            schedule(task);
+        }
+    }
+
+    /**
+     * Calculates the cache key of the given task, or returns {@code null} when the task should not be prefetched or has been deferred
+     * until its project is idle. No task of the project starts executing until this method returns.
+     */
+    private TaskOutputCachingBuildCacheKey calculateCacheKey(TaskInternal task) {
+        String projectPath = task.getProject().getPath();
+        synchronized (lock) {
+            if (stopped || startedTasks.contains(task)) {
+                return null;
+            }
+            if (projectsWithRunningTasks.contains(projectPath) || projectsBeingCalculated.contains(projectPath)) {
+                deferredTasks.put(projectPath, task);
+                return null;
+            }
+            projectsBeingCalculated.add(projectPath);
+        }
+        try {
+            if (!task.getOutputs().getHasOutput() || task.getTaskActions().isEmpty() || !task.getOutputs().getCachingState().isEnabled()) {
+                return null;
+            }
+            TaskArtifactState taskState = repository.getStateFor(task);
+            if (!taskState.isAllowedToUseCachedResults() || taskState.isUpToDate(null)) {
+                return null;
+            }
+            TaskOutputCachingBuildCacheKey cacheKey = taskState.calculateCacheKey();
+            return cacheKey.isValid() ? cacheKey : null;
+        } catch (Exception e) {
+            LOGGER.debug("Could not calculate the build cache key of {} for prefetching", task, e);
+            return null;
+        } finally {
+            synchronized (lock) {
+                projectsBeingCalculated.remove(projectPath);
+                lock.notifyAll();
+                scheduleDeferredTasks(projectPath);
+            }
+        }
+    }
+
+    private boolean shouldPrefetch(Task task) {
+        synchronized (lock) {
+            return !stopped && !startedTasks.contains(task);
+        }
+    }
+}
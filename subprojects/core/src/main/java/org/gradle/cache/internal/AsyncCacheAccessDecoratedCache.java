@@ -20,9 +20,19 @@ import org.gradle.api.Nullable;
 import org.gradle.api.Transformer;
 import org.gradle.internal.Factory;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies updates to the backing cache asynchronously. An update for a key that has not yet been applied is replaced by a later update for the same key,
+ * so that only the latest value is written. Reads of a key with a pending update are served from the pending update without waiting for the queued work.
+ */
 public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsyncPersistentIndexedCache<K, V> {
     private final AsyncCacheAccess asyncCacheAccess;
     private final MultiProcessSafePersistentIndexedCache<K, V> persistentCache;
+    private final Map<K, PendingUpdate> pendingUpdates = new HashMap<K, PendingUpdate>();
 
     public AsyncCacheAccessDecoratedCache(AsyncCacheAccess asyncCacheAccess, MultiProcessSafePersistentIndexedCache<K, V> persistentCache) {
         this.asyncCacheAccess = asyncCacheAccess;
@@ -32,6 +42,12 @@ public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsy
     @Nullable
     @Override
     public V get(final K key) {
+        synchronized (pendingUpdates) {
+            PendingUpdate pendingUpdate = pendingUpdates.get(key);
+            if (pendingUpdate != null) {
+                return pendingUpdate.value;
+            }
+        }
         return asyncCacheAccess.read(new Factory<V>() {
             @Override
             public V create() {
@@ -47,30 +63,31 @@ public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsy
 
     @Override
     public void putLater(final K key, final V value, final Runnable completion) {
-        asyncCacheAccess.enqueue(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    persistentCache.put(key, value);
-                } finally {
-                    completion.run();
-                }
-            }
-        });
+        update(key, value, false, completion);
     }
 
     @Override
     public void removeLater(final K key, final Runnable completion) {
-        asyncCacheAccess.enqueue(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    persistentCache.remove(key);
-                } finally {
-                    completion.run();
-                }
+        update(key, null, true, completion);
+    }
+
+    private void update(K key, @Nullable V value, boolean remove, Runnable completion) {
+        PendingUpdate pendingUpdate;
+        synchronized (pendingUpdates) {
+            pendingUpdate = pendingUpdates.get(key);
+            if (pendingUpdate != null && !pendingUpdate.started) {
+                pendingUpdate.replace(value, remove, completion);
+                return;
             }
-        });
+            pendingUpdate = new PendingUpdate(key, value, remove, completion);
+            pendingUpdates.put(key, pendingUpdate);
+        }
+        try {
+            asyncCacheAccess.enqueue(pendingUpdate);
+        } catch (RuntimeException e) {
+            pendingUpdate.discard();
+            throw e;
+        }
     }
 
     @Override
@@ -87,4 +104,57 @@ public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsy
     public void beforeLockRelease(FileLock.State currentCacheState) {
         persistentCache.beforeLockRelease(currentCacheState);
     }
+
+    private class PendingUpdate implements Runnable {
+        private final K key;
+        private final List<Runnable> completions = new ArrayList<Runnable>(1);
+        private V value;
+        private boolean remove;
+        private boolean started;
+
+        PendingUpdate(K key, @Nullable V value, boolean remove, Runnable completion) {
+            this.key = key;
+            this.value = value;
+            this.remove = remove;
+            completions.add(completion);
+        }
+
+        // Called while holding the lock on pendingUpdates
+        void replace(@Nullable V value, boolean remove, Runnable completion) {
+            this.value = value;
+            this.remove = remove;
+            completions.add(completion);
+        }
+
+        @Override
+        public void run() {
+            V value;
+            boolean remove;
+            synchronized (pendingUpdates) {
+                started = true;
+                value = this.value;
+                remove = this.remove;
+            }
+            try {
+                if (remove) {
+                    persistentCache.remove(key);
+                } else {
+                    persistentCache.put(key, value);
+                }
+            } finally {
+                discard();
+                for (Runnable completion : completions) {
+                    completion.run();
+                }
+            }
+        }
+
+        void discard() {
+            synchronized (pendingUpdates) {
+                if (pendingUpdates.get(key) == this) {
+                    pendingUpdates.remove(key);
+                }
+            }
+        }
+    }
 }
@@ -17,6 +17,8 @@
 package org.gradle.cache.internal;
 
 import org.gradle.api.internal.cache.HeapProportionalCacheSizer;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
 import org.gradle.cache.CacheAccess;
 import org.gradle.internal.Factory;
 import org.gradle.internal.UncheckedException;
@@ -27,15 +29,18 @@ import org.gradle.internal.time.Timers;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
+    private static final Logger LOGGER = Logging.getLogger(CacheAccessWorker.class);
+    private static final int MAX_BATCH_SIZE = 256;
     private final BlockingQueue<Runnable> workQueue;
     private final String displayName;
     private final CacheAccess cacheAccess;
@@ -46,6 +51,9 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
     private boolean stopSeen;
     private final CountDownLatch doneSignal = new CountDownLatch(1);
     private final ExecutorPolicy.CatchAndRecordFailures failureHandler = new ExecutorPolicy.CatchAndRecordFailures();
+    private final List<Runnable> batch = new ArrayList<Runnable>(MAX_BATCH_SIZE);
+    private final AtomicLong blockedSubmissions = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
 
     CacheAccessWorker(String displayName, CacheAccess cacheAccess) {
         this.displayName = displayName;
@@ -54,7 +62,8 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
         this.maximumLockingTimeMillis = 5000;
         HeapProportionalCacheSizer heapProportionalCacheSizer = new HeapProportionalCacheSizer();
         int queueCapacity = Math.min(4000, heapProportionalCacheSizer.scaleCacheSize(40000));
-        workQueue = new ArrayBlockingQueue<Runnable>(queueCapacity, true);
+        // Separate locks for adding and taking, so that producers do not contend with the worker
+        workQueue = new LinkedBlockingQueue<Runnable>(queueCapacity);
     }
 
     @Override
@@ -66,13 +75,35 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
         if (closed) {
             throw new IllegalStateException("The worker has already been closed. Cannot add more work to queue.");
         }
+        if (workQueue.offer(task)) {
+            return;
+        }
+        // The queue is full, so the producer has to wait for the worker to catch up
+        long start = System.nanoTime();
         try {
             workQueue.put(task);
         } catch (InterruptedException e) {
             throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            blockedSubmissions.incrementAndGet();
+            blockedNanos.addAndGet(System.nanoTime() - start);
         }
     }
 
+    /**
+     * The number of times that a producer had to wait for space in the queue.
+     */
+    long getBlockedSubmissions() {
+        return blockedSubmissions.get();
+    }
+
+    /**
+     * The total time that producers have waited for space in the queue.
+     */
+    long getBlockedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(blockedNanos.get());
+    }
+
     public <T> T read(final Factory<T> task) {
         FutureTask<T> futureTask = new FutureTask<T>(new Callable<T>() {
             @Override
@@ -181,17 +212,27 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
                     Runnable otherOperation;
                     try {
                         while ((otherOperation = workQueue.poll(batchWindowMillis, TimeUnit.MILLISECONDS)) != null) {
-                            failureHandler.onExecute(otherOperation);
-                            final Class<? extends Runnable> runnableClass = otherOperation.getClass();
-                            if (runnableClass == FlushOperationsCommand.class) {
-                                flushOperations.add((FlushOperationsCommand) otherOperation);
+                            // Take whatever else is queued in one go, rather than contending with the producers for each operation
+                            batch.add(otherOperation);
+                            workQueue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                            boolean releaseLock = false;
+                            try {
+                                for (Runnable operation : batch) {
+                                    failureHandler.onExecute(operation);
+                                    final Class<? extends Runnable> runnableClass = operation.getClass();
+                                    if (runnableClass == FlushOperationsCommand.class) {
+                                        flushOperations.add((FlushOperationsCommand) operation);
+                                        releaseLock = true;
+                                    }
+                                    if (runnableClass == ShutdownOperationsCommand.class) {
+                                        stopSeen = true;
+                                        releaseLock = true;
+                                    }
+                                }
+                            } finally {
+                                batch.clear();
                             }
-                            if (runnableClass == ShutdownOperationsCommand.class) {
-                                stopSeen = true;
-                            }
-                            if (runnableClass == ShutdownOperationsCommand.class
-                                    || runnableClass == FlushOperationsCommand.class
-                                    || timer.hasExpired()) {
+                            if (releaseLock || timer.hasExpired()) {
                                 break;
                             }
                         }
@@ -220,6 +261,9 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
             } catch (InterruptedException e) {
                 // ignore
             }
+            if (blockedSubmissions.get() > 0) {
+                LOGGER.info("Producers waited {} times for a total of {}ms for space in the update queue of {}.", getBlockedSubmissions(), getBlockedMillis(), displayName);
+            }
         }
         rethrowFailure();
     }
@@ -25,6 +25,7 @@ import java.io.RandomAccessFile;
 
 public class FileBackedBlockStore implements BlockStore {
     private final File cacheFile;
+    private final boolean memoryMapped;
     private RandomAccessFile file;
     private ByteOutput output;
     private ByteInput input;
@@ -33,7 +34,15 @@ public class FileBackedBlockStore implements BlockStore {
     private long currentFileSize;
 
     public FileBackedBlockStore(File cacheFile) {
+        this(cacheFile, false);
+    }
+
+    /**
+     * @param memoryMapped whether to read blocks through memory mapped regions of the file. Blocks are always written through the file.
+     */
+    public FileBackedBlockStore(File cacheFile, boolean memoryMapped) {
         this.cacheFile = cacheFile;
+        this.memoryMapped = memoryMapped;
     }
 
     @Override
@@ -47,7 +56,7 @@ public class FileBackedBlockStore implements BlockStore {
             cacheFile.getParentFile().mkdirs();
             file = new RandomAccessFile(cacheFile, "rw");
             output = new ByteOutput(file);
-            input = new ByteInput(file);
+            input = createInput();
             currentFileSize = file.length();
             nextBlock = currentFileSize;
             if (currentFileSize == 0) {
@@ -68,6 +77,8 @@ public class FileBackedBlockStore implements BlockStore {
 
     public void clear() {
         try {
+            // Discard any mapped regions before they extend beyond the end of the file
+            input = createInput();
             file.setLength(0);
             currentFileSize = 0;
         } catch (IOException e) {
@@ -76,6 +87,10 @@ public class FileBackedBlockStore implements BlockStore {
         nextBlock = 0;
     }
 
+    private ByteInput createInput() {
+        return memoryMapped ? new MappedByteInput(file) : new ByteInput(file);
+    }
+
     public void attach(BlockPayload block) {
         if (block.getBlock() == null) {
             block.setBlock(new BlockImpl(block));
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import com.google.common.io.CountingInputStream;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads from a file through memory mapped regions of the file, so that reading a block does not require any system calls.
+ *
+ * <p>The file is mapped in chunks, and the last chunk is mapped again once the file has grown by a threshold.
+ * Any part of the file beyond the mapped regions is read from the file. The regions are only mapped within the length of the file,
+ * so an instance must not be used after the file has been truncated.</p>
+ */
+class MappedByteInput extends ByteInput {
+    private static final int DEFAULT_CHUNK_SIZE = 32 * 1024 * 1024;
+    private static final int DEFAULT_REMAP_THRESHOLD = 1024 * 1024;
+
+    private final RandomAccessFile file;
+    private final int chunkSize;
+    private final int remapThreshold;
+    private final List<MappedByteBuffer> chunks = new ArrayList<MappedByteBuffer>();
+    private final MappedInputStream inputStream = new MappedInputStream();
+    private long mappedLength;
+    private CountingInputStream countingInputStream;
+
+    public MappedByteInput(RandomAccessFile file) {
+        this(file, DEFAULT_CHUNK_SIZE, DEFAULT_REMAP_THRESHOLD);
+    }
+
+    MappedByteInput(RandomAccessFile file, int chunkSize, int remapThreshold) {
+        super(file);
+        this.file = file;
+        this.chunkSize = chunkSize;
+        this.remapThreshold = remapThreshold;
+    }
+
+    @Override
+    public DataInputStream start(long offset) throws IOException {
+        if (offset >= mappedLength) {
+            mapNewRegions();
+        }
+        inputStream.seek(offset);
+        countingInputStream = new CountingInputStream(inputStream);
+        return new DataInputStream(countingInputStream);
+    }
+
+    @Override
+    public long getBytesRead() {
+        return countingInputStream.getCount();
+    }
+
+    @Override
+    public void done() {
+        countingInputStream = null;
+    }
+
+    private void mapNewRegions() throws IOException {
+        long length = file.length();
+        if (length - mappedLength < remapThreshold) {
+            return;
+        }
+        int chunk = (int) (mappedLength / chunkSize);
+        if (chunk < chunks.size()) {
+            // The last chunk was only partially mapped
+            chunks.remove(chunk);
+        }
+        FileChannel channel = file.getChannel();
+        for (long start = (long) chunk * chunkSize; start < length; start += chunkSize) {
+            chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, length - start)));
+        }
+        mappedLength = length;
+    }
+
+    private class MappedInputStream extends InputStream {
+        private final byte[] buffer = new byte[8192];
+        private long pos;
+        private long bufferStart;
+        private int bufferCount;
+
+        void seek(long pos) {
+            this.pos = pos;
+            bufferCount = 0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos < mappedLength) {
+                int value = chunks.get((int) (pos / chunkSize)).get((int) (pos % chunkSize)) & 0xff;
+                pos++;
+                return value;
+            }
+            if (!fillBuffer()) {
+                return -1;
+            }
+            int value = buffer[(int) (pos - bufferStart)] & 0xff;
+            pos++;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            int count;
+            if (pos < mappedLength) {
+                ByteBuffer chunk = chunks.get((int) (pos / chunkSize)).duplicate();
+                chunk.position((int) (pos % chunkSize));
+                count = Math.min(length, chunk.remaining());
+                chunk.get(bytes, offset, count);
+            } else {
+                if (!fillBuffer()) {
+                    return -1;
+                }
+                int index = (int) (pos - bufferStart);
+                count = Math.min(length, bufferCount - index);
+                System.arraycopy(buffer, index, bytes, offset, count);
+            }
+            pos += count;
+            return count;
+        }
+
+        private boolean fillBuffer() throws IOException {
+            if (pos >= bufferStart && pos < bufferStart + bufferCount) {
+                return true;
+            }
+            file.seek(pos);
+            int count = file.read(buffer);
+            if (count <= 0) {
+                bufferCount = 0;
+                return false;
+            }
+            bufferStart = pos;
+            bufferCount = count;
+            return true;
+        }
+    }
+}
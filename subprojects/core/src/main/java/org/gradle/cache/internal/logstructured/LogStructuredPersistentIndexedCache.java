@@ -0,0 +1,478 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstructured;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.PersistentIndexedStore;
+import org.gradle.cache.internal.btree.KeyHasher;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent indexed store that appends its entries to a sequence of segment files, and keeps the position of the latest record for each key in memory.
+ *
+ * <p>A record holds the hash of the key, the length of the serialized value, the serialized value and a checksum of all of these. A removal is recorded as
+ * a record without a value. The index is rebuilt by scanning the segments when the store is opened. The last segment is truncated at the first record that
+ * is incomplete or does not match its checksum, which is what a crash while appending leaves behind. Damage to any other segment discards the store.</p>
+ *
+ * <p>When the store is closed and less than half of its content is live, the live records are copied to new segments and the old segments are deleted.
+ * The old segments are deleted oldest first once the new segments have been written, so the segments left behind by a crash while compacting still
+ * contain the latest record for each key.</p>
+ */
+public class LogStructuredPersistentIndexedCache<K, V> implements PersistentIndexedStore<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogStructuredPersistentIndexedCache.class);
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final int HEADER_SIZE = 12;
+    private static final int CHECKSUM_SIZE = 4;
+    private static final int REMOVED = -1;
+    private static final int OFFSET_BITS = 40;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] EMPTY_HEADER = new byte[HEADER_SIZE];
+
+    private final File segmentDir;
+    private final KeyHasher<K> keyHasher;
+    private final Serializer<V> serializer;
+    private final long maxSegmentSize;
+    private final long minCompactionSize;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+    private final RecordBuffer record = new RecordBuffer();
+    private final KryoBackedEncoder encoder = new KryoBackedEncoder(record);
+    private final CRC32 checksum = new CRC32();
+    private final byte[] writeBuffer = new byte[WRITE_BUFFER_SIZE];
+    private int writeBufferLength;
+    private RecordIndex index;
+    private Segment activeSegment;
+
+    public LogStructuredPersistentIndexedCache(File segmentDir, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(segmentDir, keySerializer, valueSerializer, 16 * 1024 * 1024, 1024 * 1024);
+    }
+
+    public LogStructuredPersistentIndexedCache(File segmentDir, Serializer<K> keySerializer, Serializer<V> valueSerializer, long maxSegmentSize, long minCompactionSize) {
+        this.segmentDir = segmentDir;
+        this.keyHasher = new KeyHasher<K>(keySerializer);
+        this.serializer = valueSerializer;
+        this.maxSegmentSize = maxSegmentSize;
+        this.minCompactionSize = minCompactionSize;
+        try {
+            open();
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "cache " + segmentDir.getName() + " (" + segmentDir + ")";
+    }
+
+    private void open() throws IOException {
+        LOGGER.debug("Opening {}", this);
+        if (!segmentDir.isDirectory() && !segmentDir.mkdirs()) {
+            throw new IOException(String.format("Could not create directory %s.", segmentDir));
+        }
+        String[] names = segmentDir.list();
+        if (names == null) {
+            throw new IOException(String.format("Could not list contents of %s.", segmentDir));
+        }
+        for (String name : names) {
+            if (name.matches("\\d+\\" + SEGMENT_SUFFIX)) {
+                int id = Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(id, new Segment(id));
+            }
+        }
+        index = new RecordIndex();
+        for (Segment segment : segments.values()) {
+            if (!load(segment)) {
+                if (segment.id != segments.lastKey()) {
+                    LOGGER.warn("{} is corrupt. Discarding.", this);
+                    discard();
+                    break;
+                }
+                LOGGER.info("Discarding incomplete records at the end of {} of {}.", segment.file, this);
+                segment.raf.setLength(segment.length);
+            }
+        }
+        activeSegment = segments.isEmpty() ? null : segments.lastEntry().getValue();
+    }
+
+    /**
+     * Adds the records of the given segment to the index. Returns false when the segment contains an invalid record, in which case the length of the
+     * segment is set to the end of the last valid record.
+     */
+    private boolean load(Segment segment) throws IOException {
+        RecordReader reader = new RecordReader(segment);
+        try {
+            while (reader.next()) {
+                if (!reader.isValid()) {
+                    segment.length = reader.position;
+                    segment.flushedLength = reader.position;
+                    return false;
+                }
+                addToIndex(reader.keyHash, segment, reader.position, reader.valueLength);
+            }
+            return true;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void discard() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.raf.close();
+            if (!segment.file.delete()) {
+                throw new IOException(String.format("Could not delete %s.", segment.file));
+            }
+        }
+        segments.clear();
+        index = new RecordIndex();
+    }
+
+    @Override
+    public V get(K key) {
+        try {
+            int slot = index.find(keyHasher.getHashCode(key));
+            if (slot < 0 || index.getLength(slot) == REMOVED) {
+                return null;
+            }
+            long position = index.getPosition(slot);
+            byte[] value = readValue(segments.get(segmentId(position)), offset(position), index.getLength(slot));
+            return serializer.read(new KryoBackedDecoder(new ByteArrayInputStream(value), Math.max(1, value.length)));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        try {
+            record.reset();
+            record.write(EMPTY_HEADER);
+            serializer.write(encoder, value);
+            encoder.flush();
+            append(keyHasher.getHashCode(key), record.size() - HEADER_SIZE);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        try {
+            long keyHash = keyHasher.getHashCode(key);
+            int slot = index.find(keyHash);
+            if (slot < 0 || index.getLength(slot) == REMOVED) {
+                return;
+            }
+            record.reset();
+            record.write(EMPTY_HEADER);
+            append(keyHash, REMOVED);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        LOGGER.debug("Closing {}", this);
+        try {
+            flushWrites();
+            if (shouldCompact()) {
+                compact();
+            }
+            for (Segment segment : segments.values()) {
+                segment.raf.close();
+            }
+            segments.clear();
+            activeSegment = null;
+            index = null;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Completes the record in the record buffer, whose header has been reserved and which is followed by the value, and appends it to the active segment.
+     */
+    private void append(long keyHash, int valueLength) throws IOException {
+        byte[] bytes = record.buffer();
+        writeLong(bytes, 0, keyHash);
+        writeInt(bytes, 8, valueLength);
+        checksum.reset();
+        checksum.update(bytes, 0, record.size());
+        int crc = (int) checksum.getValue();
+        record.write(crc >>> 24);
+        record.write(crc >>> 16);
+        record.write(crc >>> 8);
+        record.write(crc);
+
+        Segment segment = activeSegment();
+        long offset = write(segment, record.buffer(), record.size());
+        addToIndex(keyHash, segment, offset, valueLength);
+    }
+
+    private void addToIndex(long keyHash, Segment segment, long offset, int valueLength) {
+        int slot = index.find(keyHash);
+        if (slot >= 0 && index.getLength(slot) != REMOVED) {
+            long previous = index.getPosition(slot);
+            segments.get(segmentId(previous)).liveBytes -= recordLength(index.getLength(slot));
+        }
+        if (valueLength != REMOVED) {
+            segment.liveBytes += recordLength(valueLength);
+        }
+        index.put(keyHash, position(segment.id, offset), valueLength);
+    }
+
+    private Segment activeSegment() throws IOException {
+        if (activeSegment == null || activeSegment.length >= maxSegmentSize) {
+            flushWrites();
+            int id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+            if (id >= 1 << (63 - OFFSET_BITS)) {
+                throw new IOException(String.format("Too many segments in %s.", this));
+            }
+            activeSegment = new Segment(id);
+            segments.put(id, activeSegment);
+        }
+        return activeSegment;
+    }
+
+    /**
+     * Appends the given bytes to the given segment, which must be the active segment. Returns the offset of the bytes in the segment.
+     */
+    private long write(Segment segment, byte[] bytes, int length) throws IOException {
+        long offset = segment.length;
+        if (writeBufferLength + length > writeBuffer.length) {
+            flushWrites();
+        }
+        if (length > writeBuffer.length) {
+            segment.raf.seek(offset);
+            segment.raf.write(bytes, 0, length);
+            segment.flushedLength += length;
+        } else {
+            System.arraycopy(bytes, 0, writeBuffer, writeBufferLength, length);
+            writeBufferLength += length;
+        }
+        segment.length += length;
+        return offset;
+    }
+
+    private void flushWrites() throws IOException {
+        if (writeBufferLength > 0) {
+            activeSegment.raf.seek(activeSegment.flushedLength);
+            activeSegment.raf.write(writeBuffer, 0, writeBufferLength);
+            activeSegment.flushedLength += writeBufferLength;
+            writeBufferLength = 0;
+        }
+    }
+
+    private byte[] readValue(Segment segment, long offset, int valueLength) throws IOException {
+        byte[] value = new byte[valueLength];
+        if (offset >= segment.flushedLength) {
+            // Still in the write buffer, which holds complete records only
+            System.arraycopy(writeBuffer, (int) (offset - segment.flushedLength) + HEADER_SIZE, value, 0, valueLength);
+        } else {
+            segment.raf.seek(offset + HEADER_SIZE);
+            segment.raf.readFully(value);
+        }
+        return value;
+    }
+
+    private boolean shouldCompact() {
+        long length = 0;
+        long liveBytes = 0;
+        for (Segment segment : segments.values()) {
+            length += segment.length;
+            liveBytes += segment.liveBytes;
+        }
+        return length >= minCompactionSize && liveBytes * 2 < length;
+    }
+
+    /**
+     * Copies the live records to new segments and deletes the existing segments. Removals are dropped, as no segment that could contain an earlier value
+     * for the key is kept.
+     */
+    private void compact() throws IOException {
+        LOGGER.debug("Compacting {}", this);
+        List<Segment> oldSegments = new ArrayList<Segment>(segments.values());
+        RecordIndex oldIndex = index;
+        index = new RecordIndex(oldIndex.size());
+        activeSegment = null;
+        for (Segment segment : oldSegments) {
+            RecordReader reader = new RecordReader(segment);
+            try {
+                while (reader.next()) {
+                    int slot = oldIndex.find(reader.keyHash);
+                    if (slot >= 0 && reader.valueLength != REMOVED && oldIndex.getPosition(slot) == position(segment.id, reader.position)) {
+                        Segment target = activeSegment();
+                        long offset = write(target, reader.bytes, reader.recordLength);
+                        target.liveBytes += reader.recordLength;
+                        index.put(reader.keyHash, position(target.id, offset), reader.valueLength);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        flushWrites();
+        for (Segment segment : oldSegments) {
+            segment.raf.close();
+            segments.remove(segment.id);
+            if (!segment.file.delete()) {
+                throw new IOException(String.format("Could not delete %s.", segment.file));
+            }
+        }
+    }
+
+    private static long position(int segmentId, long offset) {
+        return ((long) segmentId << OFFSET_BITS) | offset;
+    }
+
+    private static int segmentId(long position) {
+        return (int) (position >>> OFFSET_BITS);
+    }
+
+    private static long offset(long position) {
+        return position & ((1L << OFFSET_BITS) - 1);
+    }
+
+    private static int recordLength(int valueLength) {
+        return HEADER_SIZE + Math.max(0, valueLength) + CHECKSUM_SIZE;
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        writeInt(bytes, offset, (int) (value >>> 32));
+        writeInt(bytes, offset + 4, (int) value);
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private class Segment {
+        final int id;
+        final File file;
+        final RandomAccessFile raf;
+        // The length including the bytes that are still in the write buffer
+        long length;
+        long flushedLength;
+        long liveBytes;
+
+        Segment(int id) throws IOException {
+            this.id = id;
+            this.file = new File(segmentDir, id + SEGMENT_SUFFIX);
+            this.raf = new RandomAccessFile(file, "rw");
+            this.length = raf.length();
+            this.flushedLength = length;
+        }
+    }
+
+    /**
+     * Reads the flushed records of a segment in order, reusing a single buffer for the content of the records.
+     */
+    private class RecordReader {
+        private final DataInputStream input;
+        private final long segmentLength;
+        private byte[] bytes = new byte[1024];
+        private long nextPosition;
+        long position;
+        long keyHash;
+        int valueLength;
+        int recordLength;
+
+        RecordReader(Segment segment) throws IOException {
+            this.segmentLength = segment.flushedLength;
+            this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.file), WRITE_BUFFER_SIZE));
+        }
+
+        /**
+         * Reads the next record, if any. The record may be invalid, after which no further records should be read.
+         */
+        boolean next() throws IOException {
+            position = nextPosition;
+            if (position == segmentLength) {
+                return false;
+            }
+            recordLength = -1;
+            if (segmentLength - position < HEADER_SIZE + CHECKSUM_SIZE) {
+                return true;
+            }
+            keyHash = input.readLong();
+            valueLength = input.readInt();
+            if (valueLength < REMOVED || segmentLength - position < recordLength(valueLength)) {
+                return true;
+            }
+            int length = recordLength(valueLength);
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            writeLong(bytes, 0, keyHash);
+            writeInt(bytes, 8, valueLength);
+            try {
+                input.readFully(bytes, HEADER_SIZE, length - HEADER_SIZE);
+            } catch (EOFException e) {
+                return true;
+            }
+            recordLength = length;
+            nextPosition = position + length;
+            return true;
+        }
+
+        boolean isValid() {
+            if (recordLength < 0) {
+                return false;
+            }
+            checksum.reset();
+            checksum.update(bytes, 0, recordLength - CHECKSUM_SIZE);
+            int crc = (int) checksum.getValue();
+            int offset = recordLength - CHECKSUM_SIZE;
+            int storedCrc = ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16) | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+            return crc == storedCrc;
+        }
+
+        void close() throws IOException {
+            input.close();
+        }
+    }
+
+    /**
+     * Exposes the internal buffer, so that a record can be completed and written without copying.
+     */
+    private static class RecordBuffer extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
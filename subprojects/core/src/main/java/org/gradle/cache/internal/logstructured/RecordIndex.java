@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstructured;
+
+/**
+ * Maps the hash of a key to the position and value length of the latest record for the key, using open addressing over primitive arrays
+ * rather than an object per entry. Positions are never zero, so a zero position marks an empty slot.
+ */
+class RecordIndex {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private long[] positions;
+    private int[] lengths;
+    private int mask;
+    private int size;
+
+    RecordIndex() {
+        this(0);
+    }
+
+    RecordIndex(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (!canHold(capacity, expectedSize)) {
+            capacity *= 2;
+        }
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the slot of the given key, or -1 when the key is not present.
+     */
+    public int find(long key) {
+        int slot = slotFor(key);
+        while (positions[slot] != 0) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public long getPosition(int slot) {
+        return positions[slot];
+    }
+
+    public int getLength(int slot) {
+        return lengths[slot];
+    }
+
+    private void set(int slot, long position, int length) {
+        positions[slot] = position;
+        lengths[slot] = length;
+    }
+
+    public void put(long key, long position, int length) {
+        assert position != 0;
+        int slot = slotFor(key);
+        while (positions[slot] != 0) {
+            if (keys[slot] == key) {
+                set(slot, position, length);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        set(slot, position, length);
+        size++;
+        if (!canHold(keys.length, size)) {
+            resize();
+        }
+    }
+
+    private static boolean canHold(int capacity, int size) {
+        return (long) size * 4 <= (long) capacity * 3;
+    }
+
+    private int slotFor(long key) {
+        // The keys are already well distributed hashes
+        return ((int) (key ^ (key >>> 32))) & mask;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldPositions = positions;
+        int[] oldLengths = lengths;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldPositions[i] != 0) {
+                int slot = slotFor(oldKeys[i]);
+                while (positions[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                set(slot, oldPositions[i], oldLengths[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        positions = new long[capacity];
+        lengths = new int[capacity];
+        mask = capacity - 1;
+    }
+}
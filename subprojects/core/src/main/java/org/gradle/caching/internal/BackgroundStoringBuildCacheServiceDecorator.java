@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.file.TemporaryFileProvider;
+import org.gradle.caching.BuildCacheEntryWriter;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.gradle.util.GFileUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@code BuildCacheService} decorator that stores entries in the delegate build cache on background threads.
+ *
+ * <p>The entry is packed to a temporary file on the calling thread, and the task can carry on while the file is uploaded.
+ * At most {@code maxPendingStores} entries are waiting or being uploaded at any time, further stores block until one of them
+ * finishes. Closing the service waits for all pending stores to finish.</p>
+ *
+ * <p>A {@link BuildCacheException} thrown by a background store is kept until it is taken with {@link #takeStoreFailures()}, so that
+ * decorators that count errors still see it without failing an unrelated store. Any other failure is rethrown when the service is closed.</p>
+ */
+public class BackgroundStoringBuildCacheServiceDecorator extends AbstractRoleAwareBuildCacheServiceDecorator implements DeferredStoringBuildCacheService {
+    private final TemporaryFileProvider temporaryFileProvider;
+    private final StoppableExecutor executor;
+    private final int maxPendingStores;
+    private final Semaphore pendingStores;
+    private final Queue<BuildCacheException> storeFailures = new ConcurrentLinkedQueue<BuildCacheException>();
+    private final AtomicReference<RuntimeException> fatalFailure = new AtomicReference<RuntimeException>();
+
+    public BackgroundStoringBuildCacheServiceDecorator(TemporaryFileProvider temporaryFileProvider, ExecutorFactory executorFactory, int concurrency, int maxPendingStores, RoleAwareBuildCacheService delegate) {
+        super(delegate);
+        this.temporaryFileProvider = temporaryFileProvider;
+        this.executor = executorFactory.create("Store entries in " + delegate.getRole() + " build cache", concurrency);
+        this.maxPendingStores = maxPendingStores;
+        this.pendingStores = new Semaphore(maxPendingStores);
+    }
+
+    @Override
+    public void store(BuildCacheKey key, BuildCacheEntryWriter writer) throws BuildCacheException {
+        File destination = temporaryFileProvider.createTemporaryFile("gradle_cache", "entry");
+        boolean queued = false;
+        try {
+            if (!(writer instanceof PackedBuildCacheEntryWriter) || !((PackedBuildCacheEntryWriter) writer).moveTo(destination)) {
+                writeCacheEntry(writer, destination);
+            }
+            queue(key, destination);
+            queued = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (!queued) {
+                GFileUtils.deleteQuietly(destination);
+            }
+        }
+    }
+
+    @Override
+    public List<BuildCacheException> takeStoreFailures() {
+        List<BuildCacheException> failures = new ArrayList<BuildCacheException>();
+        BuildCacheException failure;
+        while ((failure = storeFailures.poll()) != null) {
+            failures.add(failure);
+        }
+        return failures;
+    }
+
+    private void queue(final BuildCacheKey key, final File destination) {
+        pendingStores.acquireUninterruptibly();
+        final BackgroundBuildCacheEntryWriter queuedWriter = new BackgroundBuildCacheEntryWriter(destination, maxPendingStores - pendingStores.availablePermits());
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        delegate().store(key, queuedWriter);
+                    } catch (BuildCacheException e) {
+                        storeFailures.add(e);
+                    } catch (RuntimeException e) {
+                        fatalFailure.compareAndSet(null, e);
+                    } finally {
+                        GFileUtils.deleteQuietly(destination);
+                        pendingStores.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            pendingStores.release();
+            throw e;
+        }
+    }
+
+    private static void writeCacheEntry(BuildCacheEntryWriter writer, File destination) throws IOException {
+        OutputStream fileOutputStream = null;
+        try {
+            fileOutputStream = new BufferedOutputStream(new FileOutputStream(destination));
+            writer.writeTo(fileOutputStream);
+            fileOutputStream.close();
+        } catch (FileNotFoundException e) {
+            throw new BuildCacheException("Couldn't create local file for cache entry", e);
+        } finally {
+            IOUtils.closeQuietly(fileOutputStream);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            executor.stop();
+        } finally {
+            super.close();
+        }
+        RuntimeException failure = fatalFailure.get();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Writes an entry packed earlier, and knows how long it has been waiting to be stored.
+     */
+    private static class BackgroundBuildCacheEntryWriter implements QueuedBuildCacheEntryWriter {
+        private final File source;
+        private final int pendingStores;
+        private final long queuedAt;
+        private long queuedMillis = -1;
+
+        BackgroundBuildCacheEntryWriter(File source, int pendingStores) {
+            this.source = source;
+            this.pendingStores = pendingStores;
+            this.queuedAt = System.currentTimeMillis();
+        }
+
+        @Override
+        public void writeTo(OutputStream output) throws IOException {
+            if (queuedMillis < 0) {
+                queuedMillis = System.currentTimeMillis() - queuedAt;
+            }
+            Files.copy(source, output);
+        }
+
+        @Override
+        public int getPendingStores() {
+            return pendingStores;
+        }
+
+        @Override
+        public long getQueuedMillis() {
+            return queuedMillis;
+        }
+    }
+}
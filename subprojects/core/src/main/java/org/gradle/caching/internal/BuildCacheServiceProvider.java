@@ -24,6 +24,7 @@ import org.gradle.caching.BuildCacheServiceFactory;
 import org.gradle.caching.configuration.BuildCache;
 import org.gradle.caching.configuration.internal.BuildCacheConfigurationInternal;
 import org.gradle.internal.Cast;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.progress.BuildOperationExecutor;
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.util.SingleMessageLogger;
@@ -35,20 +36,26 @@ import javax.inject.Inject;
 public class BuildCacheServiceProvider {
     private static final Logger LOGGER = LoggerFactory.getLogger(BuildCacheServiceProvider.class);
     private static final int MAX_ERROR_COUNT_FOR_BUILD_CACHE = 3;
+    public static final String STORE_CONCURRENCY_PROPERTY = "org.gradle.cache.tasks.store.concurrency";
+    public static final String MAX_PENDING_STORES_PROPERTY = "org.gradle.cache.tasks.store.max-pending";
+    private static final int DEFAULT_STORE_CONCURRENCY = 2;
+    private static final int DEFAULT_MAX_PENDING_STORES = 32;
 
     private final BuildCacheConfigurationInternal buildCacheConfiguration;
     private final BuildOperationExecutor buildOperationExecutor;
     private final Instantiator instantiator;
     private final StartParameter startParameter;
     private final TemporaryFileProvider temporaryFileProvider;
+    private final ExecutorFactory executorFactory;
 
     @Inject
-    public BuildCacheServiceProvider(BuildCacheConfigurationInternal buildCacheConfiguration, StartParameter startParameter, Instantiator instantiator, BuildOperationExecutor buildOperationExecutor, TemporaryFileProvider temporaryFileProvider) {
+    public BuildCacheServiceProvider(BuildCacheConfigurationInternal buildCacheConfiguration, StartParameter startParameter, Instantiator instantiator, BuildOperationExecutor buildOperationExecutor, TemporaryFileProvider temporaryFileProvider, ExecutorFactory executorFactory) {
         this.buildCacheConfiguration = buildCacheConfiguration;
         this.startParameter = startParameter;
         this.instantiator = instantiator;
         this.buildOperationExecutor = buildOperationExecutor;
         this.temporaryFileProvider = temporaryFileProvider;
+        this.executorFactory = executorFactory;
     }
 
     public BuildCacheService createBuildCacheService() {
@@ -101,18 +108,27 @@ public class BuildCacheServiceProvider {
 
     private RoleAwareBuildCacheService createDispatchingBuildCacheService(BuildCache local, BuildCache remote) {
         return new DispatchingBuildCacheService(
-            createDecoratedBuildCacheService("local", local), local.isPush(),
-            createDecoratedBuildCacheService("remote", remote), remote.isPush(),
+            createLocalBuildCacheService(local), local.isPush(),
+            createRemoteBuildCacheService(remote), remote.isPush(),
             temporaryFileProvider
         );
     }
 
     private RoleAwareBuildCacheService createStandaloneLocalBuildService(BuildCache local) {
-        return preventPushIfNecessary(createDecoratedBuildCacheService("local", local), local.isPush());
+        return preventPushIfNecessary(createLocalBuildCacheService(local), local.isPush());
     }
 
     private RoleAwareBuildCacheService createStandaloneRemoteBuildService(BuildCache remote) {
-        return preventPushIfNecessary(createDecoratedBuildCacheService("remote", remote), remote.isPush());
+        return preventPushIfNecessary(createRemoteBuildCacheService(remote), remote.isPush());
+    }
+
+    private RoleAwareBuildCacheService createLocalBuildCacheService(BuildCache local) {
+        return shortCircuitOnErrors(createDecoratedBuildCacheService("local", local));
+    }
+
+    private RoleAwareBuildCacheService createRemoteBuildCacheService(BuildCache remote) {
+        // Errors are counted outside of the background stores, so that no more entries are packed once the cache is disabled
+        return shortCircuitOnErrors(storeInBackgroundIfNecessary(createDecoratedBuildCacheService("remote", remote), remote.isPush()));
     }
 
     private RoleAwareBuildCacheService preventPushIfNecessary(RoleAwareBuildCacheService buildCacheService, boolean pushEnabled) {
@@ -121,13 +137,25 @@ public class BuildCacheServiceProvider {
             : new PushOrPullPreventingBuildCacheServiceDecorator(true, false, buildCacheService);
     }
 
+    private RoleAwareBuildCacheService storeInBackgroundIfNecessary(RoleAwareBuildCacheService buildCacheService, boolean pushEnabled) {
+        int concurrency = Integer.getInteger(STORE_CONCURRENCY_PROPERTY, DEFAULT_STORE_CONCURRENCY);
+        if (!pushEnabled || concurrency <= 0) {
+            return buildCacheService;
+        }
+        int maxPendingStores = Math.max(concurrency, Integer.getInteger(MAX_PENDING_STORES_PROPERTY, DEFAULT_MAX_PENDING_STORES));
+        return new BackgroundStoringBuildCacheServiceDecorator(temporaryFileProvider, executorFactory, concurrency, maxPendingStores, buildCacheService);
+    }
+
+    private RoleAwareBuildCacheService shortCircuitOnErrors(RoleAwareBuildCacheService buildCacheService) {
+        return new ShortCircuitingErrorHandlerBuildCacheServiceDecorator(MAX_ERROR_COUNT_FOR_BUILD_CACHE, buildCacheService);
+    }
+
     @VisibleForTesting
     RoleAwareBuildCacheService createDecoratedBuildCacheService(String role, BuildCache buildCache) {
         RoleAwareBuildCacheService buildCacheService = new BuildCacheServiceWithRole(role, createRawBuildCacheService(buildCache));
         LOGGER.warn("Using {} as {} build cache, push is {}.", buildCacheService.getDescription(), role, buildCache.isPush() ? "enabled" : "disabled");
         buildCacheService = new BuildOperationFiringBuildCacheServiceDecorator(buildOperationExecutor, buildCacheService);
         buildCacheService = new LoggingBuildCacheServiceDecorator(buildCacheService);
-        buildCacheService = new ShortCircuitingErrorHandlerBuildCacheServiceDecorator(MAX_ERROR_COUNT_FOR_BUILD_CACHE, buildCacheService);
         return buildCacheService;
     }
 
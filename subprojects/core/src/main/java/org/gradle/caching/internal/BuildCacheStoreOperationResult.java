@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+/**
+ * The result of the build operation that stores an entry in a build cache.
+ */
+public class BuildCacheStoreOperationResult {
+    private final long entrySize;
+    private final long queuedMillis;
+    private final int pendingStores;
+
+    public BuildCacheStoreOperationResult(long entrySize, long queuedMillis, int pendingStores) {
+        this.entrySize = entrySize;
+        this.queuedMillis = queuedMillis;
+        this.pendingStores = pendingStores;
+    }
+
+    /**
+     * The number of bytes written to the build cache.
+     */
+    public long getEntrySize() {
+        return entrySize;
+    }
+
+    /**
+     * The time the entry waited to be stored in the background, or 0 when it was stored on the thread that produced it.
+     */
+    public long getQueuedMillis() {
+        return queuedMillis;
+    }
+
+    /**
+     * The number of entries waiting or being stored in the background when this entry was queued, including this one.
+     */
+    public int getPendingStores() {
+        return pendingStores;
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.gradle.caching.internal;
 
+import com.google.common.io.CountingOutputStream;
 import org.gradle.api.Action;
 import org.gradle.caching.BuildCacheEntryReader;
 import org.gradle.caching.BuildCacheEntryWriter;
@@ -85,13 +86,24 @@ public class BuildOperationFiringBuildCacheServiceDecorator extends AbstractRole
             buildOperationExecutor.run(BuildOperationDetails.displayName("Store entry " + key + " in " + getRole() + " build cache").build(), new Action<BuildOperationContext>() {
                 @Override
                 public void execute(BuildOperationContext buildOperationContext) {
+                    CountingOutputStream countingOutput = new CountingOutputStream(output);
                     try {
-                        delegate.writeTo(output);
+                        delegate.writeTo(countingOutput);
                     } catch (IOException e) {
                         buildOperationContext.failed(e);
+                        return;
                     }
+                    buildOperationContext.setResult(createResult(countingOutput.getCount()));
                 }
             });
         }
+
+        private BuildCacheStoreOperationResult createResult(long entrySize) {
+            if (delegate instanceof QueuedBuildCacheEntryWriter) {
+                QueuedBuildCacheEntryWriter queuedWriter = (QueuedBuildCacheEntryWriter) delegate;
+                return new BuildCacheStoreOperationResult(entrySize, queuedWriter.getQueuedMillis(), queuedWriter.getPendingStores());
+            }
+            return new BuildCacheStoreOperationResult(entrySize, 0, 0);
+        }
     }
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+import org.gradle.caching.BuildCacheException;
+
+import java.util.List;
+
+/**
+ * A {@link RoleAwareBuildCacheService} that finishes storing entries after {@link #store} has returned, and reports the failures of those stores separately.
+ */
+public interface DeferredStoringBuildCacheService extends RoleAwareBuildCacheService {
+    /**
+     * Returns the failures of the stores that have finished since the last call, and forgets them.
+     */
+    List<BuildCacheException> takeStoreFailures();
+}
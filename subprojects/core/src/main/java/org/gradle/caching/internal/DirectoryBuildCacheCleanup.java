@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+import com.google.common.collect.Lists;
+import org.gradle.api.UncheckedIOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Removes entries from a directory build cache that have not been used for a given time, and then the least recently used entries until the cache fits its target size.
+ *
+ * <p>The time an entry was last used is tracked via the last modified time of its file, which {@link DirectoryBuildCacheService} updates on each load.</p>
+ *
+ * <p>A marker file in the cache directory records the last time the cache was cleaned, so that the directory is only scanned once per {@link #CLEANUP_INTERVAL_MILLIS}, even when several builds share it.</p>
+ */
+public class DirectoryBuildCacheCleanup {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryBuildCacheCleanup.class);
+
+    public static final long CLEANUP_INTERVAL_MILLIS = 24 * 60 * 60 * 1000L;
+    static final String MARKER_FILE_NAME = "gc.properties";
+
+    private static final Pattern CACHE_ENTRY_PATTERN = Pattern.compile("\\p{XDigit}{32}");
+    private static final Comparator<CacheEntry> LEAST_RECENTLY_USED_FIRST = new Comparator<CacheEntry>() {
+        @Override
+        public int compare(CacheEntry o1, CacheEntry o2) {
+            return o1.lastUsed < o2.lastUsed ? -1 : (o1.lastUsed == o2.lastUsed ? 0 : 1);
+        }
+    };
+
+    private final File baseDir;
+    private final long targetSizeInBytes;
+    private final long maxAgeInMillis;
+
+    public DirectoryBuildCacheCleanup(File baseDir, long targetSizeInBytes, long maxAgeInMillis) {
+        this.baseDir = baseDir;
+        this.targetSizeInBytes = targetSizeInBytes;
+        this.maxAgeInMillis = maxAgeInMillis;
+    }
+
+    /**
+     * Returns whether the cache has not been cleaned up within the last {@link #CLEANUP_INTERVAL_MILLIS}.
+     */
+    public boolean isCleanupRequired(long currentTime) {
+        File marker = getMarkerFile();
+        return !marker.isFile() || marker.lastModified() + CLEANUP_INTERVAL_MILLIS < currentTime;
+    }
+
+    /**
+     * Cleans up the cache and records the time of the cleanup.
+     */
+    public void cleanup(long currentTime) {
+        touchMarkerFile(currentTime);
+
+        List<CacheEntry> entries = findEntries();
+        Collections.sort(entries, LEAST_RECENTLY_USED_FIRST);
+
+        long totalSize = 0;
+        for (CacheEntry entry : entries) {
+            totalSize += entry.size;
+        }
+
+        long removedSize = 0;
+        int removedCount = 0;
+        long oldestAllowed = currentTime - maxAgeInMillis;
+        for (CacheEntry entry : entries) {
+            if (totalSize - removedSize <= targetSizeInBytes && entry.lastUsed >= oldestAllowed) {
+                // Entries are ordered by last use, so all remaining entries are kept
+                break;
+            }
+            // Entries still in use by another process may fail to be deleted, these are kept until the next cleanup
+            if (entry.file.delete()) {
+                removedSize += entry.size;
+                removedCount++;
+            }
+        }
+        LOGGER.info("Removed {} entries ({} bytes) from build cache in {}.", removedCount, removedSize, baseDir);
+    }
+
+    private List<CacheEntry> findEntries() {
+        File[] files = baseDir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return CACHE_ENTRY_PATTERN.matcher(file.getName()).matches() && file.isFile();
+            }
+        });
+        List<CacheEntry> entries = Lists.newArrayListWithCapacity(files == null ? 0 : files.length);
+        if (files != null) {
+            for (File file : files) {
+                entries.add(new CacheEntry(file, file.lastModified(), file.length()));
+            }
+        }
+        return entries;
+    }
+
+    private void touchMarkerFile(long currentTime) {
+        File marker = getMarkerFile();
+        try {
+            if (!marker.isFile() && !marker.createNewFile() && !marker.isFile()) {
+                throw new IOException("Could not create " + marker);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        marker.setLastModified(currentTime);
+    }
+
+    private File getMarkerFile() {
+        return new File(baseDir, MARKER_FILE_NAME);
+    }
+
+    private static class CacheEntry {
+        private final File file;
+        private final long lastUsed;
+        private final long size;
+
+        private CacheEntry(File file, long lastUsed, long size) {
+            this.file = file;
+            this.lastUsed = lastUsed;
+            this.size = size;
+        }
+    }
+}
@@ -39,14 +39,16 @@ import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class DirectoryBuildCacheService implements BuildCacheService {
     private final PersistentCache persistentCache;
+    private final DirectoryBuildCacheCleanup cleanup;
 
-    public DirectoryBuildCacheService(CacheRepository cacheRepository, File baseDir) {
+    public DirectoryBuildCacheService(CacheRepository cacheRepository, File baseDir, long targetSizeInBytes, long maxAgeInMillis) {
         this.persistentCache = cacheRepository
             .cache(checkDirectory(baseDir))
             .withDisplayName("Build cache")
             .withLockOptions(mode(None))
             .withCrossVersionCache(CacheBuilder.LockTarget.DefaultTarget)
             .open();
+        this.cleanup = new DirectoryBuildCacheCleanup(persistentCache.getBaseDir(), targetSizeInBytes, maxAgeInMillis);
     }
 
     private static File checkDirectory(File directory) {
@@ -75,6 +77,8 @@ public class DirectoryBuildCacheService implements BuildCacheService {
             public Boolean create() {
                 File file = getFile(key.getHashCode());
                 if (file.isFile()) {
+                    // Record the access for the least recently used eviction
+                    file.setLastModified(System.currentTimeMillis());
                     try {
                         Closer closer = Closer.create();
                         FileInputStream stream = closer.register(new FileInputStream(file));
@@ -125,6 +129,13 @@ public class DirectoryBuildCacheService implements BuildCacheService {
 
     @Override
     public void close() throws IOException {
-        persistentCache.close();
+        try {
+            long now = System.currentTimeMillis();
+            if (cleanup.isCleanupRequired(now)) {
+                cleanup.cleanup(now);
+            }
+        } finally {
+            persistentCache.close();
+        }
     }
 }
@@ -26,6 +26,7 @@ import org.gradle.caching.local.DirectoryBuildCache;
 
 import javax.inject.Inject;
 import java.io.File;
+import java.util.concurrent.TimeUnit;
 
 public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFactory<DirectoryBuildCache> {
     private static final String BUILD_CACHE_VERSION = "1";
@@ -51,6 +52,8 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
         } else {
             target = cacheScopeMapping.getBaseDirectory(null, BUILD_CACHE_KEY, VersionStrategy.SharedCache);
         }
-        return new DirectoryBuildCacheService(cacheRepository, target);
+        long targetSizeInBytes = configuration.getTargetSizeInMB() * 1024 * 1024;
+        long maxAgeInMillis = TimeUnit.DAYS.toMillis(configuration.getRemoveUnusedEntriesAfterDays());
+        return new DirectoryBuildCacheService(cacheRepository, target, targetSizeInBytes, maxAgeInMillis);
     }
 }
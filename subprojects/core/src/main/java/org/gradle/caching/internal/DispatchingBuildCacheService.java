@@ -18,6 +18,7 @@ package org.gradle.caching.internal;
 
 import com.google.common.io.Files;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.internal.file.TemporaryFileProvider;
 import org.gradle.caching.BuildCacheEntryReader;
@@ -25,6 +26,7 @@ import org.gradle.caching.BuildCacheEntryWriter;
 import org.gradle.caching.BuildCacheException;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.io.NullOutputStream;
 import org.gradle.util.GFileUtils;
 
 import java.io.BufferedOutputStream;
@@ -32,8 +34,15 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 
+/**
+ * Loads entries from the local build cache, falling back to the remote one, and stores them in either or both caches.
+ *
+ * <p>When pushing to the local cache is enabled, entries loaded from the remote cache are copied to a temporary file as they are read, and stored in
+ * the local cache from there, so that later builds find them locally.</p>
+ */
 public class DispatchingBuildCacheService implements RoleAwareBuildCacheService {
     private final RoleAwareBuildCacheService local;
     private final boolean pushToLocal;
@@ -53,7 +62,29 @@ public class DispatchingBuildCacheService implements RoleAwareBuildCacheService
 
     @Override
     public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
-        return local.load(key, reader) || remote.load(key, reader);
+        if (local.load(key, reader)) {
+            return true;
+        }
+        if (!pushToLocal) {
+            return remote.load(key, reader);
+        }
+        return loadFromRemoteAndStoreLocally(key, reader);
+    }
+
+    private boolean loadFromRemoteAndStoreLocally(BuildCacheKey key, BuildCacheEntryReader reader) {
+        File destination = temporaryFileProvider.createTemporaryFile("gradle_cache", "entry");
+        try {
+            TeeBuildCacheEntryReader teeReader = new TeeBuildCacheEntryReader(reader, destination);
+            if (!remote.load(key, teeReader)) {
+                return false;
+            }
+            if (teeReader.isComplete()) {
+                local.store(key, new CopyBuildCacheEntryWriter(destination));
+            }
+            return true;
+        } finally {
+            GFileUtils.deleteQuietly(destination);
+        }
     }
 
     @Override
@@ -73,6 +104,7 @@ public class DispatchingBuildCacheService implements RoleAwareBuildCacheService
             writeCacheEntryLocally(writer, destination);
             BuildCacheEntryWriter copier = new CopyBuildCacheEntryWriter(destination);
             local.store(key, copier);
+            // The remote cache is the last to use the packed entry, so it may move it instead of copying it
             remote.store(key, copier);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
@@ -108,7 +140,41 @@ public class DispatchingBuildCacheService implements RoleAwareBuildCacheService
         CompositeStoppable.stoppable(local, remote).stop();
     }
 
-    private class CopyBuildCacheEntryWriter implements BuildCacheEntryWriter {
+    /**
+     * Passes the cache entry to the given reader while also writing it to a local file.
+     */
+    private static class TeeBuildCacheEntryReader implements BuildCacheEntryReader {
+        private final BuildCacheEntryReader reader;
+        private final File destination;
+        private boolean complete;
+
+        private TeeBuildCacheEntryReader(BuildCacheEntryReader reader, File destination) {
+            this.reader = reader;
+            this.destination = destination;
+        }
+
+        @Override
+        public void readFrom(InputStream input) throws IOException {
+            OutputStream fileOutputStream = null;
+            try {
+                fileOutputStream = new BufferedOutputStream(new FileOutputStream(destination));
+                InputStream teeInputStream = new TeeInputStream(input, fileOutputStream);
+                reader.readFrom(teeInputStream);
+                // The reader may stop before the end of the entry
+                IOUtils.copyLarge(teeInputStream, NullOutputStream.INSTANCE);
+                fileOutputStream.close();
+                complete = true;
+            } finally {
+                IOUtils.closeQuietly(fileOutputStream);
+            }
+        }
+
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    private class CopyBuildCacheEntryWriter implements PackedBuildCacheEntryWriter {
         private final File source;
 
         private CopyBuildCacheEntryWriter(File source) {
@@ -119,5 +185,10 @@ public class DispatchingBuildCacheService implements RoleAwareBuildCacheService
         public void writeTo(OutputStream output) throws IOException {
             Files.copy(source, output);
         }
+
+        @Override
+        public boolean moveTo(File destination) {
+            return source.renameTo(destination);
+        }
     }
 }
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+import org.gradle.caching.BuildCacheEntryWriter;
+
+import java.io.File;
+
+/**
+ * A {@link BuildCacheEntryWriter} for an entry that has already been packed to a local file.
+ */
+public interface PackedBuildCacheEntryWriter extends BuildCacheEntryWriter {
+    /**
+     * Moves the packed entry to the given file, so that it can be written after the caller has finished with this writer.
+     * Only the last consumer of the writer may do this.
+     *
+     * @return {@code true} if the entry was moved, {@code false} if it has to be written to the file instead.
+     */
+    boolean moveTo(File destination);
+}
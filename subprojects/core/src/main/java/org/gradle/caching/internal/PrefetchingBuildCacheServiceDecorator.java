@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+import com.google.common.collect.Maps;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.file.TemporaryFileProvider;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+import org.gradle.internal.UncheckedException;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * {@code BuildCacheService} decorator that can load entries ahead of time into temporary files.
+ *
+ * <p>A later {@link #load(BuildCacheKey, BuildCacheEntryReader)} for a prefetched key reads the entry from the temporary file,
+ * waiting for the prefetch to finish if it is still running, instead of loading it from the delegate again.
+ * Each prefetched entry is used at most once.</p>
+ */
+public class PrefetchingBuildCacheServiceDecorator extends ForwardingBuildCacheService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrefetchingBuildCacheServiceDecorator.class);
+
+    private final BuildCacheService delegate;
+    private final TemporaryFileProvider temporaryFileProvider;
+    private final ConcurrentMap<String, PrefetchedEntry> prefetchedEntries = Maps.newConcurrentMap();
+
+    public PrefetchingBuildCacheServiceDecorator(TemporaryFileProvider temporaryFileProvider, BuildCacheService delegate) {
+        this.delegate = delegate;
+        this.temporaryFileProvider = temporaryFileProvider;
+    }
+
+    @Override
+    protected BuildCacheService delegate() {
+        return delegate;
+    }
+
+    /**
+     * Loads the entry with the given key from the delegate into a temporary file. Blocks until the entry has been loaded.
+     */
+    public void prefetch(BuildCacheKey key) {
+        PrefetchedEntry entry = new PrefetchedEntry();
+        if (prefetchedEntries.putIfAbsent(key.getHashCode(), entry) != null) {
+            return;
+        }
+        File destination = temporaryFileProvider.createTemporaryFile("gradle_cache", "entry");
+        boolean found = false;
+        try {
+            found = delegate.load(key, new StagingBuildCacheEntryReader(destination));
+            entry.loaded(found ? destination : null);
+        } catch (RuntimeException e) {
+            LOGGER.debug("Could not prefetch entry {}", key, e);
+        } finally {
+            if (!found) {
+                GFileUtils.deleteQuietly(destination);
+            }
+            entry.done.countDown();
+        }
+    }
+
+    @Override
+    public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+        PrefetchedEntry entry = prefetchedEntries.remove(key.getHashCode());
+        if (entry == null) {
+            return super.load(key, reader);
+        }
+        try {
+            entry.done.await();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        if (!entry.loaded) {
+            // The prefetch failed, try again
+            return super.load(key, reader);
+        }
+        if (entry.file == null) {
+            return false;
+        }
+        try {
+            readCacheEntry(entry.file, reader);
+            return true;
+        } finally {
+            GFileUtils.deleteQuietly(entry.file);
+        }
+    }
+
+    private static void readCacheEntry(File source, BuildCacheEntryReader reader) {
+        InputStream fileInputStream = null;
+        try {
+            fileInputStream = new BufferedInputStream(new FileInputStream(source));
+            reader.readFrom(fileInputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            IOUtils.closeQuietly(fileInputStream);
+        }
+    }
+
+    /**
+     * Deletes the entries that were prefetched but not used. Prefetches still running are not affected.
+     */
+    public void discardPrefetchedEntries() {
+        for (String hashCode : prefetchedEntries.keySet()) {
+            PrefetchedEntry entry = prefetchedEntries.get(hashCode);
+            if (entry != null && entry.done.getCount() == 0 && prefetchedEntries.remove(hashCode, entry) && entry.file != null) {
+                GFileUtils.deleteQuietly(entry.file);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        discardPrefetchedEntries();
+        super.close();
+    }
+
+    private static class PrefetchedEntry {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean loaded;
+        private volatile File file;
+
+        private void loaded(File file) {
+            this.file = file;
+            this.loaded = true;
+        }
+    }
+
+    private static class StagingBuildCacheEntryReader implements BuildCacheEntryReader {
+        private final File destination;
+
+        private StagingBuildCacheEntryReader(File destination) {
+            this.destination = destination;
+        }
+
+        @Override
+        public void readFrom(InputStream input) throws IOException {
+            OutputStream fileOutputStream = null;
+            try {
+                fileOutputStream = new BufferedOutputStream(new FileOutputStream(destination));
+                IOUtils.copyLarge(input, fileOutputStream);
+                fileOutputStream.close();
+            } finally {
+                IOUtils.closeQuietly(fileOutputStream);
+            }
+        }
+    }
+}
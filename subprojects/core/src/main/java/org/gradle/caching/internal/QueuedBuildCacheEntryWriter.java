@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+import org.gradle.caching.BuildCacheEntryWriter;
+
+/**
+ * A {@link BuildCacheEntryWriter} for an entry that waited to be stored in the background.
+ */
+public interface QueuedBuildCacheEntryWriter extends BuildCacheEntryWriter {
+    /**
+     * The time between queueing the entry and starting to write it to the build cache.
+     */
+    long getQueuedMillis();
+
+    /**
+     * The number of stores waiting or running, including this one, when the entry was queued.
+     */
+    int getPendingStores();
+}
@@ -33,6 +33,9 @@ import java.util.concurrent.atomic.AtomicInteger;
  * The {@link BuildCacheException}s are counted and then ignored.
  *
  * After that the decorator short-circuits cache requests as no-ops.
+ *
+ * Failures of stores that a {@link DeferredStoringBuildCacheService} finishes in the background are counted as well,
+ * when the next request is made or the service is closed.
  */
 public class ShortCircuitingErrorHandlerBuildCacheServiceDecorator extends AbstractRoleAwareBuildCacheServiceDecorator {
     private static final Logger LOGGER = LoggerFactory.getLogger(ShortCircuitingErrorHandlerBuildCacheServiceDecorator.class);
@@ -49,6 +52,7 @@ public class ShortCircuitingErrorHandlerBuildCacheServiceDecorator extends Abstr
 
     @Override
     public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) {
+        recordDeferredFailures();
         if (enabled.get()) {
             try {
                 return super.load(key, reader);
@@ -62,6 +66,7 @@ public class ShortCircuitingErrorHandlerBuildCacheServiceDecorator extends Abstr
 
     @Override
     public void store(BuildCacheKey key, BuildCacheEntryWriter writer) {
+        recordDeferredFailures();
         if (enabled.get()) {
             try {
                 super.store(key, writer);
@@ -74,12 +79,25 @@ public class ShortCircuitingErrorHandlerBuildCacheServiceDecorator extends Abstr
 
     @Override
     public void close() throws IOException {
-        if (!enabled.get()) {
-            LOGGER.warn("The {} build cache was disabled during the build after encountering {} errors.",
-                getRole(), maxErrorCount
-            );
+        try {
+            super.close();
+        } finally {
+            recordDeferredFailures();
+            if (!enabled.get()) {
+                LOGGER.warn("The {} build cache was disabled during the build after encountering {} errors.",
+                    getRole(), maxErrorCount
+                );
+            }
+        }
+    }
+
+    private void recordDeferredFailures() {
+        if (delegate() instanceof DeferredStoringBuildCacheService) {
+            // These have already been logged with the key of the entry that could not be stored
+            for (BuildCacheException ignored : ((DeferredStoringBuildCacheService) delegate()).takeStoreFailures()) {
+                recordFailure();
+            }
         }
-        super.close();
     }
 
     private void recordFailure() {
@@ -21,38 +21,44 @@ import org.gradle.api.UncheckedIOException;
 import org.gradle.api.internal.TaskOutputsInternal;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * Adds compression and CRC32 checks to the packed task output.
+ *
+ * <p>The output is compressed in blocks on a pool of threads, each block becoming a separate member of the GZIP stream.
+ * Decompression happens on the unpacking thread, as the members cannot be located without decompressing the ones before them.</p>
  */
-public class GZipTaskOutputPacker implements TaskOutputPacker {
+public class GZipTaskOutputPacker implements TaskOutputPacker, Stoppable {
     private final TaskOutputPacker delegate;
+    private final StoppableExecutor executor;
+    private final int maxPendingBlocks;
 
-    public GZipTaskOutputPacker(TaskOutputPacker delegate) {
+    public GZipTaskOutputPacker(TaskOutputPacker delegate, ExecutorFactory executorFactory) {
         this.delegate = delegate;
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), 8);
+        this.executor = executorFactory.create("Build cache output compression", threads);
+        this.maxPendingBlocks = 2 * threads;
     }
 
     @Override
     public void pack(TaskOutputsInternal taskOutputs, OutputStream output, TaskOutputOriginWriter writeOrigin) {
-        GZIPOutputStream gzipOutput = createGzipOutputStream(output);
+        ParallelGZipOutputStream gzipOutput = new ParallelGZipOutputStream(output, executor, maxPendingBlocks);
         try {
             delegate.pack(taskOutputs, gzipOutput, writeOrigin);
-        } finally {
-            IOUtils.closeQuietly(gzipOutput);
-        }
-    }
-
-    private GZIPOutputStream createGzipOutputStream(OutputStream output) {
-        try {
-            return new GZIPOutputStream(output);
+            gzipOutput.close();
         } catch (IOException e) {
             throw new UncheckedIOException(e);
+        } finally {
+            IOUtils.closeQuietly(gzipOutput);
         }
     }
 
@@ -73,4 +79,9 @@ public class GZipTaskOutputPacker implements TaskOutputPacker {
             throw new UncheckedIOException(e);
         }
     }
+
+    @Override
+    public void stop() {
+        CompositeStoppable.stoppable(executor, delegate).stop();
+    }
 }
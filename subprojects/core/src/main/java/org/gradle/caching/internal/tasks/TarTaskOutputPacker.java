@@ -19,8 +19,11 @@ package org.gradle.caching.internal.tasks;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.input.CloseShieldInputStream;
 import org.apache.tools.tar.TarEntry;
@@ -44,6 +47,10 @@ import org.gradle.api.specs.Specs;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
 import org.gradle.internal.IoActions;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
 import org.gradle.internal.nativeplatform.filesystem.FileSystem;
 
 import java.io.ByteArrayOutputStream;
@@ -51,7 +58,14 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
@@ -61,18 +75,33 @@ import java.util.regex.Pattern;
  * Packages task output to a POSIX TAR file. Because Ant's TAR implementation
  * supports only 1 second precision for file modification times, we encode the
  * fractional nanoseconds into the group ID of the file.
+ *
+ * <p>The TAR file itself is read and written sequentially, but the contents of the
+ * small files in an output directory are read ahead and written out on a pool of
+ * threads, so that the file system is not accessed one file at a time.</p>
  */
-public class TarTaskOutputPacker implements TaskOutputPacker {
+public class TarTaskOutputPacker implements TaskOutputPacker, Stoppable {
     private static final String METADATA_PATH = "METADATA";
     private static final Pattern PROPERTY_PATH = Pattern.compile("(missing-)?property-([^/]+)(?:/(.*))?");
     private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    // Files larger than this are copied directly between the file system and the TAR file
+    private static final int MAX_BUFFERED_FILE_SIZE = 1024 * 1024;
+    // The maximum number of bytes of file contents held in memory while packing or unpacking
+    private static final int MAX_BUFFERED_BYTES = 32 * 1024 * 1024;
 
     private final DefaultDirectoryWalkerFactory directoryWalkerFactory;
     private final FileSystem fileSystem;
+    private final StoppableExecutor executor;
 
-    public TarTaskOutputPacker(FileSystem fileSystem) {
+    public TarTaskOutputPacker(FileSystem fileSystem, ExecutorFactory executorFactory) {
         this.directoryWalkerFactory = new DefaultDirectoryWalkerFactory(JavaVersion.current(), fileSystem);
         this.fileSystem = fileSystem;
+        this.executor = executorFactory.create("Build cache output file access", Math.min(Runtime.getRuntime().availableProcessors(), 8));
+    }
+
+    @Override
+    public void stop() {
+        executor.stop();
     }
 
     @Override
@@ -147,27 +176,68 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         final String propertyRoot = propertyPath + "/";
         outputStream.putNextEntry(new TarEntry(propertyRoot));
         outputStream.closeEntry();
+        final List<PackedEntry> entries = Lists.newArrayList();
         FileVisitor visitor = new FileVisitor() {
             @Override
             public void visitDir(FileVisitDetails dirDetails) {
-                try {
-                    storeDirectoryEntry(dirDetails, propertyRoot, outputStream);
-                } catch (IOException e) {
-                    throw new UncheckedIOException(e);
-                }
+                String path = propertyRoot + dirDetails.getRelativePath().getPathString() + "/";
+                entries.add(new PackedEntry(null, path, dirDetails.getLastModified(), 0, UnixStat.DIR_FLAG | dirDetails.getMode()));
             }
 
             @Override
             public void visitFile(FileVisitDetails fileDetails) {
+                String path = propertyRoot + fileDetails.getRelativePath().getPathString();
+                entries.add(new PackedEntry(fileDetails.getFile(), path, fileDetails.getLastModified(), fileDetails.getSize(), UnixStat.FILE_FLAG | fileDetails.getMode()));
+            }
+        };
+        directoryWalkerFactory.create().walkDir(directory, RelativePath.EMPTY_ROOT, visitor, Specs.satisfyAll(), new AtomicBoolean(), false);
+        storeEntries(entries, outputStream);
+    }
+
+    /**
+     * Writes the given entries in order, while reading the contents of the small files that come next on the thread pool.
+     */
+    private void storeEntries(List<PackedEntry> entries, TarOutputStream outputStream) throws IOException {
+        Deque<PackedEntry> readAhead = new ArrayDeque<PackedEntry>();
+        long bytesReadAhead = 0;
+        int next = 0;
+        try {
+            for (PackedEntry entry : entries) {
+                while (next < entries.size() && (readAhead.isEmpty() || bytesReadAhead < MAX_BUFFERED_BYTES)) {
+                    PackedEntry candidate = entries.get(next++);
+                    if (candidate.file != null && candidate.size <= MAX_BUFFERED_FILE_SIZE) {
+                        candidate.content = executor.submit(readFile(candidate.file));
+                        readAhead.addLast(candidate);
+                        bytesReadAhead += candidate.size;
+                    }
+                }
+                createTarEntry(entry.path, entry.lastModified, entry.size, entry.mode, outputStream);
                 try {
-                    String path = propertyRoot + fileDetails.getRelativePath().getPathString();
-                    storeFileEntry(fileDetails.getFile(), path, fileDetails.getLastModified(), fileDetails.getSize(), fileDetails.getMode(), outputStream);
-                } catch (IOException e) {
-                    throw new UncheckedIOException(e);
+                    if (entry.content != null) {
+                        readAhead.removeFirst();
+                        bytesReadAhead -= entry.size;
+                        outputStream.write(getUninterruptibly(entry.content));
+                    } else if (entry.file != null) {
+                        Files.copy(entry.file, outputStream);
+                    }
+                } finally {
+                    outputStream.closeEntry();
                 }
             }
+        } finally {
+            for (PackedEntry entry : readAhead) {
+                entry.content.cancel(false);
+            }
+        }
+    }
+
+    private static Callable<byte[]> readFile(final File file) {
+        return new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return Files.toByteArray(file);
+            }
         };
-        directoryWalkerFactory.create().walkDir(directory, RelativePath.EMPTY_ROOT, visitor, Specs.satisfyAll(), new AtomicBoolean(), false);
     }
 
     private void storeFileProperty(String propertyPath, File file, TarOutputStream outputStream) throws IOException {
@@ -183,12 +253,6 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         outputStream.closeEntry();
     }
 
-    private void storeDirectoryEntry(FileVisitDetails dirDetails, String propertyRoot, TarOutputStream outputStream) throws IOException {
-        String path = dirDetails.getRelativePath().getPathString();
-        createTarEntry(propertyRoot + path + "/", dirDetails.getLastModified(), 0, UnixStat.DIR_FLAG | dirDetails.getMode(), outputStream);
-        outputStream.closeEntry();
-    }
-
     private void storeFileEntry(File file, String path, long lastModified, long size, int mode, TarOutputStream outputStream) throws IOException {
         createTarEntry(path, lastModified, size, UnixStat.FILE_FLAG | mode, outputStream);
         try {
@@ -227,6 +291,26 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
                 return propertySpec.getPropertyName();
             }
         });
+        boolean originSeen = false;
+        PendingWrites pendingWrites = new PendingWrites();
+        boolean unpacked = false;
+        try {
+            originSeen = unpackEntries(propertySpecs, tarInput, readOriginAction, pendingWrites);
+            unpacked = true;
+        } finally {
+            if (unpacked) {
+                pendingWrites.await();
+            } else {
+                // Do not replace the failure that is already being thrown
+                pendingWrites.awaitIgnoringFailures();
+            }
+        }
+        if (!originSeen) {
+            throw new IllegalStateException("Cached result format error, no origin metadata was found.");
+        }
+    }
+
+    private boolean unpackEntries(Map<String, TaskOutputFilePropertySpec> propertySpecs, TarInputStream tarInput, TaskOutputOriginReader readOriginAction, PendingWrites pendingWrites) throws IOException {
         boolean originSeen = false;
         TarEntry entry;
         while ((entry = tarInput.getNextEntry()) != null) {
@@ -251,15 +335,13 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
 
                 boolean outputMissing = matcher.group(1) != null;
                 String childPath = matcher.group(3);
-                unpackPropertyEntry(propertySpec, tarInput, entry, childPath, outputMissing);
+                unpackPropertyEntry(propertySpec, tarInput, entry, childPath, outputMissing, pendingWrites);
             }
         }
-        if (!originSeen) {
-            throw new IllegalStateException("Cached result format error, no origin metadata was found.");
-        }
+        return originSeen;
     }
 
-    private void unpackPropertyEntry(CacheableTaskOutputFilePropertySpec propertySpec, InputStream input, TarEntry entry, String childPath, boolean missing) throws IOException {
+    private void unpackPropertyEntry(CacheableTaskOutputFilePropertySpec propertySpec, InputStream input, TarEntry entry, String childPath, boolean missing, PendingWrites pendingWrites) throws IOException {
         File propertyRoot = propertySpec.getOutputFile();
         if (propertyRoot == null) {
             throw new IllegalStateException("Optional property should have a value: " + propertySpec.getPropertyName());
@@ -293,6 +375,13 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
             outputFile = propertyRoot;
         } else {
             outputFile = new File(propertyRoot, childPath);
+            if (!isDirEntry && entry.getSize() <= MAX_BUFFERED_FILE_SIZE) {
+                // Parent directories precede their contents in the TAR file, so the file can be written while the next entries are read
+                byte[] content = new byte[(int) entry.getSize()];
+                ByteStreams.readFully(input, content);
+                pendingWrites.submit(writeFile(outputFile, content, entry), content.length);
+                return;
+            }
         }
 
         if (isDirEntry) {
@@ -300,7 +389,21 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         } else {
             Files.asByteSink(outputFile).writeFrom(input);
         }
+        restoreFileAttributes(outputFile, entry);
+    }
+
+    private Callable<Void> writeFile(final File outputFile, final byte[] content, final TarEntry entry) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                Files.write(content, outputFile);
+                restoreFileAttributes(outputFile, entry);
+                return null;
+            }
+        };
+    }
 
+    private void restoreFileAttributes(File outputFile, TarEntry entry) {
         //noinspection OctalInteger
         fileSystem.chmod(outputFile, entry.getMode() & 0777);
         long lastModified = getModificationTime(entry);
@@ -309,6 +412,14 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         }
     }
 
+    private static byte[] getUninterruptibly(Future<byte[]> future) {
+        try {
+            return Uninterruptibles.getUninterruptibly(future);
+        } catch (ExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+    }
+
     @VisibleForTesting
     static void ensureDirectoryForProperty(OutputType outputType, File specRoot) throws IOException {
         switch (outputType) {
@@ -357,4 +468,80 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         lastModified += TimeUnit.NANOSECONDS.toMillis(excessNanos);
         return lastModified;
     }
+
+    private static class PackedEntry {
+        private final File file;
+        private final String path;
+        private final long lastModified;
+        private final long size;
+        private final int mode;
+        private Future<byte[]> content;
+
+        PackedEntry(File file, String path, long lastModified, long size, int mode) {
+            this.file = file;
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.mode = mode;
+        }
+    }
+
+    /**
+     * The files being written on the thread pool, bounded by the number of bytes held in memory.
+     */
+    private class PendingWrites {
+        private final Semaphore bufferedBytes = new Semaphore(MAX_BUFFERED_BYTES);
+        private final List<Future<Void>> writes = Lists.newArrayList();
+
+        void submit(final Callable<Void> write, final int size) {
+            bufferedBytes.acquireUninterruptibly(size);
+            try {
+                writes.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        try {
+                            return write.call();
+                        } finally {
+                            bufferedBytes.release(size);
+                        }
+                    }
+                }));
+            } catch (RuntimeException e) {
+                bufferedBytes.release(size);
+                throw e;
+            }
+        }
+
+        /**
+         * Waits for all writes to finish, and rethrows the first failure.
+         */
+        void await() {
+            Throwable failure = waitForWrites();
+            if (failure != null) {
+                throw UncheckedException.throwAsUncheckedException(failure);
+            }
+        }
+
+        /**
+         * Waits for all writes to finish, so that none of them is still running once unpacking has failed.
+         */
+        void awaitIgnoringFailures() {
+            waitForWrites();
+        }
+
+        private Throwable waitForWrites() {
+            Throwable failure = null;
+            for (Future<Void> write : writes) {
+                try {
+                    Uninterruptibles.getUninterruptibly(write);
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
+            }
+            writes.clear();
+            return failure;
+        }
+    }
 }
@@ -28,6 +28,8 @@ import org.gradle.caching.configuration.AbstractBuildCache;
 @Incubating
 public class DirectoryBuildCache extends AbstractBuildCache {
     private Object directory;
+    private long targetSizeInMB = 5 * 1024;
+    private int removeUnusedEntriesAfterDays = 7;
 
     /**
      * Returns the directory to use to store the build cache.
@@ -45,4 +47,42 @@ public class DirectoryBuildCache extends AbstractBuildCache {
     public void setDirectory(Object directory) {
         this.directory = directory;
     }
+
+    /**
+     * Returns the target size of the build cache in megabytes.
+     *
+     * <p>When the build cache grows beyond this size, the least recently used entries are removed at the end of the build.</p>
+     *
+     * @since 4.0
+     */
+    public long getTargetSizeInMB() {
+        return targetSizeInMB;
+    }
+
+    /**
+     * Sets the target size of the build cache in megabytes. Defaults to 5 GB.
+     *
+     * @since 4.0
+     */
+    public void setTargetSizeInMB(long targetSizeInMB) {
+        this.targetSizeInMB = targetSizeInMB;
+    }
+
+    /**
+     * Returns the number of days after which unused entries are removed from the build cache.
+     *
+     * @since 4.0
+     */
+    public int getRemoveUnusedEntriesAfterDays() {
+        return removeUnusedEntriesAfterDays;
+    }
+
+    /**
+     * Sets the number of days after which unused entries are removed from the build cache. Defaults to 7 days.
+     *
+     * @since 4.0
+     */
+    public void setRemoveUnusedEntriesAfterDays(int removeUnusedEntriesAfterDays) {
+        this.removeUnusedEntriesAfterDays = removeUnusedEntriesAfterDays;
+    }
 }
@@ -18,10 +18,10 @@ package org.gradle.execution.taskgraph;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
-import com.google.common.base.StandardSystemProperty;
 import com.google.common.collect.*;
 import org.gradle.api.*;
 import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository;
 import org.gradle.api.internal.tasks.CachingTaskDependencyResolveContext;
 import org.gradle.api.internal.tasks.TaskContainerInternal;
 import org.gradle.api.logging.Logger;
@@ -40,7 +40,6 @@ import org.gradle.internal.graph.DirectedGraphRenderer;
 import org.gradle.internal.graph.GraphNodeRenderer;
 import org.gradle.internal.logging.text.StyledTextOutput;
 import org.gradle.util.CollectionUtils;
-import org.gradle.util.TextUtil;
 
 import java.io.File;
 import java.io.IOException;
@@ -62,13 +61,24 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
     private final Lock lock = new ReentrantLock();
     private final Condition condition = lock.newCondition();
+    private final Condition completed = lock.newCondition();
     private final Set<TaskInfo> tasksInUnknownState = new LinkedHashSet<TaskInfo>();
     private final Set<TaskInfo> entryTasks = new LinkedHashSet<TaskInfo>();
     private final TaskDependencyGraph graph = new TaskDependencyGraph();
     private final LinkedHashMap<Task, TaskInfo> executionPlan = new LinkedHashMap<Task, TaskInfo>();
-    private final List<TaskInfo> executionQueue = new LinkedList<TaskInfo>();
+    // The order in which ready tasks are picked: the execution plan order, or the estimated remaining critical path when task durations are known
+    private final Map<TaskInfo, Integer> executionOrder = new HashMap<TaskInfo, Integer>();
+    // Tasks whose dependencies have completed, in execution order. A task is only checked again when one of its dependencies completes
+    private final TreeSet<TaskInfo> readyQueue = new TreeSet<TaskInfo>(new Comparator<TaskInfo>() {
+        public int compare(TaskInfo left, TaskInfo right) {
+            return executionOrder.get(left).compareTo(executionOrder.get(right));
+        }
+    });
+    private int incompleteTasks;
+    private int waitingWorkers;
     private final List<Throwable> failures = new ArrayList<Throwable>();
     private Spec<? super Task> filter = Specs.satisfyAll();
+    private TaskDurationRepository taskDurations;
 
     private TaskFailureHandler failureHandler = new RethrowingFailureHandler();
     private final BuildCancellationToken cancellationToken;
@@ -76,6 +86,10 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     private final Multiset<String> projectsWithRunningNonParallelizableTasks = HashMultiset.create();
     private final Set<TaskInternal> runningTasks = Sets.newIdentityHashSet();
     private final Map<Task, Set<String>> canonicalizedOutputCache = Maps.newIdentityHashMap();
+    private final OutputPathTrie runningTaskOutputs = new OutputPathTrie();
+    // Running tasks which were started while no other task was running, so their outputs have not been canonicalized yet
+    private final Set<TaskInternal> runningTasksWithUnknownOutputs = Sets.newIdentityHashSet();
+    private final Set<TaskInternal> tasksBeingCanonicalized = Sets.newIdentityHashSet();
     private final Map<Task, Boolean> isParallelSafeCache = Maps.newIdentityHashMap();
     private boolean tasksCancelled;
 
@@ -307,8 +321,62 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 }
             }
         }
-        executionQueue.clear();
-        executionQueue.addAll(executionPlan.values());
+        executionOrder.clear();
+        readyQueue.clear();
+        incompleteTasks = 0;
+        List<TaskInfo> tasksInExecutionOrder = new ArrayList<TaskInfo>(executionPlan.values());
+        if (taskDurations != null) {
+            final Map<TaskInfo, Long> criticalPaths = estimateRemainingCriticalPaths();
+            // Stable, so tasks with the same estimate keep the plan order
+            Collections.sort(tasksInExecutionOrder, new Comparator<TaskInfo>() {
+                public int compare(TaskInfo left, TaskInfo right) {
+                    return criticalPaths.get(right).compareTo(criticalPaths.get(left));
+                }
+            });
+        }
+        for (TaskInfo taskInfo : tasksInExecutionOrder) {
+            executionOrder.put(taskInfo, executionOrder.size());
+            if (!taskInfo.isComplete()) {
+                incompleteTasks++;
+            }
+        }
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            maybeReady(taskInfo);
+        }
+    }
+
+    /**
+     * Estimates for each task how long it takes to execute the task and the longest chain of tasks waiting for it.
+     * Tasks that have not been executed before are assumed to take as long as an average task. Without any history all tasks take the same time, ranking them by graph depth.
+     */
+    private Map<TaskInfo, Long> estimateRemainingCriticalPaths() {
+        List<TaskInfo> tasks = new ArrayList<TaskInfo>(executionPlan.values());
+        Map<TaskInfo, Long> durations = new HashMap<TaskInfo, Long>();
+        long totalDuration = 0;
+        for (TaskInfo taskInfo : tasks) {
+            Long duration = taskDurations.getDuration(taskInfo.getTask().getPath());
+            if (duration != null) {
+                durations.put(taskInfo, Math.max(duration, 1));
+                totalDuration += Math.max(duration, 1);
+            }
+        }
+        long defaultDuration = durations.isEmpty() ? 1 : Math.max(totalDuration / durations.size(), 1);
+
+        Map<TaskInfo, Long> criticalPaths = new HashMap<TaskInfo, Long>();
+        // Tasks waiting for a task come later in the plan
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            TaskInfo taskInfo = tasks.get(i);
+            long longestWaitingPath = 0;
+            for (TaskInfo waitingTask : Iterables.concat(taskInfo.getDependencyPredecessors(), taskInfo.getMustPredecessors())) {
+                Long waitingPath = criticalPaths.get(waitingTask);
+                if (waitingPath != null && waitingPath > longestWaitingPath) {
+                    longestWaitingPath = waitingPath;
+                }
+            }
+            Long duration = durations.get(taskInfo);
+            criticalPaths.put(taskInfo, (duration == null ? defaultDuration : duration) + longestWaitingPath);
+        }
+        return criticalPaths;
     }
 
     private void maybeRemoveProcessedShouldRunAfterEdge(Stack<GraphEdge> walkedShouldRunAfterEdges, TaskInfo taskNode) {
@@ -451,11 +519,16 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             graph.clear();
             entryTasks.clear();
             executionPlan.clear();
-            executionQueue.clear();
+            executionOrder.clear();
+            readyQueue.clear();
+            incompleteTasks = 0;
             failures.clear();
             projectsWithRunningTasks.clear();
             projectsWithRunningNonParallelizableTasks.clear();
             canonicalizedOutputCache.clear();
+            runningTaskOutputs.clear();
+            runningTasksWithUnknownOutputs.clear();
+            tasksBeingCanonicalized.clear();
             isParallelSafeCache.clear();
             runningTasks.clear();
         } finally {
@@ -475,6 +548,13 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         this.failureHandler = handler;
     }
 
+    /**
+     * Prioritizes the tasks with the longest estimated remaining critical path, rather than picking tasks in plan order.
+     */
+    public void useTaskDurations(TaskDurationRepository taskDurations) {
+        this.taskDurations = taskDurations;
+    }
+
     public TaskInfo getTaskToExecute() {
         lock.lock();
         try {
@@ -482,29 +562,25 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 if (cancellationToken.isCancellationRequested()) {
                     if (abortExecution()) {
                         tasksCancelled = true;
+                        signalWaitingWorkers();
                     }
                 }
-                TaskInfo nextMatching = null;
-                boolean allTasksComplete = true;
-                Iterator<TaskInfo> iterator = executionQueue.iterator();
-                while (iterator.hasNext()) {
-                    TaskInfo taskInfo = iterator.next();
-                    allTasksComplete = allTasksComplete && taskInfo.isComplete();
-                    if (taskInfo.isReady() && taskInfo.allDependenciesComplete() && canRunWithWithCurrentlyExecutedTasks(taskInfo)) {
-                        nextMatching = taskInfo;
-                        iterator.remove();
-                        break;
-                    }
-                }
-                if (allTasksComplete) {
+                if (incompleteTasks == runningTasks.size()) {
+                    // Every task has either completed or is currently executing
                     return null;
                 }
+                TaskInfo nextMatching = takeNextRunnableTask();
                 if (nextMatching == null) {
+                    waitingWorkers++;
                     try {
                         condition.await();
                     } catch (InterruptedException e) {
                         throw new RuntimeException(e);
+                    } finally {
+                        waitingWorkers--;
                     }
+                } else if (!runningTasks.isEmpty() && !canCheckForOverlappingOutputs(nextMatching.getTask())) {
+                    canonicalizeOutputPaths(nextMatching);
                 } else {
                     if (nextMatching.allDependenciesSuccessful()) {
                         nextMatching.startExecution();
@@ -512,7 +588,8 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                         return nextMatching;
                     } else {
                         nextMatching.skipExecution();
-                        condition.signalAll();
+                        taskFinished(nextMatching);
+                        signalWaitingWorkers();
                     }
                 }
             }
@@ -521,6 +598,56 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         }
     }
 
+    @Nullable
+    private TaskInfo takeNextRunnableTask() {
+        Iterator<TaskInfo> iterator = readyQueue.iterator();
+        while (iterator.hasNext()) {
+            TaskInfo taskInfo = iterator.next();
+            if (!taskInfo.isReady() || !taskInfo.allDependenciesComplete()) {
+                // A finalizer may have enforced one of the dependencies of this task. It is queued again once that dependency completes
+                iterator.remove();
+            } else if (canRunWithWithCurrentlyExecutedTasks(taskInfo)) {
+                iterator.remove();
+                return taskInfo;
+            }
+        }
+        return null;
+    }
+
+    private void maybeReady(TaskInfo taskInfo) {
+        if (taskInfo.isReady() && executionOrder.containsKey(taskInfo) && taskInfo.allDependenciesComplete()) {
+            readyQueue.add(taskInfo);
+        }
+    }
+
+    private void taskFinished(TaskInfo taskInfo) {
+        incompleteTasks--;
+        for (TaskInfo predecessor : taskInfo.getDependencyPredecessors()) {
+            maybeReady(predecessor);
+        }
+        for (TaskInfo predecessor : taskInfo.getMustPredecessors()) {
+            maybeReady(predecessor);
+        }
+    }
+
+    /**
+     * Wakes up as many waiting workers as there are tasks which may now be able to run, rather than all of them.
+     */
+    private void signalWaitingWorkers() {
+        if (incompleteTasks == runningTasks.size()) {
+            // Nothing more to start, let the workers finish
+            condition.signalAll();
+            if (incompleteTasks == 0) {
+                completed.signalAll();
+            }
+            return;
+        }
+        int wakeups = Math.min(readyQueue.size(), waitingWorkers);
+        for (int i = 0; i < wakeups; i++) {
+            condition.signal();
+        }
+    }
+
     private boolean canRunWithWithCurrentlyExecutedTasks(TaskInfo taskInfo) {
         TaskInternal task = taskInfo.getTask();
         String projectPath = task.getProject().getPath();
@@ -535,6 +662,11 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             }
         }
 
+        if (runningTasks.isEmpty() || !canCheckForOverlappingOutputs(task)) {
+            // Checked once the output paths have been canonicalized
+            return true;
+        }
+
         Pair<TaskInternal, String> overlap = firstTaskWithOverlappingOutput(task);
         if (overlap == null) {
             return true;
@@ -545,62 +677,88 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         return false;
     }
 
-    private Set<String> canonicalizedOutputPaths(TaskInternal task) {
-        Set<String> paths = canonicalizedOutputCache.get(task);
-        if (paths == null) {
-            paths = Sets.newHashSet(Iterables.transform(task.getOutputs().getFiles(), new Function<File, String>() {
-                @Override
-                public String apply(File file) {
-                    String path;
-                    try {
-                        path = file.getCanonicalPath();
-                    } catch (IOException e) {
-                        throw new UncheckedIOException(e);
-                    }
-                    return path;
-                }
-            }));
-            canonicalizedOutputCache.put(task, paths);
-        }
-
-        return paths;
+    private boolean canCheckForOverlappingOutputs(TaskInternal task) {
+        return canonicalizedOutputCache.containsKey(task) && runningTasksWithUnknownOutputs.isEmpty();
     }
 
-    @Nullable
-    private Pair<TaskInternal, String> firstTaskWithOverlappingOutput(TaskInternal candidateTask) {
-        if (runningTasks.isEmpty()) {
-            return null;
+    /**
+     * Canonicalizes the output paths of the candidate task and of the running tasks whose outputs are not known yet. This can take a while
+     * for tasks with many outputs, so the lock is released meanwhile. The candidate is queued again afterwards.
+     */
+    private void canonicalizeOutputPaths(TaskInfo candidate) {
+        List<TaskInternal> tasks = new ArrayList<TaskInternal>();
+        if (!canonicalizedOutputCache.containsKey(candidate.getTask())) {
+            tasks.add(candidate.getTask());
+        }
+        for (TaskInternal runningTask : runningTasksWithUnknownOutputs) {
+            if (tasksBeingCanonicalized.add(runningTask)) {
+                tasks.add(runningTask);
+            }
+        }
+        if (tasks.isEmpty()) {
+            // Another worker is canonicalizing the outputs of the running tasks
+            maybeReady(candidate);
+            waitingWorkers++;
+            try {
+                condition.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                waitingWorkers--;
+            }
+            return;
         }
 
-        for (String candidateTaskOutputPath : canonicalizedOutputPaths(candidateTask)) {
-            for (TaskInternal runningTask : runningTasks) {
-                for (String runningTaskOutputPath : canonicalizedOutputPaths(runningTask)) {
-                    if (pathsOverlap(candidateTaskOutputPath, runningTaskOutputPath)) {
-                        return Pair.of(runningTask, TextUtil.shorterOf(candidateTaskOutputPath, runningTaskOutputPath));
-                    }
+        Map<TaskInternal, Set<String>> canonicalizedPaths = Maps.newIdentityHashMap();
+        lock.unlock();
+        try {
+            for (TaskInternal task : tasks) {
+                canonicalizedPaths.put(task, canonicalizedOutputPaths(task));
+            }
+        } finally {
+            lock.lock();
+            tasksBeingCanonicalized.removeAll(tasks);
+            maybeReady(candidate);
+        }
+
+        for (Map.Entry<TaskInternal, Set<String>> entry : canonicalizedPaths.entrySet()) {
+            TaskInternal task = entry.getKey();
+            if (task == candidate.getTask()) {
+                canonicalizedOutputCache.put(task, entry.getValue());
+            } else if (runningTasksWithUnknownOutputs.remove(task)) {
+                canonicalizedOutputCache.put(task, entry.getValue());
+                for (String path : entry.getValue()) {
+                    runningTaskOutputs.add(task, path);
                 }
             }
         }
-
-        return null;
+        signalWaitingWorkers();
     }
 
+    private static Set<String> canonicalizedOutputPaths(TaskInternal task) {
+        return Sets.newHashSet(Iterables.transform(task.getOutputs().getFiles(), new Function<File, String>() {
+            @Override
+            public String apply(File file) {
+                String path;
+                try {
+                    path = file.getCanonicalPath();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return path;
+            }
+        }));
+    }
 
-    private boolean pathsOverlap(String firstPath, String secondPath) {
-        if (firstPath.equals(secondPath)) {
-            return true;
-        }
-
-        String shorter;
-        String longer;
-        if (firstPath.length() > secondPath.length()) {
-            shorter = secondPath;
-            longer = firstPath;
-        } else {
-            shorter = firstPath;
-            longer = secondPath;
+    @Nullable
+    private Pair<TaskInternal, String> firstTaskWithOverlappingOutput(TaskInternal candidateTask) {
+        for (String candidateTaskOutputPath : canonicalizedOutputCache.get(candidateTask)) {
+            Pair<TaskInternal, String> overlap = runningTaskOutputs.findOverlap(candidateTaskOutputPath);
+            if (overlap != null) {
+                return overlap;
+            }
         }
-        return longer.startsWith(shorter + StandardSystemProperty.FILE_SEPARATOR.value());
+        return null;
     }
 
     boolean isParallelizable(TaskInternal task) {
@@ -637,6 +795,14 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         }
         projectsWithRunningTasks.add(projectPath);
         runningTasks.add(task);
+        Set<String> outputPaths = canonicalizedOutputCache.get(task);
+        if (outputPaths == null) {
+            runningTasksWithUnknownOutputs.add(task);
+        } else {
+            for (String path : outputPaths) {
+                runningTaskOutputs.add(task, path);
+            }
+        }
     }
 
     private void recordTaskCompleted(TaskInfo taskInfo) {
@@ -646,7 +812,12 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             projectsWithRunningNonParallelizableTasks.remove(projectPath);
         }
         projectsWithRunningTasks.remove(projectPath);
-        canonicalizedOutputCache.remove(task);
+        Set<String> outputPaths = canonicalizedOutputCache.remove(task);
+        if (!runningTasksWithUnknownOutputs.remove(task) && outputPaths != null) {
+            for (String path : outputPaths) {
+                runningTaskOutputs.remove(task, path);
+            }
+        }
         isParallelSafeCache.remove(task);
         runningTasks.remove(task);
     }
@@ -661,7 +832,8 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
             taskInfo.finishExecution();
             recordTaskCompleted(taskInfo);
-            condition.signalAll();
+            taskFinished(taskInfo);
+            signalWaitingWorkers();
         } finally {
             lock.unlock();
         }
@@ -687,7 +859,11 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 candidateNodes.addAll(node.getDependencySuccessors());
 
                 if (node.isMustNotRun() || node.isRequired()) {
+                    if (node.isMustNotRun() && executionOrder.containsKey(node)) {
+                        incompleteTasks++;
+                    }
                     node.enforceRun();
+                    maybeReady(node);
                 }
             }
         }
@@ -719,6 +895,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         for (TaskInfo taskInfo : executionPlan.values()) {
             if (taskInfo.isRequired()) {
                 taskInfo.skipExecution();
+                taskFinished(taskInfo);
                 aborted = true;
             }
         }
@@ -730,7 +907,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         try {
             while (!allTasksComplete()) {
                 try {
-                    condition.await();
+                    completed.await();
                 } catch (InterruptedException e) {
                     throw new RuntimeException(e);
                 }
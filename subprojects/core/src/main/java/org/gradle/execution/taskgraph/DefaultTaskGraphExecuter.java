@@ -19,6 +19,7 @@ package org.gradle.execution.taskgraph;
 import com.google.common.collect.Sets;
 import groovy.lang.Closure;
 import org.gradle.api.Action;
+import org.gradle.api.Nullable;
 import org.gradle.api.Task;
 import org.gradle.api.execution.TaskExecutionAdapter;
 import org.gradle.api.execution.TaskExecutionGraph;
@@ -28,7 +29,9 @@ import org.gradle.api.execution.internal.InternalTaskExecutionListener;
 import org.gradle.api.execution.internal.TaskOperationDescriptor;
 import org.gradle.api.execution.internal.TaskOperationInternal;
 import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository;
 import org.gradle.api.internal.tasks.TaskExecuter;
+import org.gradle.api.internal.tasks.TaskExecutionOutcome;
 import org.gradle.api.internal.tasks.TaskStateInternal;
 import org.gradle.api.internal.tasks.execution.DefaultTaskExecutionContext;
 import org.gradle.api.specs.Spec;
@@ -66,6 +69,9 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
     private final TaskPlanExecutor taskPlanExecutor;
     // This currently needs to be lazy, as it uses state that is not available when the graph is created
     private final Factory<? extends TaskExecuter> taskExecuter;
+    // Also lazy, and only present when tasks are prioritized by their durations
+    private final Factory<? extends TaskDurationRepository> taskDurationRepositoryFactory;
+    private TaskDurationRepository taskDurationRepository;
     private final ListenerBroadcast<TaskExecutionGraphListener> graphListeners;
     private final ListenerBroadcast<TaskExecutionListener> taskListeners;
     private final InternalTaskExecutionListener internalTaskListener;
@@ -76,9 +82,10 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
     private final Set<Task> requestedTasks = Sets.newTreeSet();
     private Spec<? super Task> filter = Specs.SATISFIES_ALL;
 
-    public DefaultTaskGraphExecuter(ListenerManager listenerManager, TaskPlanExecutor taskPlanExecutor, Factory<? extends TaskExecuter> taskExecuter, BuildCancellationToken cancellationToken, BuildOperationExecutor buildOperationExecutor) {
+    public DefaultTaskGraphExecuter(ListenerManager listenerManager, TaskPlanExecutor taskPlanExecutor, Factory<? extends TaskExecuter> taskExecuter, @Nullable Factory<? extends TaskDurationRepository> taskDurationRepositoryFactory, BuildCancellationToken cancellationToken, BuildOperationExecutor buildOperationExecutor) {
         this.taskPlanExecutor = taskPlanExecutor;
         this.taskExecuter = taskExecuter;
+        this.taskDurationRepositoryFactory = taskDurationRepositoryFactory;
         this.buildOperationExecutor = buildOperationExecutor;
         graphListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionGraphListener.class);
         taskListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionListener.class);
@@ -208,6 +215,10 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
                 throw new IllegalStateException(
                     "Task information is not available, as this task execution graph has not been populated.");
             case DIRTY:
+                if (taskDurationRepositoryFactory != null) {
+                    taskDurationRepository = taskDurationRepositoryFactory.create();
+                    taskExecutionPlan.useTaskDurations(taskDurationRepository);
+                }
                 taskExecutionPlan.determineExecutionPlan();
                 taskGraphState = TaskGraphState.POPULATED;
                 return;
@@ -242,7 +253,12 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
                     internalTaskListener.beforeExecute(legacyOperation, new OperationStartEvent(0));
                     TaskStateInternal state = task.getState();
                     taskListeners.getSource().beforeExecute(task);
+                    Timer timer = Timers.startTimer();
                     taskExecuter.execute(task, state, new DefaultTaskExecutionContext());
+                    // Only record durations of tasks whose actions ran, as up-to-date, cached and skipped tasks take no time
+                    if (taskDurationRepository != null && state.getFailure() == null && state.getOutcome() == TaskExecutionOutcome.EXECUTED) {
+                        taskDurationRepository.recordDuration(task.getPath(), timer.getElapsedMillis());
+                    }
                     taskListeners.getSource().afterExecute(task, state);
                     buildOperationContext.failed(state.getFailure());
                     internalTaskListener.afterExecute(legacyOperation, new OperationResult(0, 0, state.getFailure(), null));
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import org.gradle.api.Nullable;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.internal.Pair;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The canonical output paths of the currently running tasks, organized by path segment.
+ *
+ * <p>Finding an overlapping output takes time proportional to the length of the path, rather than to the number of outputs of the running tasks.</p>
+ */
+class OutputPathTrie {
+    private final char separator;
+    private final Node root = new Node();
+
+    OutputPathTrie() {
+        this(File.separatorChar);
+    }
+
+    OutputPathTrie(char separator) {
+        this.separator = separator;
+    }
+
+    public void add(TaskInternal task, String path) {
+        Node node = root;
+        node.outputsBelow++;
+        int start = 0;
+        while (start <= path.length()) {
+            int end = segmentEnd(path, start);
+            String segment = path.substring(start, end);
+            Node child = node.children.get(segment);
+            if (child == null) {
+                child = new Node();
+                node.children.put(segment, child);
+            }
+            node = child;
+            node.outputsBelow++;
+            start = end + 1;
+        }
+        node.tasks.add(task);
+    }
+
+    public void remove(TaskInternal task, String path) {
+        List<Node> nodes = new ArrayList<Node>();
+        List<String> segments = new ArrayList<String>();
+        Node node = root;
+        int start = 0;
+        while (start <= path.length()) {
+            int end = segmentEnd(path, start);
+            String segment = path.substring(start, end);
+            nodes.add(node);
+            segments.add(segment);
+            node = node.children.get(segment);
+            if (node == null) {
+                return;
+            }
+            start = end + 1;
+        }
+        if (!node.tasks.remove(task)) {
+            return;
+        }
+        node.outputsBelow--;
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            Node parent = nodes.get(i);
+            parent.outputsBelow--;
+            if (node.outputsBelow == 0) {
+                parent.children.remove(segments.get(i));
+            }
+            node = parent;
+        }
+    }
+
+    /**
+     * Returns a running task with an output that is the given path, contains it or is contained by it, along with the shorter of the two paths.
+     */
+    @Nullable
+    public Pair<TaskInternal, String> findOverlap(String path) {
+        Node node = root;
+        int start = 0;
+        while (start <= path.length()) {
+            int end = segmentEnd(path, start);
+            node = node.children.get(path.substring(start, end));
+            if (node == null) {
+                return null;
+            }
+            if (end < path.length() && !node.tasks.isEmpty()) {
+                // An output of a running task contains the path
+                return Pair.of(node.tasks.get(0), path.substring(0, end));
+            }
+            start = end + 1;
+        }
+        // The path is an output of a running task, or contains one
+        while (node.tasks.isEmpty()) {
+            // Nodes without outputs below them are removed, so any child leads to an output
+            node = node.children.values().iterator().next();
+        }
+        return Pair.of(node.tasks.get(0), path);
+    }
+
+    public void clear() {
+        root.children.clear();
+        root.outputsBelow = 0;
+    }
+
+    private int segmentEnd(String path, int start) {
+        int end = path.indexOf(separator, start);
+        return end < 0 ? path.length() : end;
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<String, Node>();
+        private final List<TaskInternal> tasks = new ArrayList<TaskInternal>(1);
+        // The number of outputs at or below this node
+        private int outputsBelow;
+    }
+}
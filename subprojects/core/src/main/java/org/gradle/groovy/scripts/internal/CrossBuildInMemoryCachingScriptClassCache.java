@@ -26,13 +26,32 @@ import org.gradle.api.internal.initialization.loadercache.ClassLoaderId;
 import org.gradle.groovy.scripts.ScriptSource;
 import org.gradle.internal.Cast;
 
+/**
+ * Caches compiled scripts in memory across builds, by script class name and target class loader.
+ *
+ * <p>When sharing is enabled, scripts with identical content that are compiled against the same class loader also share a single compiled script, so its
+ * classes are compiled and loaded only once. Each script still runs as a separate instance with its own script source, but the shared classes carry the
+ * name and file name of the first such script, so stack traces and failure locations from the other scripts refer to that file.
+ * For this reason sharing is only enabled with the {@value #SHARE_IDENTICAL_SCRIPTS_PROPERTY} system property.</p>
+ */
 public class CrossBuildInMemoryCachingScriptClassCache {
+    public static final String SHARE_IDENTICAL_SCRIPTS_PROPERTY = "org.gradle.internal.scripts.share-identical";
+
     private final CrossBuildInMemoryCache<ScriptCacheKey, CachedCompiledScript> cachedCompiledScripts;
+    // Keyed by content hash rather than class name
+    private final CrossBuildInMemoryCache<ScriptCacheKey, CachedCompiledScript> sharedCompiledScripts;
     private final FileHasher hasher;
+    private final boolean shareIdenticalScripts;
 
     public CrossBuildInMemoryCachingScriptClassCache(FileHasher hasher, CrossBuildInMemoryCacheFactory cacheFactory) {
+        this(hasher, cacheFactory, false);
+    }
+
+    public CrossBuildInMemoryCachingScriptClassCache(FileHasher hasher, CrossBuildInMemoryCacheFactory cacheFactory, boolean shareIdenticalScripts) {
         this.hasher = hasher;
+        this.shareIdenticalScripts = shareIdenticalScripts;
         cachedCompiledScripts = cacheFactory.newCache();
+        sharedCompiledScripts = cacheFactory.newCache();
     }
 
     public <T extends Script, M> CompiledScript<T, M> getOrCompile(ScriptSource source, ClassLoader classLoader,
@@ -49,8 +68,21 @@ public class CrossBuildInMemoryCachingScriptClassCache {
                 return Cast.uncheckedCast(cached.compiledScript);
             }
         }
+        ScriptCacheKey contentKey = null;
+        if (shareIdenticalScripts) {
+            contentKey = new ScriptCacheKey(hash.toString(), classLoader, operation.getId());
+            CachedCompiledScript shared = sharedCompiledScripts.get(contentKey);
+            if (shared != null) {
+                cachedCompiledScripts.put(key, shared);
+                return Cast.uncheckedCast(shared.compiledScript);
+            }
+        }
         CompiledScript<T, M> compiledScript = delegate.compile(source, classLoader, classLoaderId, operation, scriptBaseClass, verifier);
-        cachedCompiledScripts.put(key, new CachedCompiledScript(hash, compiledScript));
+        CachedCompiledScript cachedScript = new CachedCompiledScript(hash, compiledScript);
+        cachedCompiledScripts.put(key, cachedScript);
+        if (contentKey != null) {
+            sharedCompiledScripts.put(contentKey, cachedScript);
+        }
         return compiledScript;
     }
 
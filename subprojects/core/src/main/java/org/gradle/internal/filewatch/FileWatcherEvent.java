@@ -41,7 +41,10 @@ public class FileWatcherEvent {
         return type;
     }
 
-    @Nullable // null if type == UNDEFINED
+    /**
+     * The changed file. For {@link Type#UNDEFINED} events, the directory whose events were lost, or null when not known.
+     */
+    @Nullable
     public File getFile() {
         return file;
     }
@@ -67,4 +70,8 @@ public class FileWatcherEvent {
         return new FileWatcherEvent(Type.UNDEFINED, null);
     }
 
+    public static FileWatcherEvent undefined(File directory) {
+        return new FileWatcherEvent(Type.UNDEFINED, directory);
+    }
+
 }
@@ -57,7 +57,7 @@ class WatchServicePoller {
                     WatchEvent<Path> ev = Cast.uncheckedCast(event);
                     file = watchedPath.resolve(ev.context()).toFile();
                 }
-                return toEvent(kind, file);
+                return toEvent(kind, file, watchedPath);
             }
         };
 
@@ -70,7 +70,7 @@ class WatchServicePoller {
         }
     }
 
-    private FileWatcherEvent toEvent(WatchEvent.Kind kind, File file) {
+    private FileWatcherEvent toEvent(WatchEvent.Kind kind, File file, Path watchedPath) {
         if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
             return FileWatcherEvent.create(file);
         } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
@@ -78,7 +78,8 @@ class WatchServicePoller {
         } else if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
             return FileWatcherEvent.modify(file);
         } else if (kind == StandardWatchEventKinds.OVERFLOW) {
-            return FileWatcherEvent.undefined();
+            // Events for the watched directory were lost
+            return FileWatcherEvent.undefined(watchedPath.toFile());
         } else {
             throw new IllegalStateException("Unknown watch kind " + kind);
         }
@@ -43,6 +43,7 @@ import org.gradle.api.internal.file.TemporaryFileProvider;
 import org.gradle.api.internal.file.TmpDirTemporaryFileProvider;
 import org.gradle.api.internal.file.collections.DefaultDirectoryFileTreeFactory;
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
+import org.gradle.api.internal.hash.ParallelFileHasher;
 import org.gradle.api.internal.project.BuildOperationProjectConfigurator;
 import org.gradle.api.internal.project.ProjectConfigurator;
 import org.gradle.api.internal.provider.DefaultProviderFactory;
@@ -271,6 +272,10 @@ public class GlobalScopeServices {
         return new DefaultExecutorFactory();
     }
 
+    ParallelFileHasher createParallelFileHasher(ExecutorFactory executorFactory) {
+        return new ParallelFileHasher(executorFactory);
+    }
+
     FileLockManager createFileLockManager(ProcessEnvironment processEnvironment, FileLockContentionHandler fileLockContentionHandler) {
         return new DefaultFileLockManager(
             new DefaultProcessMetaDataProvider(
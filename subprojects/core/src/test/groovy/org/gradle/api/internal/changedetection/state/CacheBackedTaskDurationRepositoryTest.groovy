@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.cache.PersistentIndexedCache
+import spock.lang.Specification
+
+class CacheBackedTaskDurationRepositoryTest extends Specification {
+    final TaskHistoryStore cacheAccess = Mock()
+    final PersistentIndexedCache<Object, Object> indexedCache = Mock()
+    TaskDurationRepository repository
+
+    def setup() {
+        1 * cacheAccess.createCache("taskDurations", String, _, _, _) >> indexedCache
+        repository = new CacheBackedTaskDurationRepository(cacheAccess)
+    }
+
+    def "records duration of task executed for the first time"() {
+        when:
+        repository.recordDuration(":a", 100)
+
+        then:
+        1 * indexedCache.get(":a") >> null
+        1 * indexedCache.put(":a", 100L)
+        0 * _._
+    }
+
+    def "averages duration with previous executions"() {
+        when:
+        repository.recordDuration(":a", 100)
+
+        then:
+        1 * indexedCache.get(":a") >> 300L
+        1 * indexedCache.put(":a", 200L)
+        0 * _._
+    }
+
+    def "can fetch duration by task path"() {
+        when:
+        def result = repository.getDuration(":a")
+
+        then:
+        result == 100L
+        1 * indexedCache.get(":a") >> 100L
+        0 * _._
+    }
+}
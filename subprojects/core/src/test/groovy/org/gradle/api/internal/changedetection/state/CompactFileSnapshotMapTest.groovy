@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import com.google.common.hash.HashCode
+import spock.lang.Specification
+
+class CompactFileSnapshotMapTest extends Specification {
+    def content = new FileHashSnapshot(HashCode.fromInt(1))
+    def snapshots = [
+        "/root/b": new NonNormalizedFileSnapshot("/root/b", DirSnapshot.instance),
+        "/root/a": new DefaultNormalizedFileSnapshot("a", content),
+        "/root/c/d": new IndexedNormalizedFileSnapshot("/root/c/d", 6, MissingFileSnapshot.instance),
+        "/root/e": new IgnoredPathFileSnapshot(content)
+    ]
+
+    def "contains the same entries in the same order"() {
+        when:
+        def map = CompactFileSnapshotMap.copyOf(snapshots)
+
+        then:
+        map == snapshots
+        map.keySet() as List == ["/root/b", "/root/a", "/root/c/d", "/root/e"]
+        map.values() as List == snapshots.values() as List
+        map.values()*.class == snapshots.values()*.class
+        map.hashCode() == snapshots.hashCode()
+    }
+
+    def "looks up entries by path"() {
+        when:
+        def map = CompactFileSnapshotMap.copyOf(snapshots)
+
+        then:
+        snapshots.each { path, snapshot ->
+            assert map.containsKey(path)
+            assert map.get(path) == snapshot
+        }
+        map.indexOf("/root/c/d") == 2
+        map.getPath(2) == "/root/c/d"
+        map.getContent(2) == MissingFileSnapshot.instance
+        !map.containsKey("/root/c")
+        map.get("/root/f") == null
+        map.indexOf("/root") == -1
+    }
+
+    def "retains snapshots of other types"() {
+        def other = Stub(NormalizedFileSnapshot) {
+            getSnapshot() >> content
+        }
+
+        when:
+        def map = CompactFileSnapshotMap.builder(1).put("/root/a", other).build()
+
+        then:
+        map.get("/root/a").is(other)
+    }
+
+    def "grows beyond the expected size"() {
+        when:
+        def builder = CompactFileSnapshotMap.builder(1)
+        100.times { builder.put("/root/file$it", new IndexedNormalizedFileSnapshot("/root/file$it", 6, content)) }
+        def map = builder.build()
+
+        then:
+        map.size() == 100
+        map.keySet() as List == (0..<100).collect { "/root/file$it".toString() }
+        map.get("/root/file42").normalizedPath == "file42"
+    }
+
+    def "is immutable"() {
+        def map = CompactFileSnapshotMap.copyOf(snapshots)
+
+        when:
+        map.put("/root/f", new IgnoredPathFileSnapshot(content))
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+}
@@ -24,7 +24,9 @@ import org.gradle.api.internal.file.collections.DirectoryFileTree
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory
 import org.gradle.api.internal.file.collections.SimpleFileCollection
 import org.gradle.api.internal.hash.FileHasher
+import org.gradle.api.internal.hash.ParallelFileHasher
 import org.gradle.api.tasks.util.PatternSet
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.test.fixtures.file.CleanupTestDirectory
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
@@ -50,7 +52,7 @@ class DefaultClasspathSnapshotterTest extends Specification {
     def directoryFileTreeFactory = Mock(DirectoryFileTreeFactory)
     def fileSystemMirror = Mock(FileSystemMirror)
     def classpathHasher = new DefaultClasspathEntryHasher(new DefaultClasspathContentHasher())
-    def snapshotter = new DefaultClasspathSnapshotter(hasher, stringInterner, fileSystem, directoryFileTreeFactory, fileSystemMirror, classpathHasher)
+    def snapshotter = new DefaultClasspathSnapshotter(hasher, new ParallelFileHasher(new DefaultExecutorFactory(), 0), stringInterner, fileSystem, directoryFileTreeFactory, fileSystemMirror, classpathHasher)
 
     def "root elements are unsorted, non-root elements are sorted amongst themselves"() {
         given:
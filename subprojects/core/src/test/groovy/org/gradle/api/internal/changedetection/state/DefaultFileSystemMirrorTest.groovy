@@ -0,0 +1,297 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import com.google.common.collect.ImmutableSortedSet
+import com.google.common.hash.HashCode
+import org.gradle.api.file.RelativePath
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.api.internal.file.collections.SimpleFileCollection
+import org.gradle.api.internal.tasks.TaskOutputFilePropertySpec
+import org.gradle.internal.filewatch.FileWatcher
+import org.gradle.internal.filewatch.FileWatcherEvent
+import org.gradle.internal.filewatch.FileWatcherFactory
+import org.gradle.internal.filewatch.FileWatcherListener
+import org.gradle.internal.nativeintegration.filesystem.FileType
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import spock.lang.Specification
+
+@UsesNativeServices
+class DefaultFileSystemMirrorTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def mirror = new DefaultFileSystemMirror(TestFiles.fileSystem(), false)
+
+    def "discards only the details of the outputs declared by a task"() {
+        def sourceFile = tmpDir.createFile("src/main/A.java")
+        def sourceDir = tmpDir.file("src/main")
+        def outputFile = tmpDir.createFile("build/classes/A.class")
+        def outputDir = tmpDir.file("build/classes")
+        def siblingFile = tmpDir.createFile("build/classes-other/B.class")
+
+        given:
+        mirror.putFile(snapshot(sourceFile))
+        mirror.putDirectory(tree(sourceDir, sourceFile))
+        mirror.putFile(snapshot(outputFile))
+        mirror.putDirectory(tree(outputDir, outputFile))
+        mirror.putFile(snapshot(siblingFile))
+
+        when:
+        mirror.beforeTaskOutputsGenerated(taskWithOutputs(outputDir))
+
+        then:
+        mirror.getFile(sourceFile.absolutePath) != null
+        mirror.getDirectoryTree(sourceDir.absolutePath) != null
+        mirror.getFile(siblingFile.absolutePath) != null
+        mirror.getFile(outputFile.absolutePath) == null
+        mirror.getDirectoryTree(outputDir.absolutePath) == null
+    }
+
+    def "discards trees and directories containing an output"() {
+        def outputFile = tmpDir.createFile("build/out.txt")
+        def buildDir = tmpDir.file("build")
+
+        given:
+        mirror.putDirectory(tree(tmpDir.testDirectory, outputFile))
+        mirror.putFile(snapshot(buildDir))
+
+        when:
+        mirror.beforeTaskOutputsGenerated(taskWithOutputs(outputFile))
+
+        then:
+        mirror.getDirectoryTree(tmpDir.testDirectory.absolutePath) == null
+        mirror.getFile(buildDir.absolutePath) == null
+    }
+
+    def "discards all details when a task has not declared outputs"() {
+        def file = tmpDir.createFile("src/A.java")
+
+        given:
+        mirror.putFile(snapshot(file))
+        mirror.putDirectory(tree(file.parentFile, file))
+
+        when:
+        mirror.beforeTaskOutputsGenerated(Stub(TaskInternal))
+
+        then:
+        mirror.getFile(file.absolutePath) == null
+        mirror.getDirectoryTree(file.parentFile.absolutePath) == null
+    }
+
+    def "discards all details at the end of a build"() {
+        def file = tmpDir.createFile("src/A.java")
+
+        given:
+        mirror.putFile(snapshot(file))
+        mirror.putDirectory(tree(file.parentFile, file))
+
+        when:
+        mirror.buildFinished(null)
+
+        then:
+        mirror.getFile(file.absolutePath) == null
+        mirror.getDirectoryTree(file.parentFile.absolutePath) == null
+    }
+
+    def "retains details between builds while the files are unchanged"() {
+        def retainingMirror = new DefaultFileSystemMirror(TestFiles.fileSystem(), true)
+        def file = tmpDir.createFile("src/A.java")
+        def dir = file.parentFile
+        makeOld(file, dir)
+
+        given:
+        retainingMirror.putFile(snapshot(file))
+        retainingMirror.putDirectory(tree(dir, file))
+        retainingMirror.buildFinished(null)
+
+        expect:
+        retainingMirror.getFile(file.absolutePath) != null
+        retainingMirror.getDirectoryTree(dir.absolutePath) != null
+
+        when:
+        retainingMirror.buildFinished(null)
+        file.lastModified = file.lastModified() + 5000
+
+        then:
+        retainingMirror.getFile(file.absolutePath) == null
+        retainingMirror.getDirectoryTree(dir.absolutePath) == null
+    }
+
+    def "does not retain tree when a file is added"() {
+        def retainingMirror = new DefaultFileSystemMirror(TestFiles.fileSystem(), true)
+        def file = tmpDir.createFile("src/A.java")
+        def dir = file.parentFile
+        makeOld(file, dir)
+
+        given:
+        retainingMirror.putDirectory(tree(dir, file))
+        retainingMirror.buildFinished(null)
+
+        when:
+        dir.createFile("B.java")
+
+        then:
+        retainingMirror.getDirectoryTree(dir.absolutePath) == null
+    }
+
+    def "does not retain details of recently changed files"() {
+        def retainingMirror = new DefaultFileSystemMirror(TestFiles.fileSystem(), true)
+        def file = tmpDir.createFile("src/A.java")
+
+        given:
+        retainingMirror.putFile(snapshot(file))
+        retainingMirror.buildFinished(null)
+
+        expect:
+        retainingMirror.getFile(file.absolutePath) == null
+    }
+
+    def "reuses trees watched since an earlier build without checking them"() {
+        def watcher = Mock(FileWatcher)
+        def watchingMirror = new DefaultFileSystemMirror(TestFiles.fileSystem(), true, watcherFactory(watcher))
+        def file = tmpDir.createFile("src/A.java")
+        def dir = file.parentFile
+        makeOld(file, dir)
+
+        when:
+        watchingMirror.putDirectory(tree(dir, file))
+        watchingMirror.buildFinished(null)
+
+        then:
+        1 * watcher.watch({ it.roots as List == [dir] })
+
+        when:
+        // Checked, as it was snapshotted before it was watched
+        def reused = watchingMirror.getDirectoryTree(dir.absolutePath)
+        watchingMirror.buildFinished(null)
+        file.lastModified = file.lastModified() + 5000
+
+        then:
+        reused != null
+        0 * watcher.watch(_)
+
+        when:
+        // A change that is not reported goes unnoticed
+        def stale = watchingMirror.getDirectoryTree(dir.absolutePath)
+
+        then:
+        stale != null
+    }
+
+    def "discards watched trees when a change is reported"() {
+        def watchingMirror = new DefaultFileSystemMirror(TestFiles.fileSystem(), true, watcherFactory(Mock(FileWatcher)))
+        def file = tmpDir.createFile("src/A.java")
+        def dir = file.parentFile
+        makeOld(file, dir)
+
+        given:
+        watchingMirror.putDirectory(tree(dir, file))
+        watchingMirror.buildFinished(null)
+        watchingMirror.getDirectoryTree(dir.absolutePath)
+        watchingMirror.buildFinished(null)
+
+        when:
+        listener.onChange(null, FileWatcherEvent.modify(file))
+
+        then:
+        watchingMirror.getDirectoryTree(dir.absolutePath) == null
+    }
+
+    def "discards only the trees affected by lost events"() {
+        def watchingMirror = new DefaultFileSystemMirror(TestFiles.fileSystem(), true, watcherFactory(Mock(FileWatcher)))
+        def file = tmpDir.createFile("src/main/A.java")
+        def otherFile = tmpDir.createFile("other/B.java")
+        def dir = file.parentFile
+        def otherDir = otherFile.parentFile
+        makeOld(file, dir, otherFile, otherDir)
+
+        given:
+        watchingMirror.putDirectory(tree(dir, file))
+        watchingMirror.putDirectory(tree(otherDir, otherFile))
+        watchingMirror.buildFinished(null)
+
+        when:
+        listener.onChange(null, FileWatcherEvent.undefined(dir))
+
+        then:
+        watchingMirror.getDirectoryTree(dir.absolutePath) == null
+        watchingMirror.getDirectoryTree(otherDir.absolutePath) != null
+    }
+
+    def "does not retain trees changed during the build in which they were snapshotted"() {
+        def watchingMirror = new DefaultFileSystemMirror(TestFiles.fileSystem(), true, watcherFactory(Mock(FileWatcher)))
+        def file = tmpDir.createFile("src/A.java")
+        def dir = file.parentFile
+        makeOld(file, dir)
+
+        given:
+        watchingMirror.putDirectory(tree(dir, file))
+        listener.onChange(null, FileWatcherEvent.modify(file))
+        watchingMirror.putDirectory(tree(dir, file))
+
+        when:
+        watchingMirror.buildFinished(null)
+
+        then:
+        watchingMirror.getDirectoryTree(dir.absolutePath) == null
+    }
+
+    private FileWatcherListener listener
+
+    private FileWatcherFactory watcherFactory(FileWatcher watcher) {
+        return Stub(FileWatcherFactory) {
+            watch(_, _) >> { onError, FileWatcherListener listener ->
+                this.listener = listener
+                watcher
+            }
+        }
+    }
+
+    private static void makeOld(File... files) {
+        def timestamp = System.currentTimeMillis() - 10 * DefaultFileSystemMirror.TIMESTAMP_GRANULARITY_MILLIS
+        files.each { it.lastModified = timestamp }
+    }
+
+    private static FileSnapshot snapshot(File file) {
+        if (file.isDirectory()) {
+            return new DefaultFileSnapshot(file.absolutePath, new RelativePath(false, file.name), FileType.Directory, true, DirSnapshot.getInstance())
+        }
+        return new DefaultFileSnapshot(file.absolutePath, new RelativePath(true, file.name), FileType.RegularFile, true, new FileHashSnapshot(HashCode.fromInt(1), file.lastModified()))
+    }
+
+    private static DirectoryTreeDetails tree(File root, TestFile... elements) {
+        return new DirectoryTreeDetails(root.absolutePath, elements.collect { snapshot(it) })
+    }
+
+    private TaskInternal taskWithOutputs(File... outputs) {
+        def property = Stub(TaskOutputFilePropertySpec) {
+            getPropertyFiles() >> new SimpleFileCollection(outputs)
+        }
+        def taskOutputs = Stub(TaskOutputsInternal) {
+            hasDeclaredOutputs() >> true
+            getFileProperties() >> ImmutableSortedSet.of(property)
+        }
+        return Stub(TaskInternal) {
+            getOutputs() >> taskOutputs
+        }
+    }
+}
@@ -249,7 +249,10 @@ class TaskFilePropertyCompareStrategyTest extends Specification {
     }
 
     def changesUsingAbsolutePaths(TaskFilePropertyCompareStrategy strategy, Map<String, NormalizedFileSnapshot> current, Map<String, NormalizedFileSnapshot> previous) {
-        Lists.newArrayList(strategy.iterateContentChangesSince(current, previous, "test", true))
+        def changes = Lists.newArrayList(strategy.iterateContentChangesSince(current, previous, "test", true))
+        // The same changes are reported when the snapshots are compact
+        assert Lists.newArrayList(strategy.iterateContentChangesSince(CompactFileSnapshotMap.copyOf(current), CompactFileSnapshotMap.copyOf(previous), "test", true)) == changes
+        changes
     }
 
     def snapshot(String normalizedPath, String hashCode = "1234abcd") {
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class DefaultFileHasherTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def "memory mapped and streamed content have the same hash"() {
+        def file = tmpDir.file("file")
+        def content = new byte[size]
+        new Random(size).nextBytes(content)
+        file.bytes = content
+
+        expect:
+        new DefaultFileHasher(true).hash(file) == new DefaultFileHasher(false).hash(file)
+        new DefaultFileHasher(true).hash(file) == new DefaultFileHasher(false).hash(new ByteArrayInputStream(content))
+
+        where:
+        size << [0, 1, DefaultFileHasher.MEMORY_MAPPING_THRESHOLD - 1, DefaultFileHasher.MEMORY_MAPPING_THRESHOLD, 3 * DefaultFileHasher.MEMORY_MAPPING_THRESHOLD + 17]
+    }
+
+    def "hash changes when content changes"() {
+        def file = tmpDir.file("file")
+        file.bytes = new byte[DefaultFileHasher.MEMORY_MAPPING_THRESHOLD]
+        def hasher = new DefaultFileHasher(true)
+        def original = hasher.hash(file)
+
+        when:
+        def content = new byte[DefaultFileHasher.MEMORY_MAPPING_THRESHOLD]
+        content[content.length - 1] = 1
+        file.bytes = content
+
+        then:
+        hasher.hash(file) != original
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash
+
+import com.google.common.hash.HashCode
+import org.gradle.api.UncheckedIOException
+import org.gradle.api.file.FileTreeElement
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import spock.lang.Specification
+
+class ParallelFileHasherTest extends Specification {
+    def hasher = Stub(FileHasher)
+    def parallelFileHasher = new ParallelFileHasher(new DefaultExecutorFactory(), 4)
+
+    def cleanup() {
+        parallelFileHasher.stop()
+    }
+
+    def "returns hashes in the order of the files"() {
+        def files = (0..<fileCount).collect { index -> Stub(FileTreeElement) { getName() >> String.valueOf(index) } }
+        hasher.hash(_ as FileTreeElement) >> { FileTreeElement file -> HashCode.fromInt(file.name as int) }
+
+        expect:
+        parallelFileHasher.hashAll(hasher, files) == (0..<fileCount).collect { HashCode.fromInt(it) }
+
+        where:
+        fileCount << [0, 1, ParallelFileHasher.FILES_PER_CLAIM, 1000]
+    }
+
+    def "propagates failure to hash a file"() {
+        def files = (0..<100).collect { Stub(FileTreeElement) }
+        def failure = new UncheckedIOException("broken")
+        hasher.hash(_ as FileTreeElement) >> { throw failure }
+
+        when:
+        parallelFileHasher.hashAll(hasher, files)
+
+        then:
+        def e = thrown(UncheckedIOException)
+        e.is(failure)
+    }
+}
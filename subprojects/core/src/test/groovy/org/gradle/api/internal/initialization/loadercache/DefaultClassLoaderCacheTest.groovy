@@ -29,7 +29,8 @@ import spock.lang.Specification
 class DefaultClassLoaderCacheTest extends Specification {
 
     def classpathHasher = new FileClasspathHasher()
-    def cache = new DefaultClassLoaderCache(new DefaultHashingClassLoaderFactory(classpathHasher), classpathHasher)
+    def metaspaceUsage = Stub(MetaspaceUsage)
+    def cache = new DefaultClassLoaderCache(new DefaultHashingClassLoaderFactory(classpathHasher), classpathHasher, metaspaceUsage)
     def id1 = new ClassLoaderId() {}
     def id2 = new ClassLoaderId() {}
 
@@ -222,4 +223,40 @@ class DefaultClassLoaderCacheTest extends Specification {
         then:
         cache.size() == 1
     }
+
+    def "discards class loaders not used during the session when metaspace is nearly full"() {
+        def root = classLoader(classPath("root"))
+        metaspaceUsage.usagePercent >> 90
+
+        given:
+        def unused = cache.get(id1, classPath("c1"), root, null)
+        def used = cache.get(id2, classPath("c2"), root, null)
+        cache.beforeComplete()
+
+        when:
+        cache.get(id2, classPath("c2"), root, null)
+        cache.beforeComplete()
+
+        then:
+        cache.size() == 1
+        cache.get(id2, classPath("c2"), root, null).is(used)
+        !cache.get(id1, classPath("c1"), root, null).is(unused)
+    }
+
+    def "retains class loaders not used during the session while metaspace has room"() {
+        def root = classLoader(classPath("root"))
+        metaspaceUsage.usagePercent >> usage
+
+        given:
+        def loader = cache.get(id1, classPath("c1"), root, null)
+        cache.beforeComplete()
+        cache.beforeComplete()
+
+        expect:
+        cache.size() == 1
+        cache.get(id1, classPath("c1"), root, null).is(loader)
+
+        where:
+        usage << [-1, 50]
+    }
 }
@@ -100,7 +100,7 @@ public class ExecuteActionsTaskExecuterTest extends Specification {
         then:
         1 * publicListener.beforeActions(task)
         then:
-        1 * internalListener.beforeTaskOutputsGenerated()
+        1 * internalListener.beforeTaskOutputsGenerated(task)
         then:
         1 * standardOutputCapture.start()
         then:
@@ -155,7 +155,7 @@ public class ExecuteActionsTaskExecuterTest extends Specification {
         then:
         1 * publicListener.beforeActions(task)
         then:
-        1 * internalListener.beforeTaskOutputsGenerated()
+        1 * internalListener.beforeTaskOutputsGenerated(task)
         then:
         1 * standardOutputCapture.start()
 
@@ -192,7 +192,7 @@ public class ExecuteActionsTaskExecuterTest extends Specification {
         then:
         1 * publicListener.beforeActions(task)
         then:
-        1 * internalListener.beforeTaskOutputsGenerated()
+        1 * internalListener.beforeTaskOutputsGenerated(task)
         then:
         1 * standardOutputCapture.start()
         then:
@@ -230,7 +230,7 @@ public class ExecuteActionsTaskExecuterTest extends Specification {
         then:
         1 * publicListener.beforeActions(task)
         then:
-        1 * internalListener.beforeTaskOutputsGenerated()
+        1 * internalListener.beforeTaskOutputsGenerated(task)
         then:
         1 * standardOutputCapture.start()
         then:
@@ -266,7 +266,7 @@ public class ExecuteActionsTaskExecuterTest extends Specification {
         then:
         1 * publicListener.beforeActions(task)
         then:
-        1 * internalListener.beforeTaskOutputsGenerated()
+        1 * internalListener.beforeTaskOutputsGenerated(task)
         then:
         1 * standardOutputCapture.start()
         then:
@@ -319,7 +319,7 @@ public class ExecuteActionsTaskExecuterTest extends Specification {
         then:
         1 * publicListener.beforeActions(task)
         then:
-        1 * internalListener.beforeTaskOutputsGenerated()
+        1 * internalListener.beforeTaskOutputsGenerated(task)
         then:
         1 * standardOutputCapture.start()
         then:
@@ -364,7 +364,7 @@ public class ExecuteActionsTaskExecuterTest extends Specification {
         then:
         1 * publicListener.beforeActions(task)
         then:
-        1 * internalListener.beforeTaskOutputsGenerated()
+        1 * internalListener.beforeTaskOutputsGenerated(task)
         then:
         1 * standardOutputCapture.start()
         then:
@@ -408,7 +408,7 @@ public class ExecuteActionsTaskExecuterTest extends Specification {
         then:
         1 * publicListener.beforeActions(task)
         then:
-        1 * internalListener.beforeTaskOutputsGenerated()
+        1 * internalListener.beforeTaskOutputsGenerated(task)
         then:
         1 * standardOutputCapture.start()
         then:
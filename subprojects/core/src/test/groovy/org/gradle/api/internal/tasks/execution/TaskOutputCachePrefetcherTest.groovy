@@ -0,0 +1,247 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.execution
+
+import org.gradle.api.Task
+import org.gradle.api.execution.TaskExecutionGraph
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.project.ProjectInternal
+import org.gradle.api.internal.TaskOutputCachingState
+import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.changedetection.TaskArtifactState
+import org.gradle.api.internal.changedetection.TaskArtifactStateRepository
+import org.gradle.api.internal.tasks.ContextAwareTaskAction
+import org.gradle.api.tasks.TaskDependency
+import org.gradle.api.tasks.TaskState
+import org.gradle.caching.internal.PrefetchingBuildCacheServiceDecorator
+import org.gradle.caching.internal.tasks.TaskOutputCachingBuildCacheKey
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.StoppableExecutor
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class TaskOutputCachePrefetcherTest extends Specification {
+    def repository = Mock(TaskArtifactStateRepository)
+    def buildCache = Mock(PrefetchingBuildCacheServiceDecorator)
+    def executor = Stub(StoppableExecutor) {
+        execute(_) >> { Runnable runnable -> runnable.run() }
+    }
+    def executorFactory = Stub(ExecutorFactory) {
+        create(_, _) >> executor
+    }
+    def prefetcher = new TaskOutputCachePrefetcher(repository, buildCache, executorFactory, 1)
+
+    def project = project(":")
+    def a = task()
+    def b = task(a)
+    def keyA = key()
+    def keyB = key()
+    def graph = Stub(TaskExecutionGraph) {
+        getAllTasks() >> [a, b]
+    }
+
+    def "prefetches tasks once their dependencies have been executed"() {
+        when:
+        prefetcher.graphPopulated(graph)
+
+        then:
+        1 * repository.getStateFor(a) >> state(keyA)
+        1 * buildCache.prefetch(keyA)
+        0 * buildCache.prefetch(_)
+
+        when:
+        prefetcher.beforeExecute(a)
+        prefetcher.afterExecute(a, Stub(TaskState))
+
+        then:
+        1 * repository.getStateFor(b) >> state(keyB)
+        1 * buildCache.prefetch(keyB)
+    }
+
+    def "does not prefetch tasks that have started"() {
+        given:
+        prefetcher.graphPopulated(graph)
+
+        when:
+        prefetcher.beforeExecute(b)
+        prefetcher.afterExecute(a, Stub(TaskState))
+
+        then:
+        0 * repository.getStateFor(b)
+        0 * buildCache.prefetch(_)
+    }
+
+    def "defers calculating the cache key while another task of the same project is executing"() {
+        given:
+        def c = task()
+        def otherProject = task(project(":other"), a)
+        def graph = Stub(TaskExecutionGraph) {
+            getAllTasks() >> [a, b, c, otherProject]
+        }
+        repository.getStateFor(a) >> state(keyA)
+        repository.getStateFor(c) >> state(key())
+        prefetcher.graphPopulated(graph)
+
+        when:
+        prefetcher.beforeExecute(c)
+        prefetcher.beforeExecute(a)
+        prefetcher.afterExecute(a, Stub(TaskState))
+
+        then:
+        0 * repository.getStateFor(b)
+        1 * repository.getStateFor(otherProject) >> state(keyB)
+        1 * buildCache.prefetch(keyB)
+        0 * buildCache.prefetch(_)
+
+        when:
+        prefetcher.afterExecute(c, Stub(TaskState))
+
+        then:
+        1 * repository.getStateFor(b) >> state(keyB)
+        1 * buildCache.prefetch(keyB)
+    }
+
+    def "task that starts while a cache key of its project is being calculated waits for the calculation to finish"() {
+        given:
+        def threadExecutor = Stub(StoppableExecutor) {
+            execute(_) >> { Runnable runnable -> Thread.start(runnable) }
+        }
+        def threadedPrefetcher = new TaskOutputCachePrefetcher(repository, buildCache, Stub(ExecutorFactory) { create(_, _) >> threadExecutor }, 1)
+        def c = task()
+        def graph = Stub(TaskExecutionGraph) {
+            getAllTasks() >> [a]
+        }
+        def stateA = state(keyA)
+        def calculating = new CountDownLatch(1)
+        def calculated = new CountDownLatch(1)
+        def started = new CountDownLatch(1)
+        def prefetched = new CountDownLatch(1)
+        repository.getStateFor(a) >> {
+            calculating.countDown()
+            calculated.await()
+            stateA
+        }
+        buildCache.prefetch(keyA) >> { prefetched.countDown() }
+
+        when:
+        threadedPrefetcher.graphPopulated(graph)
+        assert calculating.await(10, TimeUnit.SECONDS)
+        def taskThread = Thread.start {
+            threadedPrefetcher.beforeExecute(c)
+            started.countDown()
+        }
+
+        then:
+        !started.await(200, TimeUnit.MILLISECONDS)
+
+        when:
+        calculated.countDown()
+        taskThread.join()
+
+        then:
+        started.count == 0
+        prefetched.await(10, TimeUnit.SECONDS)
+    }
+
+    def "does not prefetch dependents of failed tasks"() {
+        given:
+        prefetcher.graphPopulated(graph)
+
+        when:
+        prefetcher.afterExecute(a, Stub(TaskState) {
+            getFailure() >> new RuntimeException()
+        })
+
+        then:
+        0 * repository.getStateFor(b)
+        0 * buildCache.prefetch(_)
+    }
+
+    def "does not prefetch tasks that are up-to-date"() {
+        when:
+        prefetcher.graphPopulated(graph)
+
+        then:
+        1 * repository.getStateFor(a) >> Stub(TaskArtifactState) {
+            isAllowedToUseCachedResults() >> true
+            isUpToDate(_) >> true
+        }
+        0 * buildCache.prefetch(_)
+    }
+
+    def "discards prefetched entries when the build finishes"() {
+        given:
+        prefetcher.graphPopulated(graph)
+
+        when:
+        prefetcher.buildFinished(null)
+
+        then:
+        1 * buildCache.discardPrefetchedEntries()
+
+        when:
+        prefetcher.afterExecute(a, Stub(TaskState))
+
+        then:
+        0 * buildCache.prefetch(_)
+    }
+
+    private TaskInternal task(Task... dependencies) {
+        return task(project, dependencies)
+    }
+
+    private TaskInternal task(ProjectInternal project, Task... dependencies) {
+        def cachingState = Stub(TaskOutputCachingState) {
+            isEnabled() >> true
+        }
+        def outputs = Stub(TaskOutputsInternal) {
+            getHasOutput() >> true
+            getCachingState() >> cachingState
+        }
+        def taskDependency = Stub(TaskDependency) {
+            getDependencies(_) >> (dependencies as Set)
+        }
+        return Stub(TaskInternal) {
+            getProject() >> project
+            getOutputs() >> outputs
+            getTaskDependencies() >> taskDependency
+            getTaskActions() >> [Stub(ContextAwareTaskAction)]
+        }
+    }
+
+    private ProjectInternal project(String path) {
+        return Stub(ProjectInternal) {
+            getPath() >> path
+        }
+    }
+
+    private TaskOutputCachingBuildCacheKey key() {
+        return Stub(TaskOutputCachingBuildCacheKey) {
+            isValid() >> true
+        }
+    }
+
+    private TaskArtifactState state(TaskOutputCachingBuildCacheKey key) {
+        return Stub(TaskArtifactState) {
+            isAllowedToUseCachedResults() >> true
+            isUpToDate(_) >> false
+            calculateCacheKey() >> key
+        }
+    }
+}
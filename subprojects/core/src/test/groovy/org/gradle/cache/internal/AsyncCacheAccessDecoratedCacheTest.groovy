@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal
+
+import org.gradle.cache.CacheAccess
+import org.gradle.internal.Factory
+import spock.lang.Specification
+
+class AsyncCacheAccessDecoratedCacheTest extends Specification {
+    def queue = []
+    def asyncCacheAccess = Mock(AsyncCacheAccess)
+    def persistentCache = Mock(MultiProcessSafePersistentIndexedCache)
+    def cache = new AsyncCacheAccessDecoratedCache<String, String>(asyncCacheAccess, persistentCache)
+
+    def setup() {
+        _ * asyncCacheAccess.enqueue(_) >> { Runnable action -> queue << action }
+    }
+
+    def "reads value from backing cache when there is no pending update"() {
+        when:
+        def result = cache.get("key")
+
+        then:
+        result == "value"
+        1 * asyncCacheAccess.read(_) >> { Factory action -> action.create() }
+        1 * persistentCache.get("key") >> "value"
+    }
+
+    def "applies only the latest of several pending updates to the same key"() {
+        def completion1 = Mock(Runnable)
+        def completion2 = Mock(Runnable)
+        def completion3 = Mock(Runnable)
+
+        when:
+        cache.putLater("key", "value1", completion1)
+        cache.putLater("other", "other", Stub(Runnable))
+        cache.putLater("key", "value2", completion2)
+        cache.removeLater("key", completion3)
+        cache.putLater("key", "value4", completion3)
+
+        then:
+        queue.size() == 2
+
+        when:
+        queue*.run()
+
+        then:
+        1 * persistentCache.put("key", "value4")
+        1 * persistentCache.put("other", "other")
+        1 * completion1.run()
+        1 * completion2.run()
+        2 * completion3.run()
+        0 * persistentCache._
+    }
+
+    def "reads value of pending update without waiting for queued work"() {
+        when:
+        cache.putLater("key", "value", Stub(Runnable))
+        cache.removeLater("removed", Stub(Runnable))
+
+        then:
+        cache.get("key") == "value"
+        cache.get("removed") == null
+        0 * asyncCacheAccess.read(_)
+
+        when:
+        queue*.run()
+        cache.get("key")
+
+        then:
+        1 * asyncCacheAccess.read(_) >> "value"
+    }
+
+    def "queues a new update when the pending update for the key has started"() {
+        when:
+        cache.putLater("key", "value1", Stub(Runnable))
+        queue[0].run()
+
+        then:
+        1 * persistentCache.put("key", "value1") >> {
+            cache.putLater("key", "value2", Stub(Runnable))
+        }
+        queue.size() == 2
+
+        when:
+        queue[1].run()
+
+        then:
+        1 * persistentCache.put("key", "value2")
+    }
+
+    def "runs only the latest update and all completions when updates are applied by the cache worker"() {
+        def cacheAccess = Stub(CacheAccess) {
+            useCache(_) >> { Runnable action -> action.run() }
+        }
+        def worker = new CacheAccessWorker("<cache>", cacheAccess)
+        def workerCache = new AsyncCacheAccessDecoratedCache<String, String>(worker, persistentCache)
+        def completion1 = Mock(Runnable)
+        def completion2 = Mock(Runnable)
+
+        when:
+        workerCache.putLater("key", "value1", completion1)
+        workerCache.putLater("key", "value2", completion2)
+        Thread.start { worker.run() }
+        worker.flush()
+
+        then:
+        1 * persistentCache.put("key", "value2")
+        1 * completion1.run()
+        1 * completion2.run()
+        0 * persistentCache._
+
+        cleanup:
+        worker.stop()
+    }
+}
@@ -104,6 +104,55 @@ class CacheAccessWorkerTest extends ConcurrentSpec {
         cacheAccessWorker?.stop()
     }
 
+    def "runs more queued actions than fit in a single batch in order without releasing the cache"() {
+        given:
+        def lockAcquisitions = 0
+        def batchingCacheAccess = Stub(CacheAccess) {
+            useCache(_) >> { Runnable action ->
+                lockAcquisitions++
+                action.run()
+            }
+        }
+        def worker = new CacheAccessWorker("<cache>", batchingCacheAccess)
+        def actions = []
+        600.times { i -> worker.enqueue { actions << i } }
+
+        when:
+        start(worker)
+        worker.flush()
+
+        then:
+        actions == (0..<600).toList()
+        lockAcquisitions == 1
+
+        cleanup:
+        worker?.stop()
+    }
+
+    def "counts producers that wait for space in a full queue"() {
+        given:
+        def counter = 0
+
+        when:
+        def producer = Thread.start {
+            5000.times { cacheAccessWorker.enqueue { counter++ } }
+        }
+        while (producer.state != Thread.State.WAITING) {
+            Thread.sleep(10)
+        }
+        start(cacheAccessWorker)
+        producer.join()
+        cacheAccessWorker.flush()
+
+        then:
+        counter == 5000
+        cacheAccessWorker.blockedSubmissions > 0
+        cacheAccessWorker.blockedMillis >= 0
+
+        cleanup:
+        cacheAccessWorker?.stop()
+    }
+
     def "stop waits for queued actions to complete"() {
         given:
         def counter = 0
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class MappedByteInputTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    RandomAccessFile file
+    MappedByteInput input
+
+    def setup() {
+        file = new RandomAccessFile(tmpDir.file("test.bin"), "rw")
+        input = new MappedByteInput(file, 16, 4)
+    }
+
+    def cleanup() {
+        file.close()
+    }
+
+    def "can reuse to read from multiple locations in file"() {
+        given:
+        file.seek(0)
+        file.writeInt(123)
+        file.writeInt(321)
+        file.writeInt(456)
+
+        expect:
+        def stream = input.start(0)
+        stream.readInt() == 123
+        stream.readInt() == 321
+        input.done()
+
+        def stream2 = input.start(4)
+        stream2.readInt() == 321
+        stream2.readInt() == 456
+        input.done()
+
+        def stream3 = input.start(0)
+        stream3.readInt() == 123
+        input.done()
+    }
+
+    def "can read across mapped chunks"() {
+        given:
+        file.seek(0)
+        10.times { file.writeLong(it) }
+
+        expect:
+        def stream = input.start(12)
+        stream.readInt() == 1
+        stream.readLong() == 2
+        stream.readLong() == 3
+        input.getBytesRead() == 20
+        input.done()
+    }
+
+    def "can read data written after the file was mapped"() {
+        given:
+        file.seek(0)
+        file.writeLong(1)
+        file.writeLong(2)
+        input.start(0).readLong()
+        input.done()
+
+        when:
+        file.writeLong(3)
+        file.writeInt(4)
+
+        then:
+        def stream = input.start(8)
+        stream.readLong() == 2
+        stream.readLong() == 3
+        stream.readInt() == 4
+        input.done()
+
+        when:
+        file.writeInt(5)
+
+        then:
+        def stream2 = input.start(24)
+        stream2.readInt() == 4
+        stream2.readInt() == 5
+        input.done()
+    }
+
+    def "cannot read beyond end of file"() {
+        given:
+        file.seek(0)
+        file.writeLong(1)
+
+        when:
+        def stream = input.start(4)
+        stream.readInt()
+        stream.readInt()
+
+        then:
+        EOFException e = thrown()
+    }
+}
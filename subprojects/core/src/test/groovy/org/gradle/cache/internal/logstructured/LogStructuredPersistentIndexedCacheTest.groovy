@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstructured
+
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.internal.serialize.DefaultSerializer
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class LogStructuredPersistentIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def segmentDir = tmpDir.file("cache.log")
+    LogStructuredPersistentIndexedCache<String, Integer> cache
+
+    def setup() {
+        open()
+    }
+
+    def cleanup() {
+        cache?.close()
+    }
+
+    def "returns null for unknown entry"() {
+        expect:
+        cache.get("unknown") == null
+    }
+
+    def "persists added, updated and removed entries"() {
+        when:
+        cache.put("a", 1)
+        cache.put("b", 2)
+        cache.put("c", 3)
+        cache.put("b", 12)
+        cache.remove("c")
+        cache.remove("unknown")
+
+        then:
+        cache.get("a") == 1
+        cache.get("b") == 12
+        cache.get("c") == null
+
+        when:
+        reopen()
+
+        then:
+        cache.get("a") == 1
+        cache.get("b") == 12
+        cache.get("c") == null
+    }
+
+    def "appends to the last segment and starts a new segment once it is full"() {
+        when:
+        100.times { cache.put("key" + it, it) }
+        reopen()
+        100.times { cache.put("other" + it, it) }
+        reopen()
+
+        then:
+        segmentDir.list().length > 1
+        100.times {
+            assert cache.get("key" + it) == it
+            assert cache.get("other" + it) == it
+        }
+    }
+
+    def "discards incomplete record at the end of the last segment"() {
+        given:
+        cache.put("a", 1)
+        cache.put("b", 2)
+        cache.close()
+        def segment = lastSegment()
+        def length = segment.length()
+        segment.append([1, 2, 3] as byte[])
+
+        when:
+        open()
+        cache.put("c", 3)
+        reopen()
+
+        then:
+        cache.get("a") == 1
+        cache.get("b") == 2
+        cache.get("c") == 3
+        segment.length() > length
+    }
+
+    def "discards record that does not match its checksum at the end of the last segment"() {
+        given:
+        cache.put("a", 1)
+        cache.put("b", 2)
+        cache.close()
+        def segment = lastSegment()
+        def content = segment.bytes
+        content[content.length - 6]++
+        segment.bytes = content
+
+        when:
+        open()
+
+        then:
+        cache.get("a") == 1
+        cache.get("b") == null
+    }
+
+    def "discards all entries when a segment other than the last one is damaged"() {
+        given:
+        100.times { cache.put("key" + it, it) }
+        cache.close()
+        def first = new File(segmentDir, "1.segment")
+        def content = first.bytes
+        content[20]++
+        first.bytes = content
+
+        when:
+        open()
+
+        then:
+        100.times {
+            assert cache.get("key" + it) == null
+        }
+    }
+
+    def "compacts segments when most of their content is no longer live"() {
+        given:
+        10.times { round ->
+            50.times { cache.put("key" + it, round) }
+        }
+        cache.remove("key0")
+        def lengthBefore = segmentsLength()
+
+        when:
+        reopen()
+
+        then:
+        segmentsLength() < lengthBefore / 2
+        !new File(segmentDir, "1.segment").exists()
+        cache.get("key0") == null
+        (1..49).each {
+            assert cache.get("key" + it) == 9
+        }
+
+        when:
+        reopen()
+
+        then:
+        cache.get("key0") == null
+        cache.get("key49") == 9
+    }
+
+    def "reads values larger than the write buffer"() {
+        def serializer = new DefaultSerializer<byte[]>()
+        def largeCache = new LogStructuredPersistentIndexedCache<String, byte[]>(tmpDir.file("large.log"), BaseSerializerFactory.STRING_SERIALIZER, serializer)
+        def value = new byte[200000]
+        new Random(1).nextBytes(value)
+
+        when:
+        largeCache.put("small", [1, 2] as byte[])
+        largeCache.put("large", value)
+
+        then:
+        largeCache.get("small") == [1, 2] as byte[]
+        largeCache.get("large") == value
+
+        cleanup:
+        largeCache.close()
+    }
+
+    private void open() {
+        cache = new LogStructuredPersistentIndexedCache<String, Integer>(segmentDir, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.INTEGER_SERIALIZER, 512, 1024)
+    }
+
+    private void reopen() {
+        cache.close()
+        open()
+    }
+
+    private File lastSegment() {
+        return new File(segmentDir, segmentDir.list().collect { (it - ".segment").toInteger() }.max() + ".segment")
+    }
+
+    private long segmentsLength() {
+        return segmentDir.listFiles().sum { it.length() } as long
+    }
+}
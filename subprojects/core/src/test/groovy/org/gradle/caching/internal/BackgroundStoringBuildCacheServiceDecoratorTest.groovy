@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal
+
+import org.gradle.api.internal.file.DefaultTemporaryFileProvider
+import org.gradle.caching.BuildCacheEntryWriter
+import org.gradle.caching.BuildCacheException
+import org.gradle.caching.BuildCacheKey
+import org.gradle.internal.Factory
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class BackgroundStoringBuildCacheServiceDecoratorTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+
+    def key = Mock(BuildCacheKey)
+    def delegate = Mock(RoleAwareBuildCacheService) {
+        getRole() >> "remote"
+    }
+    def writer = Stub(BuildCacheEntryWriter) {
+        writeTo(_) >> { OutputStream output -> output.write("entry".bytes) }
+    }
+
+    def stageDir = temporaryFolder.createDir("tmp")
+    def temporaryFileProvider = new DefaultTemporaryFileProvider(new Factory<File>() {
+        @Override
+        File create() {
+            return stageDir
+        }
+    })
+    def executorFactory = new DefaultExecutorFactory()
+    def decorator = new BackgroundStoringBuildCacheServiceDecorator(temporaryFileProvider, executorFactory, 2, 4, delegate)
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "stores packed entry in the background and waits for pending stores on close"() {
+        def stored = []
+
+        when:
+        decorator.store(key, writer)
+        decorator.close()
+
+        then:
+        1 * delegate.store(key, _) >> { BuildCacheKey k, BuildCacheEntryWriter queuedWriter ->
+            def output = new ByteArrayOutputStream()
+            queuedWriter.writeTo(output)
+            stored << output.toString()
+            assert queuedWriter.pendingStores == 1
+            assert queuedWriter.queuedMillis >= 0
+        }
+        1 * delegate.close()
+
+        and:
+        stored == ["entry"]
+        stageDir.list().length == 0
+    }
+
+    def "does not queue entry when packing fails"() {
+        def failure = new IOException("packing failed")
+        def failingWriter = Stub(BuildCacheEntryWriter) {
+            writeTo(_) >> { throw failure }
+        }
+
+        when:
+        decorator.store(key, failingWriter)
+
+        then:
+        def e = thrown(RuntimeException)
+        e.cause == failure
+
+        when:
+        decorator.close()
+
+        then:
+        0 * delegate.store(_, _)
+        stageDir.list().length == 0
+    }
+
+    def "failure to store entry does not affect other stores"() {
+        when:
+        decorator.store(key, writer)
+        decorator.store(key, writer)
+        decorator.close()
+
+        then:
+        1 * delegate.store(key, _) >> { throw new BuildCacheException("store failed") }
+        1 * delegate.store(key, _)
+        1 * delegate.close()
+
+        and:
+        stageDir.list().length == 0
+    }
+
+    def "rethrows failure to store entry on close"() {
+        def failure = new RuntimeException("store failed")
+
+        when:
+        decorator.store(key, writer)
+        decorator.close()
+
+        then:
+        1 * delegate.store(key, _) >> { throw failure }
+        1 * delegate.close()
+
+        and:
+        def e = thrown(RuntimeException)
+        e == failure
+    }
+
+    def "keeps build cache failure from background store without failing the next store"() {
+        def failure = new BuildCacheException("store failed")
+        def singleThreadedDecorator = new BackgroundStoringBuildCacheServiceDecorator(temporaryFileProvider, executorFactory, 1, 1, delegate)
+        def stored = []
+
+        when:
+        singleThreadedDecorator.store(key, writer)
+        // Waits for the first store to finish, as only one store can be pending
+        singleThreadedDecorator.store(key, writer)
+        singleThreadedDecorator.close()
+
+        then:
+        1 * delegate.store(key, _) >> { throw failure }
+        1 * delegate.store(key, _) >> { BuildCacheKey k, BuildCacheEntryWriter queuedWriter ->
+            def output = new ByteArrayOutputStream()
+            queuedWriter.writeTo(output)
+            stored << output.toString()
+        }
+        noExceptionThrown()
+
+        and:
+        stored == ["entry"]
+        singleThreadedDecorator.takeStoreFailures() == [failure]
+        singleThreadedDecorator.takeStoreFailures().empty
+    }
+
+    def "moves entry that has already been packed instead of packing it again"() {
+        def packedEntry = temporaryFolder.createFile("packed")
+        packedEntry.text = "entry"
+        def packedWriter = Mock(PackedBuildCacheEntryWriter)
+        def stored = []
+
+        when:
+        decorator.store(key, packedWriter)
+        decorator.close()
+
+        then:
+        1 * packedWriter.moveTo(_) >> { File destination -> packedEntry.renameTo(destination) }
+        0 * packedWriter.writeTo(_)
+        1 * delegate.store(key, _) >> { BuildCacheKey k, BuildCacheEntryWriter queuedWriter ->
+            def output = new ByteArrayOutputStream()
+            queuedWriter.writeTo(output)
+            stored << output.toString()
+        }
+
+        and:
+        stored == ["entry"]
+        !packedEntry.exists()
+        stageDir.list().length == 0
+    }
+}
@@ -22,6 +22,7 @@ import org.gradle.caching.configuration.AbstractBuildCache
 import org.gradle.caching.configuration.BuildCache
 import org.gradle.caching.configuration.internal.BuildCacheConfigurationInternal
 import org.gradle.caching.local.DirectoryBuildCache
+import org.gradle.internal.concurrent.ExecutorFactory
 import org.gradle.internal.progress.BuildOperationExecutor
 import org.gradle.internal.reflect.Instantiator
 import spock.lang.Specification
@@ -53,7 +54,8 @@ class BuildCacheServiceProviderTest extends Specification {
     }
     def buildOperationExecuter = Mock(BuildOperationExecutor)
     def temporaryFileProvider = Mock(TemporaryFileProvider)
-    def provider = new BuildCacheServiceProvider(buildCacheConfiguration, startParameter, instantiator, buildOperationExecuter, temporaryFileProvider) {
+    def executorFactory = Mock(ExecutorFactory)
+    def provider = new BuildCacheServiceProvider(buildCacheConfiguration, startParameter, instantiator, buildOperationExecuter, temporaryFileProvider, executorFactory) {
         @Override
         RoleAwareBuildCacheService createDecoratedBuildCacheService(String role, BuildCache buildCache) {
             sensedBuildCaches += buildCache
@@ -100,6 +102,22 @@ class BuildCacheServiceProviderTest extends Specification {
         sensedBuildCaches == [remote]
     }
 
+    def 'remote cache service stores entries in the background when push is enabled'() {
+        local = Stub(DirectoryBuildCache) {
+            isEnabled() >> false
+        }
+        remote = Stub(RemoteBuildCache) {
+            isEnabled() >> true
+            isPush() >> true
+        }
+
+        when:
+        def buildCacheService = provider.createBuildCacheService()
+        then:
+        1 * executorFactory.create(_, 2)
+        buildCacheService instanceof ShortCircuitingErrorHandlerBuildCacheServiceDecorator
+    }
+
     def 'dispatching cache service is created when local and remote are enabled'() {
         local = createConfiguration(DirectoryBuildCache)
         remote = createConfiguration(RemoteBuildCache)
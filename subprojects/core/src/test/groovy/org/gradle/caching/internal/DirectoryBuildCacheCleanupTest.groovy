@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal
+
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+@CleanupTestDirectory
+class DirectoryBuildCacheCleanupTest extends Specification {
+    static final long NOW = TimeUnit.DAYS.toMillis(100)
+
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def cacheDir = temporaryFolder.createDir("cache")
+
+    def "removes least recently used entries until the cache fits the target size"() {
+        def cleanup = new DirectoryBuildCacheCleanup(cacheDir, 20, TimeUnit.DAYS.toMillis(7))
+        def oldest = entry("0", 10, NOW - 3000)
+        def older = entry("1", 10, NOW - 2000)
+        def newest = entry("2", 10, NOW - 1000)
+
+        when:
+        cleanup.cleanup(NOW)
+
+        then:
+        !oldest.exists()
+        older.exists()
+        newest.exists()
+    }
+
+    def "removes entries that have not been used for longer than the max age"() {
+        def cleanup = new DirectoryBuildCacheCleanup(cacheDir, Long.MAX_VALUE, TimeUnit.DAYS.toMillis(7))
+        def unused = entry("0", 10, NOW - TimeUnit.DAYS.toMillis(8))
+        def used = entry("1", 10, NOW - TimeUnit.DAYS.toMillis(6))
+
+        when:
+        cleanup.cleanup(NOW)
+
+        then:
+        !unused.exists()
+        used.exists()
+    }
+
+    def "ignores files that are not cache entries"() {
+        def cleanup = new DirectoryBuildCacheCleanup(cacheDir, 0, 0)
+        def lockFile = cacheDir.file("build-cache-1.lock").createFile()
+        def entry = entry("0", 10, NOW - 1000)
+
+        when:
+        cleanup.cleanup(NOW)
+
+        then:
+        !entry.exists()
+        lockFile.exists()
+        cacheDir.file(DirectoryBuildCacheCleanup.MARKER_FILE_NAME).exists()
+    }
+
+    def "cleanup is only required once per interval"() {
+        def cleanup = new DirectoryBuildCacheCleanup(cacheDir, Long.MAX_VALUE, Long.MAX_VALUE)
+
+        expect:
+        cleanup.isCleanupRequired(NOW)
+
+        when:
+        cleanup.cleanup(NOW)
+
+        then:
+        !cleanup.isCleanupRequired(NOW + 1000)
+        cleanup.isCleanupRequired(NOW + DirectoryBuildCacheCleanup.CLEANUP_INTERVAL_MILLIS + 1000)
+    }
+
+    private TestFile entry(String prefix, int size, long lastUsed) {
+        def file = cacheDir.file(prefix * 32)
+        file.bytes = new byte[size]
+        file.lastModified = lastUsed
+        return file
+    }
+}
@@ -48,6 +48,8 @@ class DirectoryBuildCacheServiceFactoryTest extends Specification {
         1 * config.getDirectory() >> null
         1 * cacheScopeMapping.getBaseDirectory(null, "build-cache-1", VersionStrategy.SharedCache) >> cacheDir
         1 * cacheRepository.cache(cacheDir) >> cacheBuilder
+        1 * config.getTargetSizeInMB() >> 5 * 1024
+        1 * config.getRemoveUnusedEntriesAfterDays() >> 7
         0 * _
     }
 
@@ -61,6 +63,8 @@ class DirectoryBuildCacheServiceFactoryTest extends Specification {
         1 * config.getDirectory() >> cacheDir
         1 * resolver.resolve(cacheDir) >> cacheDir
         1 * cacheRepository.cache(cacheDir) >> cacheBuilder
+        1 * config.getTargetSizeInMB() >> 5 * 1024
+        1 * config.getRemoveUnusedEntriesAfterDays() >> 7
         0 * _
     }
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal
+
+import org.gradle.api.internal.file.DefaultTemporaryFileProvider
+import org.gradle.caching.BuildCacheEntryReader
+import org.gradle.caching.BuildCacheEntryWriter
+import org.gradle.caching.BuildCacheKey
+import org.gradle.internal.Factory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class DispatchingBuildCacheServiceTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+
+    def key = Mock(BuildCacheKey)
+    def local = Mock(RoleAwareBuildCacheService)
+    def remote = Mock(RoleAwareBuildCacheService)
+
+    def stageDir = temporaryFolder.createDir("tmp")
+    def temporaryFileProvider = new DefaultTemporaryFileProvider(new Factory<File>() {
+        @Override
+        File create() {
+            return stageDir
+        }
+    })
+
+    def "loads from local cache first"() {
+        def service = new DispatchingBuildCacheService(local, true, remote, true, temporaryFileProvider)
+        def reader = Mock(BuildCacheEntryReader)
+
+        when:
+        def loaded = service.load(key, reader)
+
+        then:
+        loaded
+        1 * local.load(key, reader) >> true
+        0 * remote._
+        0 * local.store(_, _)
+    }
+
+    def "stores entry loaded from remote cache in local cache"() {
+        def service = new DispatchingBuildCacheService(local, true, remote, false, temporaryFileProvider)
+        def received = new ByteArrayOutputStream()
+        def reader = { InputStream input -> received.write(input.read()) } as BuildCacheEntryReader
+        def stored = new ByteArrayOutputStream()
+
+        when:
+        def loaded = service.load(key, reader)
+
+        then:
+        loaded
+        1 * local.load(key, reader) >> false
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader teeReader ->
+            teeReader.readFrom(new ByteArrayInputStream("data".bytes))
+            true
+        }
+        1 * local.store(key, _) >> { BuildCacheKey key, BuildCacheEntryWriter writer ->
+            writer.writeTo(stored)
+        }
+
+        and:
+        // The reader consumed only part of the entry, the local cache still receives all of it
+        received.toByteArray() == [(byte) 'd'] as byte[]
+        stored.toString() == "data"
+        stageDir.listFiles().length == 0
+    }
+
+    def "does not store entry in local cache when it is not found in remote cache"() {
+        def service = new DispatchingBuildCacheService(local, true, remote, false, temporaryFileProvider)
+        def reader = Mock(BuildCacheEntryReader)
+
+        when:
+        def loaded = service.load(key, reader)
+
+        then:
+        !loaded
+        1 * local.load(key, reader) >> false
+        1 * remote.load(key, _) >> false
+        0 * local.store(_, _)
+    }
+
+    def "does not store entry in local cache when reading it fails"() {
+        def service = new DispatchingBuildCacheService(local, true, remote, false, temporaryFileProvider)
+        def reader = { InputStream input -> throw new IOException("broken") } as BuildCacheEntryReader
+
+        when:
+        service.load(key, reader)
+
+        then:
+        1 * local.load(key, reader) >> false
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader teeReader ->
+            try {
+                teeReader.readFrom(new ByteArrayInputStream("data".bytes))
+            } catch (IOException e) {
+                // Handled by the remote cache
+            }
+            true
+        }
+        0 * local.store(_, _)
+    }
+
+    def "loads from remote cache directly when push to local cache is disabled"() {
+        def service = new DispatchingBuildCacheService(local, false, remote, true, temporaryFileProvider)
+        def reader = Mock(BuildCacheEntryReader)
+
+        when:
+        def loaded = service.load(key, reader)
+
+        then:
+        loaded
+        1 * local.load(key, reader) >> false
+        1 * remote.load(key, reader) >> true
+        0 * local.store(_, _)
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal
+
+import org.gradle.api.internal.file.DefaultTemporaryFileProvider
+import org.gradle.caching.BuildCacheEntryReader
+import org.gradle.caching.BuildCacheException
+import org.gradle.caching.BuildCacheKey
+import org.gradle.caching.BuildCacheService
+import org.gradle.internal.Factory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class PrefetchingBuildCacheServiceDecoratorTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+
+    def key = Stub(BuildCacheKey) {
+        getHashCode() >> "key"
+    }
+    def delegate = Mock(BuildCacheService)
+    def reader = Mock(BuildCacheEntryReader)
+
+    def stageDir = temporaryFolder.createDir("tmp")
+    def temporaryFileProvider = new DefaultTemporaryFileProvider(new Factory<File>() {
+        @Override
+        File create() {
+            return stageDir
+        }
+    })
+    def decorator = new PrefetchingBuildCacheServiceDecorator(temporaryFileProvider, delegate)
+
+    def "loads prefetched entry without loading it again"() {
+        when:
+        decorator.prefetch(key)
+
+        then:
+        1 * delegate.load(key, _) >> { BuildCacheKey k, BuildCacheEntryReader stagingReader ->
+            stagingReader.readFrom(new ByteArrayInputStream("entry".bytes))
+            true
+        }
+
+        when:
+        def found = decorator.load(key, reader)
+
+        then:
+        found
+        1 * reader.readFrom(_) >> { InputStream input -> assert input.text == "entry" }
+        0 * delegate.load(_, _)
+
+        and:
+        stageDir.list().length == 0
+
+        when:
+        decorator.load(key, reader)
+
+        then:
+        1 * delegate.load(key, reader)
+    }
+
+    def "reports prefetched miss"() {
+        given:
+        delegate.load(key, _) >> false
+        decorator.prefetch(key)
+
+        when:
+        def found = decorator.load(key, reader)
+
+        then:
+        !found
+        0 * delegate.load(_, _)
+        0 * reader.readFrom(_)
+    }
+
+    def "loads entry from delegate when prefetch failed"() {
+        given:
+        delegate.load(key, _) >> { throw new BuildCacheException("failed") }
+        decorator.prefetch(key)
+
+        when:
+        decorator.load(key, reader)
+
+        then:
+        1 * delegate.load(key, reader) >> true
+        stageDir.list().length == 0
+    }
+
+    def "discards unused prefetched entries"() {
+        given:
+        delegate.load(key, _) >> { BuildCacheKey k, BuildCacheEntryReader stagingReader ->
+            stagingReader.readFrom(new ByteArrayInputStream("entry".bytes))
+            true
+        }
+        decorator.prefetch(key)
+
+        when:
+        decorator.close()
+
+        then:
+        1 * delegate.close()
+        stageDir.list().length == 0
+    }
+}
@@ -70,4 +70,22 @@ class ShortCircuitingErrorHandlerBuildCacheServiceDecoratorTest extends Abstract
         then:
         noExceptionThrown()
     }
+
+    def "counts failures of stores finished in the background"() {
+        def deferringDelegate = Mock(DeferredStoringBuildCacheService)
+        def deferringDecorator = new ShortCircuitingErrorHandlerBuildCacheServiceDecorator(maxFailures, deferringDelegate)
+
+        when:
+        deferringDecorator.store(key, writer)
+        deferringDecorator.store(key, writer)
+        deferringDecorator.load(key, reader)
+
+        then:
+        1 * deferringDelegate.takeStoreFailures() >> []
+        1 * deferringDelegate.store(key, writer)
+        1 * deferringDelegate.takeStoreFailures() >> [new BuildCacheException("first"), new BuildCacheException("second")]
+        1 * deferringDelegate.getRole() >> "role"
+        1 * deferringDelegate.takeStoreFailures() >> []
+        0 * _
+    }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks
+
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.zip.GZIPInputStream
+
+class ParallelGZipOutputStreamTest extends Specification {
+    def executor = new DefaultExecutorFactory().create("test", 4)
+
+    def cleanup() {
+        executor.stop()
+    }
+
+    @Unroll
+    def "compressed output of #size bytes can be read as a single gzip stream"() {
+        def data = new byte[size]
+        new Random(1).nextBytes(data)
+        def output = new ByteArrayOutputStream()
+
+        when:
+        def gzipOutput = new ParallelGZipOutputStream(output, executor, 2)
+        def split = size.intdiv(3)
+        gzipOutput.write(data, 0, split)
+        gzipOutput.write(data[split])
+        gzipOutput.write(data, split + 1, size - split - 1)
+        gzipOutput.close()
+
+        then:
+        new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())).bytes == data
+
+        where:
+        size << [1, 10, ParallelGZipOutputStream.BLOCK_SIZE, 5 * ParallelGZipOutputStream.BLOCK_SIZE + 17]
+    }
+
+    def "writes a valid gzip stream when nothing is written"() {
+        def output = new ByteArrayOutputStream()
+
+        when:
+        new ParallelGZipOutputStream(output, executor, 2).close()
+
+        then:
+        new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())).bytes.length == 0
+    }
+}
@@ -19,6 +19,7 @@ package org.gradle.caching.internal.tasks
 import com.google.common.collect.ImmutableSortedSet
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.nativeplatform.filesystem.FileSystem
 import spock.lang.Unroll
 
@@ -29,7 +30,7 @@ class TarTaskOutputPackerTest extends AbstractTaskOutputPackerSpec {
     def fileSystem = Mock(FileSystem)
     def readOrigin = Stub(TaskOutputOriginReader)
     def writeOrigin = Stub(TaskOutputOriginWriter)
-    def packer = new TarTaskOutputPacker(fileSystem)
+    def packer = new TarTaskOutputPacker(fileSystem, new DefaultExecutorFactory())
 
     @Unroll
     def "can pack single task output file with file mode #mode"() {
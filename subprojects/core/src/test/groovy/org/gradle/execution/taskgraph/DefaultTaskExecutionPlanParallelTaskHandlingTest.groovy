@@ -172,6 +172,28 @@ class DefaultTaskExecutionPlanParallelTaskHandlingTest extends AbstractProjectBu
         requestedTasksBecomeAvailableForExecution()
     }
 
+    def "task becomes available for execution as soon as its dependencies complete while other tasks are still running"() {
+        given:
+        Task a = root.task("a", type: Parallel)
+        Task b = root.task("b", type: Parallel)
+        Task c = root.task("c", type: Parallel).dependsOn(a)
+
+        when:
+        addToGraphAndPopulate(c, b)
+        startTasks(2)
+
+        then:
+        noMoreTasksCurrentlyAvailableForExecution()
+
+        when:
+        def taskInfoA = startedTasks.find { it.task == a }
+        startedTasks.remove(taskInfoA)
+        executionPlan.taskComplete(taskInfoA)
+
+        then:
+        requestedTasksBecomeAvailableForExecution()
+    }
+
     def "a parallelizable task with custom actions is not run in parallel"() {
         given:
         Task a = root.task("a", type: Parallel)
@@ -21,6 +21,7 @@ import org.gradle.api.CircularReferenceException
 import org.gradle.api.Task
 import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.internal.tasks.TaskStateInternal
 import org.gradle.api.specs.Spec
@@ -633,6 +634,39 @@ public class DefaultTaskExecutionPlanTest extends AbstractProjectBuilderSpec {
         e.message == 'Build cancelled.'
     }
 
+    def "prioritizes tasks with the longest estimated remaining critical path when task durations are known"() {
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", dependsOn: [b])
+        executionPlan.useTaskDurations(Stub(TaskDurationRepository) {
+            getDuration(":a") >> 10L
+            getDuration(":b") >> 10L
+            getDuration(":c") >> 100L
+        })
+
+        when:
+        addToGraphAndPopulate([a, c])
+
+        then:
+        executionPlan.tasks == [a, b, c]
+        executedTasks == [b, c, a]
+    }
+
+    def "prioritizes tasks by graph depth when task durations are not known"() {
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", dependsOn: [b])
+        executionPlan.useTaskDurations(Stub(TaskDurationRepository) {
+            getDuration(_) >> null
+        })
+
+        when:
+        addToGraphAndPopulate([a, c])
+
+        then:
+        executedTasks == [b, a, c]
+    }
+
     protected TaskInfo getTaskToExecute() {
         executionPlan.getTaskToExecute()
     }
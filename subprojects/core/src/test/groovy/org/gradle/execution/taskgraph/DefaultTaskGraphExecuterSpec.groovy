@@ -23,7 +23,9 @@ import org.gradle.api.execution.internal.InternalTaskExecutionListener
 import org.gradle.api.execution.internal.TaskOperationInternal
 import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository
 import org.gradle.api.internal.tasks.TaskExecuter
+import org.gradle.api.internal.tasks.TaskExecutionOutcome
 import org.gradle.api.internal.tasks.TaskStateInternal
 import org.gradle.api.tasks.TaskDependency
 import org.gradle.initialization.BuildCancellationToken
@@ -43,7 +45,7 @@ class DefaultTaskGraphExecuterSpec extends Specification {
     def buildOperationExecutor = new TestBuildOperationExecutor()
     def workerLeases = new DefaultBuildOperationWorkerRegistry(1)
     BuildOperationWorkerRegistry.Completion parentWorkerLease
-    def taskExecuter = new DefaultTaskGraphExecuter(listenerManager, new DefaultTaskPlanExecutor(workerLeases), Factories.constant(executer), cancellationToken, buildOperationExecutor)
+    def taskExecuter = new DefaultTaskGraphExecuter(listenerManager, new DefaultTaskPlanExecutor(workerLeases), Factories.constant(executer), null, cancellationToken, buildOperationExecutor)
 
     def setup() {
         parentWorkerLease = workerLeases.operationStart()
@@ -162,13 +164,48 @@ class DefaultTaskGraphExecuterSpec extends Specification {
         noExceptionThrown()
     }
 
-    def task(String name) {
+    def "records duration of tasks whose actions were executed"() {
+        def durations = Mock(TaskDurationRepository)
+        def graphExecuter = new DefaultTaskGraphExecuter(listenerManager, new DefaultTaskPlanExecutor(workerLeases), Factories.constant(executer), Factories.constant(durations), cancellationToken, buildOperationExecutor)
+        def a = task("a", TaskExecutionOutcome.EXECUTED)
+
+        given:
+        graphExecuter.addTasks([a])
+
+        when:
+        graphExecuter.execute()
+
+        then:
+        1 * durations.recordDuration(a.path, _)
+    }
+
+    def "does not record duration of tasks whose actions were not executed"() {
+        def durations = Mock(TaskDurationRepository)
+        def graphExecuter = new DefaultTaskGraphExecuter(listenerManager, new DefaultTaskPlanExecutor(workerLeases), Factories.constant(executer), Factories.constant(durations), cancellationToken, buildOperationExecutor)
+        def a = task("a", outcome)
+
+        given:
+        graphExecuter.addTasks([a])
+
+        when:
+        graphExecuter.execute()
+
+        then:
+        0 * durations.recordDuration(_, _)
+
+        where:
+        outcome << [TaskExecutionOutcome.UP_TO_DATE, TaskExecutionOutcome.FROM_CACHE, TaskExecutionOutcome.SKIPPED, TaskExecutionOutcome.NO_SOURCE]
+    }
+
+    def task(String name, TaskExecutionOutcome outcome = null) {
         def mock = Mock(TaskInternal)
+        _ * mock.path >> ":" + name
         _ * mock.name >> name
         _ * mock.identityPath >> project.identityPath.child(name)
         _ * mock.project >> project
         _ * mock.state >> Stub(TaskStateInternal) {
             getFailure() >> null
+            getOutcome() >> outcome
         }
         _ * mock.taskDependencies >> Stub(TaskDependency)
         _ * mock.finalizedBy >> Stub(TaskDependency)
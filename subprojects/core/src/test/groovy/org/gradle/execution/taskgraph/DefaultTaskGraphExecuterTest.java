@@ -97,7 +97,7 @@ public class DefaultTaskGraphExecuterTest {
             ignoring(taskExecutionListener);
         }});
         parentWorkerLease = workerLeases.operationStart();
-        taskExecuter = new DefaultTaskGraphExecuter(listenerManager, new DefaultTaskPlanExecutor(workerLeases), Factories.constant(executer), cancellationToken, buildOperationExecutor);
+        taskExecuter = new DefaultTaskGraphExecuter(listenerManager, new DefaultTaskPlanExecutor(workerLeases), Factories.constant(executer), null, cancellationToken, buildOperationExecutor);
     }
 
     @After
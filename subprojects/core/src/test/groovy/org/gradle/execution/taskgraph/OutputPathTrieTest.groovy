@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph
+
+import org.gradle.api.internal.TaskInternal
+import org.gradle.internal.Pair
+import spock.lang.Specification
+
+class OutputPathTrieTest extends Specification {
+    def trie = new OutputPathTrie('/' as char)
+    def a = Stub(TaskInternal)
+    def b = Stub(TaskInternal)
+
+    def "finds output with the same path"() {
+        when:
+        trie.add(a, "/build/out")
+
+        then:
+        trie.findOverlap("/build/out") == Pair.of(a, "/build/out")
+    }
+
+    def "finds output containing the path"() {
+        when:
+        trie.add(a, "/build")
+
+        then:
+        trie.findOverlap("/build/out/file") == Pair.of(a, "/build")
+    }
+
+    def "finds output contained by the path"() {
+        when:
+        trie.add(a, "/build/out/classes")
+
+        then:
+        trie.findOverlap("/build/out") == Pair.of(a, "/build/out")
+    }
+
+    def "does not find outputs which only share a prefix with the path"() {
+        when:
+        trie.add(a, "/build/out")
+        trie.add(b, "/build/out-other/file")
+
+        then:
+        trie.findOverlap("/build/ou") == null
+        trie.findOverlap("/build/out-") == null
+        trie.findOverlap("/build/out2") == null
+        trie.findOverlap("/src") == null
+    }
+
+    def "does not find removed outputs"() {
+        given:
+        trie.add(a, "/build/out/a")
+        trie.add(b, "/build/out/b")
+
+        when:
+        trie.remove(a, "/build/out/a")
+
+        then:
+        trie.findOverlap("/build/out/a") == null
+        trie.findOverlap("/build/out") == Pair.of(b, "/build/out")
+
+        when:
+        trie.remove(b, "/build/out/b")
+
+        then:
+        trie.findOverlap("/build") == null
+    }
+
+    def "keeps output of other task with the same path when removing an output"() {
+        given:
+        trie.add(a, "/build/out")
+        trie.add(b, "/build/out")
+
+        when:
+        trie.remove(a, "/build/out")
+
+        then:
+        trie.findOverlap("/build/out/file") == Pair.of(b, "/build/out")
+    }
+}
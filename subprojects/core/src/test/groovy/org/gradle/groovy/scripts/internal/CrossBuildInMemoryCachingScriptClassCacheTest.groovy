@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.groovy.scripts.internal
+
+import com.google.common.hash.HashCode
+import org.gradle.api.Action
+import org.gradle.api.internal.cache.CrossBuildInMemoryCacheFactory
+import org.gradle.api.internal.hash.FileHasher
+import org.gradle.api.internal.initialization.loadercache.ClassLoaderId
+import org.gradle.groovy.scripts.Script
+import org.gradle.groovy.scripts.ScriptSource
+import org.gradle.internal.event.DefaultListenerManager
+import org.gradle.internal.resource.TextResource
+import spock.lang.Specification
+
+class CrossBuildInMemoryCachingScriptClassCacheTest extends Specification {
+    def hasher = Stub(FileHasher) {
+        hash(_ as TextResource) >> { TextResource resource -> HashCode.fromInt(resource.text.hashCode()) }
+    }
+    def cacheFactory = new CrossBuildInMemoryCacheFactory(new DefaultListenerManager())
+    def delegate = Mock(ScriptClassCompiler)
+    def classLoader = Stub(ClassLoader)
+    def classLoaderId = Stub(ClassLoaderId)
+    def verifier = Stub(Action)
+    def operation = Stub(CompileOperation) {
+        getId() >> "id"
+    }
+
+    def "reuses compiled script for the same script class while its content is unchanged"() {
+        def cache = new CrossBuildInMemoryCachingScriptClassCache(hasher, cacheFactory)
+        def compiled = Stub(CompiledScript)
+        def changed = Stub(CompiledScript)
+
+        when:
+        def c1 = cache.getOrCompile(script("a", "println 1"), classLoader, classLoaderId, operation, Script, verifier, delegate)
+        def c2 = cache.getOrCompile(script("a", "println 1"), classLoader, classLoaderId, operation, Script, verifier, delegate)
+
+        then:
+        1 * delegate.compile(_, classLoader, classLoaderId, operation, Script, verifier) >> compiled
+        0 * delegate._
+        c1 == compiled
+        c2 == compiled
+
+        when:
+        def c3 = cache.getOrCompile(script("a", "println 2"), classLoader, classLoaderId, operation, Script, verifier, delegate)
+
+        then:
+        1 * delegate.compile(_, classLoader, classLoaderId, operation, Script, verifier) >> changed
+        c3 == changed
+    }
+
+    def "compiles identical scripts separately by default"() {
+        def cache = new CrossBuildInMemoryCachingScriptClassCache(hasher, cacheFactory)
+
+        when:
+        cache.getOrCompile(script("a", "println 1"), classLoader, classLoaderId, operation, Script, verifier, delegate)
+        cache.getOrCompile(script("b", "println 1"), classLoader, classLoaderId, operation, Script, verifier, delegate)
+
+        then:
+        2 * delegate.compile(_, classLoader, classLoaderId, operation, Script, verifier) >> Stub(CompiledScript)
+    }
+
+    def "shares compiled script between identical scripts when enabled"() {
+        def cache = new CrossBuildInMemoryCachingScriptClassCache(hasher, cacheFactory, true)
+        def compiled = Stub(CompiledScript)
+
+        when:
+        def c1 = cache.getOrCompile(script("a", "println 1"), classLoader, classLoaderId, operation, Script, verifier, delegate)
+        def c2 = cache.getOrCompile(script("b", "println 1"), classLoader, classLoaderId, operation, Script, verifier, delegate)
+
+        then:
+        1 * delegate.compile(_, classLoader, classLoaderId, operation, Script, verifier) >> compiled
+        0 * delegate._
+        c1 == compiled
+        c2 == compiled
+    }
+
+    def "does not share compiled script between scripts with different content or class loader"() {
+        def cache = new CrossBuildInMemoryCachingScriptClassCache(hasher, cacheFactory, true)
+
+        when:
+        cache.getOrCompile(script("a", "println 1"), classLoader, classLoaderId, operation, Script, verifier, delegate)
+        cache.getOrCompile(script("b", "println 2"), classLoader, classLoaderId, operation, Script, verifier, delegate)
+        cache.getOrCompile(script("c", "println 1"), Stub(ClassLoader), classLoaderId, operation, Script, verifier, delegate)
+
+        then:
+        3 * delegate.compile(*_) >> Stub(CompiledScript)
+    }
+
+    def script(String className, String text) {
+        def resource = Stub(TextResource) {
+            getText() >> text
+        }
+        return Stub(ScriptSource) {
+            getClassName() >> className
+            getResource() >> resource
+        }
+    }
+}
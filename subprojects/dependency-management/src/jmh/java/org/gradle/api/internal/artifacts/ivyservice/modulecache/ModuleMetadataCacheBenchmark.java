@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.internal.component.external.descriptor.Artifact;
+import org.gradle.internal.component.external.descriptor.MavenScope;
+import org.gradle.internal.component.external.descriptor.MutableModuleDescriptorState;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.external.model.DefaultMutableMavenModuleResolveMetadata;
+import org.gradle.internal.component.external.model.MavenDependencyMetadata;
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.component.model.Exclude;
+import org.gradle.internal.resource.local.LocallyAvailableResource;
+import org.gradle.internal.resource.local.PathKeyFileStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier.newId;
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionSelector.newSelector;
+
+/**
+ * Compares decoding the stored module descriptors of a large dependency graph with reusing the descriptors decoded by a previous build.
+ *
+ * <p>{@code decodeStoredDescriptors} is what a warm resolve costs without {@link CrossBuildModuleMetadataCache}, and
+ * {@code reuseDescriptorsDecodedByPreviousBuild} is what it costs on a hit, including the mutable copy that {@link DefaultModuleMetaDataCache}
+ * hands to its caller. Neither includes reading the module-metadata index, which both paths do.</p>
+ */
+@State(Scope.Benchmark)
+public class ModuleMetadataCacheBenchmark {
+    private static final int MODULE_COUNT = 2000;
+    private static final int DEPENDENCY_COUNT = 20;
+
+    File root;
+    ModuleMetadataStore store;
+    CrossBuildModuleMetadataCache cache;
+    List<ModuleComponentAtRepositoryKey> keys;
+    List<BigInteger> hashes;
+
+    @Setup
+    public void prepare() throws IOException {
+        root = File.createTempFile("jmh", "metadata");
+        root.delete();
+        root.mkdirs();
+
+        ImmutableModuleIdentifierFactory moduleIdentifierFactory = new DefaultImmutableModuleIdentifierFactory();
+        store = new ModuleMetadataStore(new PathKeyFileStore(root), new ModuleMetadataSerializer(), moduleIdentifierFactory, new ModuleExclusions(moduleIdentifierFactory));
+        cache = new CrossBuildModuleMetadataCache();
+        keys = Lists.newArrayListWithCapacity(MODULE_COUNT);
+        hashes = Lists.newArrayListWithCapacity(MODULE_COUNT);
+        for (int i = 0; i < MODULE_COUNT; i++) {
+            DefaultModuleComponentIdentifier componentId = new DefaultModuleComponentIdentifier("org.example.group" + (i % 100), "module" + i, "1." + i);
+            List<DependencyMetadata> dependencies = Lists.newArrayListWithCapacity(DEPENDENCY_COUNT);
+            for (int j = 0; j < DEPENDENCY_COUNT; j++) {
+                dependencies.add(new MavenDependencyMetadata(MavenScope.Compile, false, newSelector("org.example.group" + j, "module" + j, "1." + j), Collections.<Artifact>emptyList(), Collections.<Exclude>emptyList()));
+            }
+            ModuleComponentResolveMetadata metadata = new DefaultMutableMavenModuleResolveMetadata(newId(componentId.getGroup(), componentId.getModule(), componentId.getVersion()), componentId,
+                new MutableModuleDescriptorState(componentId), "jar", false, dependencies).asImmutable();
+
+            ModuleComponentAtRepositoryKey key = new ModuleComponentAtRepositoryKey("repository", componentId);
+            LocallyAvailableResource resource = store.putModuleDescriptor(key, metadata);
+            BigInteger hash = resource.getSha1().asBigInteger();
+            cache.put(key, hash, store.getModuleDescriptor(key).asImmutable());
+            keys.add(key);
+            hashes.add(hash);
+        }
+    }
+
+    @TearDown
+    public void cleanup() throws IOException {
+        FileUtils.forceDelete(root);
+    }
+
+    @Benchmark
+    public void decodeStoredDescriptors(Blackhole bh) {
+        for (ModuleComponentAtRepositoryKey key : keys) {
+            bh.consume(store.getModuleDescriptor(key).asImmutable());
+        }
+    }
+
+    @Benchmark
+    public void reuseDescriptorsDecodedByPreviousBuild(Blackhole bh) {
+        for (int i = 0; i < keys.size(); i++) {
+            bh.consume(cache.get(keys.get(i), hashes.get(i)).asMutable().asImmutable());
+        }
+    }
+}
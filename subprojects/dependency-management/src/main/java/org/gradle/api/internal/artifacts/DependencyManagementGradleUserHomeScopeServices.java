@@ -18,6 +18,7 @@ package org.gradle.api.internal.artifacts;
 
 import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheMetaData;
 import org.gradle.api.internal.artifacts.ivyservice.DefaultArtifactCacheMetaData;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.CrossBuildModuleMetadataCache;
 import org.gradle.api.internal.artifacts.transform.DefaultTransformedFileCache;
 import org.gradle.api.internal.artifacts.transform.TransformedFileCache;
 import org.gradle.api.internal.changedetection.state.InMemoryCacheDecoratorFactory;
@@ -32,4 +33,8 @@ public class DependencyManagementGradleUserHomeScopeServices {
     TransformedFileCache createTransformedFileCache(ArtifactCacheMetaData artifactCacheMetaData, CacheRepository cacheRepository, InMemoryCacheDecoratorFactory cacheDecoratorFactory) {
         return new DefaultTransformedFileCache(artifactCacheMetaData, cacheRepository, cacheDecoratorFactory);
     }
+
+    CrossBuildModuleMetadataCache createCrossBuildModuleMetadataCache() {
+        return new CrossBuildModuleMetadataCache();
+    }
 }
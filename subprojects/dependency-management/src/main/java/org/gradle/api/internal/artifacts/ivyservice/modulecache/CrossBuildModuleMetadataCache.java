@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.gradle.api.Nullable;
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
+
+import java.math.BigInteger;
+
+/**
+ * Retains the module meta-data decoded from the {@link ModuleMetadataStore} across builds, so that a warm resolve does not decode each module descriptor again.
+ *
+ * <p>An entry is only used while the hash recorded for the stored descriptor matches the hash of the descriptor it was decoded from.
+ * A descriptor rewritten by another build or process has a different hash, and is decoded again.</p>
+ */
+public class CrossBuildModuleMetadataCache {
+    private static final int MAX_ENTRIES = 20000;
+    private final Cache<ModuleComponentAtRepositoryKey, DecodedDescriptor> descriptors;
+
+    public CrossBuildModuleMetadataCache() {
+        this(MAX_ENTRIES);
+    }
+
+    CrossBuildModuleMetadataCache(int maxEntries) {
+        descriptors = CacheBuilder.newBuilder().maximumSize(maxEntries).softValues().build();
+    }
+
+    @Nullable
+    public ModuleComponentResolveMetadata get(ModuleComponentAtRepositoryKey key, BigInteger descriptorHash) {
+        DecodedDescriptor descriptor = descriptors.getIfPresent(key);
+        if (descriptor == null || !descriptor.hash.equals(descriptorHash)) {
+            return null;
+        }
+        return descriptor.metadata;
+    }
+
+    public void put(ModuleComponentAtRepositoryKey key, BigInteger descriptorHash, ModuleComponentResolveMetadata metadata) {
+        descriptors.put(key, new DecodedDescriptor(descriptorHash, metadata));
+    }
+
+    private static class DecodedDescriptor {
+        private final BigInteger hash;
+        private final ModuleComponentResolveMetadata metadata;
+
+        DecodedDescriptor(BigInteger hash, ModuleComponentResolveMetadata metadata) {
+            this.hash = hash;
+            this.metadata = metadata;
+        }
+    }
+}
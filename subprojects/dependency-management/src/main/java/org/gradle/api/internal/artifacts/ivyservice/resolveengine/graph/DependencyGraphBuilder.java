@@ -22,6 +22,7 @@ import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.artifacts.ModuleVersionSelector;
 import org.gradle.api.artifacts.component.ComponentIdentifier;
 import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.artifacts.result.ComponentSelectionReason;
 import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
 import org.gradle.api.internal.artifacts.ResolveContext;
@@ -46,6 +47,9 @@ import org.gradle.internal.component.model.DependencyMetadata;
 import org.gradle.internal.component.model.Exclude;
 import org.gradle.internal.id.IdGenerator;
 import org.gradle.internal.id.LongIdGenerator;
+import org.gradle.internal.operations.BuildOperationProcessor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
 import org.gradle.internal.resolve.ModuleVersionResolveException;
 import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
 import org.gradle.internal.resolve.resolver.DependencyToComponentIdResolver;
@@ -67,6 +71,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DependencyGraphBuilder {
     private static final Logger LOGGER = LoggerFactory.getLogger(DependencyGraphBuilder.class);
@@ -78,11 +83,12 @@ public class DependencyGraphBuilder {
     private final AttributesSchemaInternal attributesSchema;
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
     private final ModuleExclusions moduleExclusions;
+    private final BuildOperationProcessor buildOperationProcessor;
 
     public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolver, ComponentMetaDataResolver componentMetaDataResolver,
                                   ResolveContextToComponentResolver resolveContextToComponentResolver,
                                   ConflictHandler conflictHandler, Spec<? super DependencyMetadata> edgeFilter, AttributesSchemaInternal attributesSchema,
-                                  ImmutableModuleIdentifierFactory moduleIdentifierFactory, ModuleExclusions moduleExclusions) {
+                                  ImmutableModuleIdentifierFactory moduleIdentifierFactory, ModuleExclusions moduleExclusions, BuildOperationProcessor buildOperationProcessor) {
         this.idResolver = componentIdResolver;
         this.metaDataResolver = componentMetaDataResolver;
         this.moduleResolver = resolveContextToComponentResolver;
@@ -91,6 +97,7 @@ public class DependencyGraphBuilder {
         this.attributesSchema = attributesSchema;
         this.moduleIdentifierFactory = moduleIdentifierFactory;
         this.moduleExclusions = moduleExclusions;
+        this.buildOperationProcessor = buildOperationProcessor;
     }
 
     public void resolve(ResolveContext resolveContext, DependencyGraphVisitor modelVisitor) {
@@ -164,7 +171,14 @@ public class DependencyGraphBuilder {
                         }
                     }
 
-                    dependency.attachToTargetConfigurations();
+                }
+
+                resolveMetaDataConcurrently(node, dependencies);
+
+                for (DependencyEdge dependency : dependencies) {
+                    if (dependency.targetModuleRevision != null) {
+                        dependency.attachToTargetConfigurations();
+                    }
                 }
             } else {
                 // We have some batched up conflicts. Resolve the first, and continue traversing the graph
@@ -184,6 +198,56 @@ public class DependencyGraphBuilder {
         }
     }
 
+    /**
+     * Resolves the meta-data of the external components newly selected by the given edges concurrently, so that attaching the edges does not fetch them one after another.
+     * The edges are still attached in order, so the graph does not depend on the order in which the meta-data is fetched.
+     *
+     * <p>Component meta-data rules run as part of resolving the meta-data, so they also run on the build operation worker threads. A failure is rethrown
+     * on the resolving thread unchanged, and when several components fail, the failure of the first edge wins, as it would when resolving them in order.</p>
+     */
+    private void resolveMetaDataConcurrently(ConfigurationNode node, List<DependencyEdge> dependencies) {
+        final Set<ModuleVersionResolveState> toResolve = new LinkedHashSet<ModuleVersionResolveState>();
+        for (DependencyEdge dependency : dependencies) {
+            ModuleVersionResolveState target = dependency.targetModuleRevision;
+            if (target != null && target.state == ModuleState.Selected && target.requiresExternalMetaData()) {
+                toResolve.add(target);
+            }
+        }
+        if (toResolve.size() < 2) {
+            return;
+        }
+        LOGGER.debug("Resolving meta-data for {} components concurrently for {}.", toResolve.size(), node);
+        final Map<ModuleVersionResolveState, RuntimeException> failures = new ConcurrentHashMap<ModuleVersionResolveState, RuntimeException>();
+        buildOperationProcessor.run(new Action<BuildOperationQueue<RunnableBuildOperation>>() {
+            @Override
+            public void execute(BuildOperationQueue<RunnableBuildOperation> queue) {
+                for (final ModuleVersionResolveState moduleRevision : toResolve) {
+                    queue.add(new RunnableBuildOperation() {
+                        @Override
+                        public void run() {
+                            try {
+                                moduleRevision.resolve();
+                            } catch (RuntimeException e) {
+                                failures.put(moduleRevision, e);
+                            }
+                        }
+
+                        @Override
+                        public String getDescription() {
+                            return "Resolve meta-data for " + moduleRevision;
+                        }
+                    });
+                }
+            }
+        });
+        for (ModuleVersionResolveState moduleRevision : toResolve) {
+            RuntimeException failure = failures.get(moduleRevision);
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
     /**
      * Populates the result from the graph traversal state.
      */
@@ -666,6 +730,17 @@ public class DependencyGraphBuilder {
             metaData = result.getMetaData();
         }
 
+        /**
+         * Returns true when the meta-data for this module version has not been resolved yet, and is fetched from a repository rather than built locally.
+         */
+        boolean requiresExternalMetaData() {
+            if (metaData != null || failure != null || firstReference == null) {
+                return false;
+            }
+            ComponentIdResolveResult idResolveResult = firstReference.idResolveResult;
+            return idResolveResult.getFailure() == null && idResolveResult.getMetaData() == null && idResolveResult.getId() instanceof ModuleComponentIdentifier;
+        }
+
         @Override
         public ComponentResolveMetadata getMetaData() {
             if (metaData == null) {
@@ -18,7 +18,8 @@ package org.gradle.api.internal.artifacts.transform;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.hash.HashCode;
-import org.gradle.api.Action;
+import org.gradle.api.Nullable;
+import org.gradle.api.UncheckedIOException;
 import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheMetaData;
 import org.gradle.api.internal.changedetection.state.InMemoryCacheDecoratorFactory;
 import org.gradle.cache.CacheBuilder;
@@ -30,15 +31,15 @@ import org.gradle.cache.internal.FileLockManager;
 import org.gradle.internal.Factory;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.concurrent.Stoppable;
-import org.gradle.internal.resource.local.FileStore;
-import org.gradle.internal.resource.local.FileStoreAddActionException;
 import org.gradle.internal.resource.local.PathKeyFileStore;
 import org.gradle.internal.serialize.BaseSerializerFactory;
 import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.ListSerializer;
 import org.gradle.internal.util.BiFunction;
+import org.gradle.util.GFileUtils;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -50,7 +51,8 @@ import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 public class DefaultTransformedFileCache implements TransformedFileCache, Stoppable {
     private final PersistentCache cache;
     private final PersistentIndexedCache<HashCode, List<File>> indexedCache;
-    private final FileStore<String> fileStore;
+    private final PathKeyFileStore fileStore;
+    private final File tempDirectory;
     private final Object lock = new Object();
     private final Set<HashCode> transforming = new HashSet<HashCode>();
 
@@ -58,6 +60,7 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
         File transformsStoreDirectory = artifactCacheMetaData.getTransformsStoreDirectory();
         File filesOutputDirectory = new File(transformsStoreDirectory, TRANSFORMS_STORE.getKey());
         fileStore = new PathKeyFileStore(filesOutputDirectory);
+        tempDirectory = new File(transformsStoreDirectory, "tmp");
         cache = cacheRepository
                 .cache(transformsStoreDirectory)
                 .withCrossVersionCache(CacheBuilder.LockTarget.DefaultTarget)
@@ -77,43 +80,107 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
 
     @Override
     public List<File> getResult(final File inputFile, final HashCode inputsHash, final BiFunction<List<File>, File, File> transformer) {
-        // Apply locking so that only this process is writing to the file store and only a single thread is running this particular transform
+        // Apply locking so that only a single thread is running this particular transform
         transforming(inputsHash);
+        try {
+            List<File> files = findResult(inputsHash);
+            if (files != null) {
+                return files;
+            }
+
+            // Run the transform without holding the file lock, so that other processes can transform at the same time
+            File outputDir = createTempOutputDirectory(inputFile);
+            final List<File> result;
+            try {
+                result = ImmutableList.copyOf(transformer.apply(inputFile, outputDir));
+            } catch (Throwable t) {
+                GFileUtils.deleteQuietly(outputDir);
+                throw UncheckedException.throwAsUncheckedException(t);
+            }
+            return publish(inputFile, inputsHash, outputDir, result);
+        } finally {
+            notTransforming(inputsHash);
+        }
+    }
+
+    @Nullable
+    private List<File> findResult(final HashCode inputsHash) {
+        return cache.withFileLock(new Factory<List<File>>() {
+            @Override
+            public List<File> create() {
+                return getExistingResult(inputsHash);
+            }
+        });
+    }
+
+    @Nullable
+    private List<File> getExistingResult(HashCode inputsHash) {
+        List<File> files = indexedCache.get(inputsHash);
+        if (files == null) {
+            return null;
+        }
+        for (File file : files) {
+            if (!file.exists()) {
+                // Recreate outputs
+                return null;
+            }
+        }
+        return files;
+    }
+
+    private File createTempOutputDirectory(File inputFile) {
+        try {
+            tempDirectory.mkdirs();
+            File outputDir = File.createTempFile(inputFile.getName(), "", tempDirectory);
+            GFileUtils.forceDelete(outputDir);
+            GFileUtils.mkdirs(outputDir);
+            return outputDir;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Moves the outputs of a transform into the file store and records them, unless another process has done so in the meantime.
+     */
+    private List<File> publish(final File inputFile, final HashCode inputsHash, final File outputDir, final List<File> result) {
         try {
             return cache.withFileLock(new Factory<List<File>>() {
                 @Override
                 public List<File> create() {
-                    List<File> files = indexedCache.get(inputsHash);
+                    List<File> files = getExistingResult(inputsHash);
                     if (files != null) {
-                        boolean allExist = true;
-                        for (File file : files) {
-                            if (!file.exists()) {
-                                allExist = false;
-                                break;
-                            }
-                        }
-                        if (allExist) {
-                            return files;
-                        }
-                        // Else, recreate outputs
+                        return files;
                     }
 
                     // File store takes care of cleaning up on failure/crash
                     String key = inputFile.getName() + "/" + inputsHash;
-                    TransformAction action = new TransformAction(transformer, inputFile);
-                    try {
-                        fileStore.add(key, action);
-                    } catch (FileStoreAddActionException e) {
-                        throw UncheckedException.throwAsUncheckedException(e.getCause());
+                    File storedDir = fileStore.move(key, outputDir).getFile();
+                    ImmutableList.Builder<File> builder = ImmutableList.builder();
+                    for (File file : result) {
+                        builder.add(relocate(file, outputDir, storedDir));
                     }
-
-                    indexedCache.put(inputsHash, action.result);
-                    return action.result;
+                    files = builder.build();
+                    indexedCache.put(inputsHash, files);
+                    return files;
                 }
             });
         } finally {
-            notTransforming(inputsHash);
+            GFileUtils.deleteQuietly(outputDir);
+        }
+    }
+
+    private static File relocate(File file, File fromDir, File toDir) {
+        String fromPath = fromDir.getAbsolutePath();
+        String path = file.getAbsolutePath();
+        if (path.equals(fromPath)) {
+            return toDir;
+        }
+        if (path.startsWith(fromPath + File.separator)) {
+            return new File(toDir, path.substring(fromPath.length() + 1));
         }
+        // Not produced by the transform, for example the input file
+        return file;
     }
 
     private void transforming(HashCode inputsHash) {
@@ -134,21 +201,4 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
             lock.notifyAll();
         }
     }
-
-    private static class TransformAction implements Action<File> {
-        private final BiFunction<List<File>, File, File> transformer;
-        private final File inputFile;
-        private ImmutableList<File> result;
-
-        TransformAction(BiFunction<List<File>, File, File> transformer, File inputFile) {
-            this.transformer = transformer;
-            this.inputFile = inputFile;
-        }
-
-        @Override
-        public void execute(File outputDir) {
-            outputDir.mkdirs();
-            result = ImmutableList.copyOf(transformer.apply(inputFile, outputDir));
-        }
-    }
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache
+
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata
+import spock.lang.Specification
+
+class CrossBuildModuleMetadataCacheTest extends Specification {
+    def cache = new CrossBuildModuleMetadataCache()
+    def key = new ModuleComponentAtRepositoryKey("repo", DefaultModuleComponentIdentifier.newId("org.test", "test", "1.0"))
+    def metadata = Stub(ModuleComponentResolveMetadata)
+
+    def "returns metadata decoded from descriptor with the same hash"() {
+        when:
+        cache.put(key, BigInteger.ONE, metadata)
+
+        then:
+        cache.get(key, BigInteger.ONE) == metadata
+        cache.get(new ModuleComponentAtRepositoryKey("other", key.componentId), BigInteger.ONE) == null
+    }
+
+    def "does not return metadata decoded from a descriptor that has since changed"() {
+        when:
+        cache.put(key, BigInteger.ONE, metadata)
+
+        then:
+        cache.get(key, BigInteger.TEN) == null
+    }
+}
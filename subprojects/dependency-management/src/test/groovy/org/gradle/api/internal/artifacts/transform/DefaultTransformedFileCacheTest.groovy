@@ -250,4 +250,30 @@ class DefaultTransformedFileCacheTest extends ConcurrentSpec {
         1 * transform.apply(inputFile, _) >>  { File file, File dir -> def r = new File(dir, "a.1"); r.text = "result"; [r] }
         0 * transform._
     }
+
+    def "runs transform in a temporary directory and moves the outputs into the file store"() {
+        def transform = Mock(BiFunction)
+        def inputFile = tmpDir.file("a").createFile()
+        def transformDir
+
+        when:
+        def result = cache.getResult(inputFile, HashCode.fromInt(123), transform)
+
+        then:
+        1 * transform.apply(inputFile, _) >> { File file, File dir ->
+            transformDir = dir
+            def r = new File(dir, "nested/a.1")
+            r.parentFile.mkdirs()
+            r.text = "result"
+            [r, file]
+        }
+
+        and:
+        !transformDir.exists()
+        result.size() == 2
+        result[0].text == "result"
+        result[0].parentFile.name == "nested"
+        result[0].parentFile.parentFile.name == HashCode.fromInt(123).toString()
+        result[1] == inputFile
+    }
 }
@@ -58,7 +58,7 @@ public class CacheProjectIntegrationTest extends AbstractIntegrationTest {
         userHomeDir = executer.gradleUserHomeDir
         buildFile = projectDir.file('build.gradle')
 
-        artifactsCache = projectDir.file(".gradle/$version/taskHistory/taskHistory.bin")
+        artifactsCache = projectDir.file(".gradle/$version/taskHistory/taskHistory.log/1.segment")
 
         repo = new MavenHttpRepository(server, mavenRepo)
 
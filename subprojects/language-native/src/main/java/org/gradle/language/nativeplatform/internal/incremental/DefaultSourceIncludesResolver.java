@@ -17,6 +17,7 @@ package org.gradle.language.nativeplatform.internal.incremental;
 
 import com.google.common.collect.Sets;
 import org.gradle.internal.FileUtils;
+import org.gradle.internal.nativeintegration.filesystem.FileType;
 import org.gradle.language.nativeplatform.internal.Include;
 import org.gradle.language.nativeplatform.internal.IncludeDirectives;
 
@@ -27,9 +28,11 @@ import java.util.Set;
 
 public class DefaultSourceIncludesResolver implements SourceIncludesResolver {
     private final List<File> includePaths;
+    private final DirectoryListingCache directoryListingCache;
 
-    public DefaultSourceIncludesResolver(List<File> includePaths) {
+    public DefaultSourceIncludesResolver(List<File> includePaths, DirectoryListingCache directoryListingCache) {
         this.includePaths = includePaths;
+        this.directoryListingCache = directoryListingCache;
     }
 
     @Override
@@ -60,15 +63,16 @@ public class DefaultSourceIncludesResolver implements SourceIncludesResolver {
     private void searchForDependency(List<File> searchPath, String include, BuildableResolvedSourceIncludes dependencies) {
         for (File searchDir : searchPath) {
             File candidate = new File(searchDir, include);
+            FileType candidateType = directoryListingCache.getType(searchDir, include);
             // TODO: SLG This isn't correct, we need to consider directories too
             // If a source file is #include <type_trait>
             // and includePath = [ A, B ]
             // and /B/type_trait is the header we want.
             // We need /A/type_trait to be recorded as a directory in case it becomes a file later.
-            if (!candidate.isDirectory()) {
+            if (candidateType != FileType.Directory) {
                 dependencies.searched(candidate);
             }
-            if (candidate.isFile()) {
+            if (candidateType == FileType.RegularFile) {
                 dependencies.resolved(include, candidate);
                 return;
             }
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.language.nativeplatform.internal.incremental;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.gradle.BuildAdapter;
+import org.gradle.BuildResult;
+import org.gradle.api.Task;
+import org.gradle.api.execution.TaskExecutionListener;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.TaskOutputsInternal;
+import org.gradle.api.internal.tasks.TaskOutputFilePropertySpec;
+import org.gradle.api.internal.tasks.execution.TaskOutputsGenerationListener;
+import org.gradle.api.tasks.TaskState;
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+import org.gradle.internal.nativeintegration.filesystem.FileType;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The contents of the directories searched for include files, shared by all native compile tasks of a build.
+ *
+ * <p>Each directory is listed once, so that looking up an include file that does not exist in a directory does not touch the file system.
+ * Listings are discarded when a task is about to generate outputs in or above the directory, again once the task has finished,
+ * and at the end of the build.</p>
+ *
+ * <p>Listing a directory can race with discarding it. Each discard bumps a generation, and a listing is only kept when no discard
+ * happened while it was being made. A listing made while a task generates its outputs is discarded when the task finishes.</p>
+ */
+public class DirectoryListingCache extends BuildAdapter implements TaskOutputsGenerationListener, TaskExecutionListener {
+    private final boolean caseSensitive;
+    private final ConcurrentMap<String, DirectoryListing> listings = Maps.newConcurrentMap();
+    private final AtomicLong generation = new AtomicLong();
+    private final Set<TaskInternal> generatingTasks = Sets.newConcurrentHashSet();
+
+    public DirectoryListingCache(FileSystem fileSystem) {
+        this.caseSensitive = fileSystem.isCaseSensitive();
+    }
+
+    /**
+     * Returns the type of the file with the given relative path in the given directory.
+     */
+    public FileType getType(File dir, String relativePath) {
+        if (!isNormalizedRelativePath(relativePath)) {
+            return typeOf(new File(dir, relativePath));
+        }
+        File current = dir;
+        int start = 0;
+        while (true) {
+            int end = relativePath.indexOf('/', start);
+            DirectoryListing listing = getListing(current);
+            if (end < 0) {
+                return listing.getType(relativePath.substring(start));
+            }
+            String name = relativePath.substring(start, end);
+            if (!listing.contains(name)) {
+                return FileType.Missing;
+            }
+            current = new File(current, name);
+            start = end + 1;
+        }
+    }
+
+    private DirectoryListing getListing(File dir) {
+        String path = dir.getAbsolutePath();
+        DirectoryListing listing = listings.get(path);
+        if (listing == null) {
+            long listedGeneration = generation.get();
+            listing = new DirectoryListing(dir);
+            DirectoryListing existing = listings.putIfAbsent(path, listing);
+            if (existing != null) {
+                listing = existing;
+            } else if (generation.get() != listedGeneration) {
+                // Discarded while it was being listed, so the listing may be stale
+                listings.remove(path, listing);
+            }
+        }
+        return listing;
+    }
+
+    private static boolean isNormalizedRelativePath(String path) {
+        if (path.isEmpty() || path.indexOf('\\') >= 0 || path.indexOf(':') >= 0) {
+            return false;
+        }
+        for (String segment : path.split("/", -1)) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static FileType typeOf(File file) {
+        if (file.isFile()) {
+            return FileType.RegularFile;
+        }
+        if (file.isDirectory()) {
+            return FileType.Directory;
+        }
+        return FileType.Missing;
+    }
+
+    private String key(String name) {
+        return caseSensitive ? name : name.toLowerCase(Locale.US);
+    }
+
+    @Override
+    public void beforeTaskOutputsGenerated(TaskInternal task) {
+        generatingTasks.add(task);
+        invalidateOutputsOf(task);
+    }
+
+    @Override
+    public void beforeExecute(Task task) {
+    }
+
+    @Override
+    public void afterExecute(Task task, TaskState state) {
+        if (generatingTasks.remove(task)) {
+            invalidateOutputsOf((TaskInternal) task);
+        }
+    }
+
+    private void invalidateOutputsOf(TaskInternal task) {
+        generation.incrementAndGet();
+        TaskOutputsInternal outputs = task.getOutputs();
+        if (!outputs.hasDeclaredOutputs()) {
+            // The task may change any file
+            listings.clear();
+            return;
+        }
+        for (TaskOutputFilePropertySpec property : outputs.getFileProperties()) {
+            for (File file : property.getPropertyFiles()) {
+                invalidate(file.getAbsolutePath());
+            }
+        }
+    }
+
+    private void invalidate(String path) {
+        for (String dir : listings.keySet()) {
+            if (isSameOrAncestor(dir, path) || isSameOrAncestor(path, dir)) {
+                listings.remove(dir);
+            }
+        }
+    }
+
+    private static boolean isSameOrAncestor(String ancestor, String path) {
+        return path.startsWith(ancestor) && (path.length() == ancestor.length() || path.charAt(ancestor.length()) == File.separatorChar);
+    }
+
+    @Override
+    public void buildFinished(BuildResult result) {
+        generation.incrementAndGet();
+        generatingTasks.clear();
+        listings.clear();
+    }
+
+    private class DirectoryListing {
+        private final File dir;
+        private final Set<String> names;
+        private final ConcurrentMap<String, FileType> types = Maps.newConcurrentMap();
+
+        DirectoryListing(File dir) {
+            this.dir = dir;
+            String[] children = dir.list();
+            if (children == null) {
+                names = Collections.emptySet();
+            } else {
+                names = new HashSet<String>(children.length * 2);
+                for (String child : children) {
+                    names.add(key(child));
+                }
+            }
+        }
+
+        boolean contains(String name) {
+            return names.contains(key(name));
+        }
+
+        FileType getType(String name) {
+            String key = key(name);
+            if (!names.contains(key)) {
+                return FileType.Missing;
+            }
+            FileType type = types.get(key);
+            if (type == null) {
+                type = typeOf(new File(dir, name));
+                types.put(key, type);
+            }
+            return type;
+        }
+    }
+}
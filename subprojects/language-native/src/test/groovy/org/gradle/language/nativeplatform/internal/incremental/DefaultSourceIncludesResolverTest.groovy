@@ -15,13 +15,16 @@
  */
 package org.gradle.language.nativeplatform.internal.incremental
 
+import org.gradle.api.internal.file.TestFiles
 import org.gradle.language.nativeplatform.internal.IncludeDirectives
 import org.gradle.language.nativeplatform.internal.incremental.sourceparser.DefaultInclude
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.UsesNativeServices
 import org.junit.Rule
 import spock.lang.Specification
 
+@UsesNativeServices
 class DefaultSourceIncludesResolverTest extends Specification {
     @Rule final TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
 
@@ -47,11 +50,11 @@ class DefaultSourceIncludesResolverTest extends Specification {
     }
 
     def getDependencies() {
-        return new DefaultSourceIncludesResolver(includePaths).resolveIncludes(sourceFile, includes).getResolvedIncludes() as List
+        return new DefaultSourceIncludesResolver(includePaths, new DirectoryListingCache(TestFiles.fileSystem())).resolveIncludes(sourceFile, includes).getResolvedIncludes() as List
     }
 
     def getCandidates() {
-        return new DefaultSourceIncludesResolver(includePaths).resolveIncludes(sourceFile, includes).getCheckedLocations() as List
+        return new DefaultSourceIncludesResolver(includePaths, new DirectoryListingCache(TestFiles.fileSystem())).resolveIncludes(sourceFile, includes).getCheckedLocations() as List
     }
 
     def "handles source file with no includes"() {
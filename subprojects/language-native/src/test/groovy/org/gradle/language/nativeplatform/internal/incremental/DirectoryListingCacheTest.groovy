@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.language.nativeplatform.internal.incremental
+
+import com.google.common.collect.ImmutableSortedSet
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.file.collections.SimpleFileCollection
+import org.gradle.api.internal.tasks.TaskOutputFilePropertySpec
+import org.gradle.api.tasks.TaskState
+import org.gradle.internal.nativeintegration.filesystem.FileSystem
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import static org.gradle.internal.nativeintegration.filesystem.FileType.Directory
+import static org.gradle.internal.nativeintegration.filesystem.FileType.Missing
+import static org.gradle.internal.nativeintegration.filesystem.FileType.RegularFile
+
+class DirectoryListingCacheTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def fileSystem = Stub(FileSystem) {
+        isCaseSensitive() >> true
+    }
+    def cache = new DirectoryListingCache(fileSystem)
+    def includeDir = tmpDir.createDir("include")
+
+    def "determines type of files in directory"() {
+        given:
+        includeDir.createFile("a.h")
+        includeDir.createFile("nested/b.h")
+
+        expect:
+        cache.getType(includeDir, "a.h") == RegularFile
+        cache.getType(includeDir, "nested") == Directory
+        cache.getType(includeDir, "nested/b.h") == RegularFile
+        cache.getType(includeDir, "missing.h") == Missing
+        cache.getType(includeDir, "missing/b.h") == Missing
+        cache.getType(includeDir, "a.h/b.h") == Missing
+        cache.getType(tmpDir.file("missing"), "a.h") == Missing
+    }
+
+    def "resolves paths that are not normalized against the file system"() {
+        given:
+        includeDir.createFile("a.h")
+        includeDir.createFile("nested/b.h")
+
+        expect:
+        cache.getType(includeDir, "nested/../a.h") == RegularFile
+        cache.getType(includeDir, "./nested/b.h") == RegularFile
+        cache.getType(includeDir, "nested//b.h") == RegularFile
+    }
+
+    def "does not find files that differ in case when file system is case sensitive"() {
+        given:
+        includeDir.createFile("nested/b.h")
+
+        expect:
+        cache.getType(includeDir, "NESTED/b.h") == Missing
+        cache.getType(includeDir, "nested/B.h") == Missing
+    }
+
+    def "reuses listing until a task generates outputs in the directory"() {
+        given:
+        cache.getType(includeDir, "nested/a.h")
+
+        when:
+        includeDir.createFile("nested/a.h")
+
+        then:
+        cache.getType(includeDir, "nested/a.h") == Missing
+
+        when:
+        cache.beforeTaskOutputsGenerated(taskWithOutputs(tmpDir.file("other")))
+
+        then:
+        cache.getType(includeDir, "nested/a.h") == Missing
+
+        when:
+        cache.beforeTaskOutputsGenerated(taskWithOutputs(includeDir.file("nested")))
+
+        then:
+        cache.getType(includeDir, "nested/a.h") == RegularFile
+    }
+
+    def "does not keep a listing made while the directory was being discarded"() {
+        given:
+        def listed = new CountDownLatch(1)
+        def discarded = new CountDownLatch(1)
+        def dir = new File(includeDir.absolutePath) {
+            @Override
+            String[] list() {
+                def children = super.list()
+                listed.countDown()
+                assert discarded.await(10, TimeUnit.SECONDS)
+                return children
+            }
+        }
+        def type = null
+
+        when:
+        def lookup = Thread.start {
+            type = cache.getType(dir, "a.h")
+        }
+        assert listed.await(10, TimeUnit.SECONDS)
+        includeDir.createFile("a.h")
+        cache.beforeTaskOutputsGenerated(taskWithOutputs(includeDir))
+        discarded.countDown()
+        lookup.join()
+
+        then:
+        type == Missing
+        cache.getType(includeDir, "a.h") == RegularFile
+    }
+
+    def "discards listings made while a task generates outputs in the directory once the task has finished"() {
+        given:
+        def task = taskWithOutputs(includeDir)
+        cache.beforeTaskOutputsGenerated(task)
+        cache.getType(includeDir, "a.h")
+
+        when:
+        includeDir.createFile("a.h")
+        cache.afterExecute(task, Stub(TaskState))
+
+        then:
+        cache.getType(includeDir, "a.h") == RegularFile
+    }
+
+    def "discards all listings when a task has not declared outputs or the build finishes"() {
+        given:
+        cache.getType(includeDir, "a.h")
+        includeDir.createFile("a.h")
+
+        when:
+        cache.beforeTaskOutputsGenerated(Stub(TaskInternal))
+
+        then:
+        cache.getType(includeDir, "a.h") == RegularFile
+
+        when:
+        includeDir.file("a.h").delete()
+        cache.buildFinished(null)
+
+        then:
+        cache.getType(includeDir, "a.h") == Missing
+    }
+
+    private TaskInternal taskWithOutputs(File... outputs) {
+        def property = Stub(TaskOutputFilePropertySpec) {
+            getPropertyFiles() >> new SimpleFileCollection(outputs)
+        }
+        def taskOutputs = Stub(TaskOutputsInternal) {
+            hasDeclaredOutputs() >> true
+            getFileProperties() >> ImmutableSortedSet.of(property)
+        }
+        return Stub(TaskInternal) {
+            getOutputs() >> taskOutputs
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.remote.internal;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link RemoteConnection} that can deliver the messages it receives to a {@link Receiver}, instead of requiring a thread to block in {@link #receive()}.
+ */
+public interface AsyncRemoteConnection<T> extends RemoteConnection<T> {
+    /**
+     * Starts delivering the messages received from the peer to the given receiver. The receiver is notified using the given executor, by at most one thread
+     * at a time and in the order the messages were received. Notifications stop once the receiver has been notified of the end of the stream or of a failure
+     * that is not recoverable, or has declined further messages. When the connection is stopped before then, the receiver is notified of the end of the
+     * stream.
+     *
+     * <p>{@link #receive()} must not be called once this method has been called.</p>
+     */
+    void receiveAsync(Executor executor, Receiver<T> receiver);
+
+    interface Receiver<T> {
+        /**
+         * Returns true when further messages should be delivered.
+         */
+        boolean messageReceived(T message);
+
+        /**
+         * Called when a message cannot be received. Further messages are delivered after a {@link RecoverableMessageIOException}.
+         */
+        void receiveFailed(MessageIOException failure);
+
+        void endOfStream();
+    }
+}
@@ -55,6 +55,10 @@ class ConnectionSet {
         }
     }
 
+    public boolean isEmpty() {
+        return connections.isEmpty();
+    }
+
     /**
      * Called when no further incoming connections will be added.
      */
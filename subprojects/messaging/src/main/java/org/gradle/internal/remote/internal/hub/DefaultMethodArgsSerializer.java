@@ -16,15 +16,33 @@
 
 package org.gradle.internal.remote.internal.hub;
 
+import org.gradle.internal.serialize.BaseSerializerFactory;
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.NullSafeStringSerializer;
 import org.gradle.internal.serialize.Serializer;
 import org.gradle.internal.serialize.SerializerRegistry;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-class DefaultMethodArgsSerializer implements MethodArgsSerializer {
+/**
+ * Serializes each argument using the first serializer registry that knows about the type of the parameter, or a built-in serializer for strings and primitive types.
+ * The remaining arguments, if any, are serialized together using the default serializer.
+ */
+public class DefaultMethodArgsSerializer implements MethodArgsSerializer {
     private static final Object[] ZERO_ARGS = new Object[0];
+    private static final Map<Class<?>, Serializer<?>> BUILT_IN_SERIALIZERS = new HashMap<Class<?>, Serializer<?>>();
+
+    static {
+        BUILT_IN_SERIALIZERS.put(String.class, new NullSafeStringSerializer());
+        BUILT_IN_SERIALIZERS.put(Boolean.TYPE, BaseSerializerFactory.BOOLEAN_SERIALIZER);
+        BUILT_IN_SERIALIZERS.put(Integer.TYPE, BaseSerializerFactory.INTEGER_SERIALIZER);
+        BUILT_IN_SERIALIZERS.put(Long.TYPE, BaseSerializerFactory.LONG_SERIALIZER);
+    }
+
     private final List<SerializerRegistry> serializerRegistries;
     private final MethodArgsSerializer defaultArgsSerializer;
 
@@ -38,37 +56,60 @@ class DefaultMethodArgsSerializer implements MethodArgsSerializer {
         if (types.length == 0) {
             return new EmptyArraySerializer();
         }
-        SerializerRegistry selected = null;
-        for (SerializerRegistry serializerRegistry : serializerRegistries) {
-            if (serializerRegistry.canSerialize(types[0])) {
-                selected = serializerRegistry;
-                break;
+        final Serializer<Object>[] serializers = new Serializer[types.length];
+        List<Class<?>> defaultTypes = new ArrayList<Class<?>>();
+        for (int i = 0; i < types.length; i++) {
+            serializers[i] = serializerFor(types[i]);
+            if (serializers[i] == null) {
+                defaultTypes.add(types[i]);
             }
         }
-        if (selected == null) {
+        if (defaultTypes.size() == types.length) {
             return defaultArgsSerializer.forTypes(types);
         }
+        Serializer<Object[]> defaultSerializer = defaultTypes.isEmpty() ? null : defaultArgsSerializer.forTypes(defaultTypes.toArray(new Class<?>[0]));
+        return new ArraySerializer(serializers, defaultSerializer, defaultTypes.size());
+    }
 
-        final Serializer<Object>[] serializers = new Serializer[types.length];
-        for (int i = 0; i < types.length; i++) {
-            Class<?> type = types[i];
-            serializers[i] = (Serializer<Object>) selected.build(type);
+    private Serializer<Object> serializerFor(Class<?> type) {
+        for (SerializerRegistry serializerRegistry : serializerRegistries) {
+            if (serializerRegistry.canSerialize(type)) {
+                return (Serializer<Object>) serializerRegistry.build(type);
+            }
         }
-        return new ArraySerializer(serializers);
+        return (Serializer<Object>) BUILT_IN_SERIALIZERS.get(type);
     }
 
     private static class ArraySerializer implements Serializer<Object[]> {
         private final Serializer<Object>[] serializers;
+        private final Serializer<Object[]> defaultSerializer;
+        private final int defaultCount;
 
-        ArraySerializer(Serializer<Object>[] serializers) {
+        /**
+         * @param serializers The serializer for each argument, or null for those arguments that are serialized using the default serializer.
+         */
+        ArraySerializer(Serializer<Object>[] serializers, Serializer<Object[]> defaultSerializer, int defaultCount) {
             this.serializers = serializers;
+            this.defaultSerializer = defaultSerializer;
+            this.defaultCount = defaultCount;
         }
 
         @Override
         public Object[] read(Decoder decoder) throws Exception {
             Object[] result = new Object[serializers.length];
             for (int i = 0; i < serializers.length; i++) {
-                result[i] = serializers[i].read(decoder);
+                if (serializers[i] != null) {
+                    result[i] = serializers[i].read(decoder);
+                }
+            }
+            if (defaultSerializer != null) {
+                Object[] defaultArgs = defaultSerializer.read(decoder);
+                int next = 0;
+                for (int i = 0; i < serializers.length; i++) {
+                    if (serializers[i] == null) {
+                        result[i] = defaultArgs[next++];
+                    }
+                }
             }
             return result;
         }
@@ -76,7 +117,19 @@ class DefaultMethodArgsSerializer implements MethodArgsSerializer {
         @Override
         public void write(Encoder encoder, Object[] value) throws Exception {
             for (int i = 0; i < value.length; i++) {
-                serializers[i].write(encoder, value[i]);
+                if (serializers[i] != null) {
+                    serializers[i].write(encoder, value[i]);
+                }
+            }
+            if (defaultSerializer != null) {
+                Object[] defaultArgs = new Object[defaultCount];
+                int next = 0;
+                for (int i = 0; i < value.length; i++) {
+                    if (serializers[i] == null) {
+                        defaultArgs[next++] = value[i];
+                    }
+                }
+                defaultSerializer.write(encoder, defaultArgs);
             }
         }
     }
@@ -21,7 +21,7 @@ import org.gradle.internal.serialize.Encoder;
 import org.gradle.internal.serialize.Message;
 import org.gradle.internal.serialize.Serializer;
 
-class JavaSerializationBackedMethodArgsSerializer implements MethodArgsSerializer {
+public class JavaSerializationBackedMethodArgsSerializer implements MethodArgsSerializer {
     private static final Object[] ZERO_ARGS = new Object[0];
     private final ClassLoader classLoader;
 
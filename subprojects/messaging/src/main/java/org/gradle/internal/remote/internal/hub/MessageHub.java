@@ -22,7 +22,10 @@ import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.concurrent.StoppableExecutor;
 import org.gradle.internal.dispatch.BoundedDispatch;
 import org.gradle.internal.dispatch.Dispatch;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.remote.internal.AsyncRemoteConnection;
 import org.gradle.internal.remote.internal.Connection;
+import org.gradle.internal.remote.internal.MessageIOException;
 import org.gradle.internal.remote.internal.RecoverableMessageIOException;
 import org.gradle.internal.remote.internal.RemoteConnection;
 import org.gradle.internal.remote.internal.hub.protocol.*;
@@ -30,6 +33,7 @@ import org.gradle.internal.remote.internal.hub.queue.EndPointQueue;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -49,6 +53,7 @@ public class MessageHub implements AsyncStoppable {
     private final String displayName;
     private final Action<? super Throwable> errorHandler;
     private final Lock lock = new ReentrantLock();
+    private final Condition connectionFinished = lock.newCondition();
     private State state = State.Running;
     private final IncomingQueue incomingQueue = new IncomingQueue(lock);
     private final OutgoingQueue outgoingQueue = new OutgoingQueue(incomingQueue, lock);
@@ -137,6 +142,9 @@ public class MessageHub implements AsyncStoppable {
     /**
      * Adds a connection to some other message hub. Outgoing messages are forwarded to this connection, and incoming messages are received from it.
      *
+     * <p>Outgoing messages are forwarded by a worker only while there are messages queued for the connection. When the connection is an {@link AsyncRemoteConnection},
+     * incoming messages are also handled by a worker only as they arrive, rather than by a worker that blocks waiting for them.</p>
+     *
      * <p>Does not cleanup connections on stop or disconnect. It is the caller's responsibility to manage the connection lifecycle.</p>
      */
     public void addConnection(RemoteConnection<InterHubMessage> connection) {
@@ -145,7 +153,11 @@ public class MessageHub implements AsyncStoppable {
             assertRunning("add connection");
             ConnectionState connectionState = connections.add(connection);
             workers.execute(new ConnectionDispatch(connectionState));
-            workers.execute(new ConnectionReceive(connectionState));
+            if (connection instanceof AsyncRemoteConnection) {
+                ((AsyncRemoteConnection<InterHubMessage>) connection).receiveAsync(workers, new ConnectionReceiver(connectionState));
+            } else {
+                workers.execute(new ConnectionReceive(connectionState));
+            }
         } finally {
             lock.unlock();
         }
@@ -215,6 +227,12 @@ public class MessageHub implements AsyncStoppable {
             lock.lock();
             try {
                 requestStop();
+                // Connections are not necessarily served by a running worker, so wait for them explicitly
+                while (!connections.isEmpty()) {
+                    connectionFinished.await();
+                }
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
             } finally {
                 lock.unlock();
             }
@@ -271,12 +289,7 @@ public class MessageHub implements AsyncStoppable {
                         addToIncoming(message);
                     }
                 } finally {
-                    lock.lock();
-                    try {
-                        connectionState.receiveFinished();
-                    } finally {
-                        lock.unlock();
-                    }
+                    receiveFinished(connectionState);
                 }
             } catch (Throwable e) {
                 errorHandler.execute(e);
@@ -284,6 +297,79 @@ public class MessageHub implements AsyncStoppable {
         }
     }
 
+    private class ConnectionReceiver implements AsyncRemoteConnection.Receiver<InterHubMessage> {
+        private final ConnectionState connectionState;
+        private boolean finished;
+
+        ConnectionReceiver(ConnectionState connectionState) {
+            this.connectionState = connectionState;
+        }
+
+        @Override
+        public boolean messageReceived(InterHubMessage message) {
+            if (finished) {
+                return false;
+            }
+            if (message instanceof EndOfStream) {
+                finish();
+                return false;
+            }
+            try {
+                addToIncoming(message);
+                return true;
+            } catch (Throwable t) {
+                fail(t);
+                return false;
+            }
+        }
+
+        @Override
+        public void receiveFailed(MessageIOException failure) {
+            if (finished) {
+                return;
+            }
+            if (!(failure instanceof RecoverableMessageIOException)) {
+                fail(failure);
+                return;
+            }
+            try {
+                addToIncoming(new StreamFailureMessage(failure));
+            } catch (Throwable t) {
+                fail(t);
+            }
+        }
+
+        @Override
+        public void endOfStream() {
+            if (!finished) {
+                finish();
+            }
+        }
+
+        private void fail(Throwable failure) {
+            try {
+                finish();
+            } finally {
+                errorHandler.execute(failure);
+            }
+        }
+
+        private void finish() {
+            finished = true;
+            receiveFinished(connectionState);
+        }
+    }
+
+    private void receiveFinished(ConnectionState connectionState) {
+        lock.lock();
+        try {
+            connectionState.receiveFinished();
+            connectionFinished.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
     private void addToIncoming(InterHubMessage message) {
         lock.lock();
         try {
@@ -293,10 +379,20 @@ public class MessageHub implements AsyncStoppable {
         }
     }
 
+    /**
+     * Forwards the messages queued for a connection. Runs while there are messages queued, and is scheduled again when further messages are queued.
+     */
     private class ConnectionDispatch implements Runnable {
         private final RemoteConnection<InterHubMessage> connection;
         private final EndPointQueue queue;
         private final ConnectionState connectionState;
+        private final List<InterHubMessage> messages = new ArrayList<InterHubMessage>();
+        private final Runnable schedule = new Runnable() {
+            @Override
+            public void run() {
+                workers.execute(ConnectionDispatch.this);
+            }
+        };
 
         private ConnectionDispatch(ConnectionState connectionState) {
             this.connection = connectionState.getConnection();
@@ -306,12 +402,15 @@ public class MessageHub implements AsyncStoppable {
 
         public void run() {
             try {
-                List<InterHubMessage> messages = new ArrayList<InterHubMessage>();
+                boolean finished = true;
                 try {
                     while (true) {
                         lock.lock();
                         try {
-                            queue.take(messages);
+                            if (!queue.poll(messages, schedule)) {
+                                finished = false;
+                                return;
+                            }
                         } finally {
                             lock.unlock();
                         }
@@ -330,11 +429,14 @@ public class MessageHub implements AsyncStoppable {
                         messages.clear();
                     }
                 } finally {
-                    lock.lock();
-                    try {
-                        connectionState.dispatchFinished();
-                    } finally {
-                        lock.unlock();
+                    if (finished) {
+                        lock.lock();
+                        try {
+                            connectionState.dispatchFinished();
+                            connectionFinished.signalAll();
+                        } finally {
+                            lock.unlock();
+                        }
                     }
                 }
             } catch (Throwable t) {
@@ -101,6 +101,8 @@ public class MethodInvocationSerializer implements StatefulSerializer<MethodInvo
         static {
             PRIMITIVE_TYPES = new HashMap<String, Class<?>>();
             PRIMITIVE_TYPES.put(Integer.TYPE.getName(), Integer.TYPE);
+            PRIMITIVE_TYPES.put(Long.TYPE.getName(), Long.TYPE);
+            PRIMITIVE_TYPES.put(Boolean.TYPE.getName(), Boolean.TYPE);
         }
 
         private final Decoder decoder;
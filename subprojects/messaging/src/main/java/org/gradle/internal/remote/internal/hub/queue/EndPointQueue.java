@@ -29,6 +29,7 @@ public class EndPointQueue implements Dispatch<InterHubMessage> {
     private final List<InterHubMessage> queue = new ArrayList<InterHubMessage>();
     private final MultiEndPointQueue owner;
     private final Condition condition;
+    private Runnable onMessageQueued;
 
     public EndPointQueue(MultiEndPointQueue owner, Condition condition) {
         this.owner = owner;
@@ -38,6 +39,11 @@ public class EndPointQueue implements Dispatch<InterHubMessage> {
     public void dispatch(InterHubMessage message) {
         queue.add(message);
         condition.signalAll();
+        if (onMessageQueued != null) {
+            Runnable action = onMessageQueued;
+            onMessageQueued = null;
+            action.run();
+        }
     }
 
     public void take(Collection<InterHubMessage> drainTo) {
@@ -55,6 +61,23 @@ public class EndPointQueue implements Dispatch<InterHubMessage> {
         queue.clear();
     }
 
+    /**
+     * Drains the queued messages into the given collection without blocking. When there are no queued messages, returns false and runs the given action
+     * when the next message is queued.
+     */
+    public boolean poll(Collection<InterHubMessage> drainTo, Runnable onMessageQueued) {
+        if (queue.isEmpty()) {
+            owner.empty(this);
+            if (queue.isEmpty()) {
+                this.onMessageQueued = onMessageQueued;
+                return false;
+            }
+        }
+        drainTo.addAll(queue);
+        queue.clear();
+        return true;
+    }
+
     public void stop() {
         owner.stopped(this);
     }
@@ -19,35 +19,48 @@ package org.gradle.internal.remote.internal.inet;
 import com.google.common.base.Objects;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.remote.internal.AsyncRemoteConnection;
+import org.gradle.internal.remote.internal.MessageIOException;
+import org.gradle.internal.remote.internal.MessageSerializer;
 import org.gradle.internal.remote.internal.RecoverableMessageIOException;
 import org.gradle.internal.serialize.FlushableEncoder;
 import org.gradle.internal.serialize.ObjectReader;
 import org.gradle.internal.serialize.ObjectWriter;
 import org.gradle.internal.serialize.StatefulSerializer;
-import org.gradle.internal.remote.internal.MessageIOException;
-import org.gradle.internal.remote.internal.MessageSerializer;
-import org.gradle.internal.remote.internal.RemoteConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
-import java.nio.channels.ClosedSelectorException;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
 
-public class SocketConnection<T> implements RemoteConnection<T> {
+/**
+ * A connection over a socket channel. Each message is written as a frame, made up of the length of the serialized message followed by its content, so
+ * that the messages can be read by the selector threads of the {@link SocketMultiplexer} without blocking, and delivered once complete.
+ */
+public class SocketConnection<T> implements AsyncRemoteConnection<T> {
     private static final Logger LOGGER = LoggerFactory.getLogger(SocketConnection.class);
+    private static final int FRAME_HEADER_SIZE = 4;
+    // The largest frame a connection accepts. The receiver allocates the frame up front, so this stops a peer that is not speaking this protocol from using up the heap
+    private static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+    // The number of received or unwritten bytes a connection may buffer before it stops reading from or blocks writing to the socket
+    private static final int MAX_BUFFERED_BYTES = 1024 * 1024;
     private final SocketChannel socket;
     private final SocketInetAddress localAddress;
     private final SocketInetAddress remoteAddress;
     private final ObjectWriter<T> objectWriter;
     private final ObjectReader<T> objectReader;
-    private final InputStream instr;
-    private final OutputStream outstr;
+    private final FrameInputStream instr;
+    private final FrameOutputStream outstr;
+    private final MessageBuffer messageBuffer;
     private final FlushableEncoder encoder;
+    private final SocketMultiplexer.Registration registration;
 
     public SocketConnection(SocketChannel socket, MessageSerializer streamSerializer, StatefulSerializer<T> messageSerializer) {
         this.socket = socket;
@@ -55,8 +68,6 @@ public class SocketConnection<T> implements RemoteConnection<T> {
             // NOTE: we use non-blocking IO as there is no reliable way when using blocking IO to shutdown reads while
             // keeping writes active. For example, Socket.shutdownInput() does not work on Windows.
             socket.configureBlocking(false);
-            outstr = new SocketOutputStream(socket);
-            instr = new SocketInputStream(socket);
         } catch (IOException e) {
             throw UncheckedException.throwAsUncheckedException(e);
         }
@@ -64,9 +75,23 @@ public class SocketConnection<T> implements RemoteConnection<T> {
         localAddress = new SocketInetAddress(localSocketAddress.getAddress(), localSocketAddress.getPort());
         InetSocketAddress remoteSocketAddress = (InetSocketAddress) socket.socket().getRemoteSocketAddress();
         remoteAddress = new SocketInetAddress(remoteSocketAddress.getAddress(), remoteSocketAddress.getPort());
+        instr = new FrameInputStream();
+        outstr = new FrameOutputStream();
+        messageBuffer = new MessageBuffer();
         objectReader = messageSerializer.newReader(streamSerializer.newDecoder(instr));
-        encoder = streamSerializer.newEncoder(outstr);
+        encoder = streamSerializer.newEncoder(messageBuffer);
         objectWriter = messageSerializer.newWriter(encoder);
+        registration = SocketMultiplexer.getInstance().register(socket, new SocketMultiplexer.Handler() {
+            @Override
+            public void readable(ByteBuffer buffer) {
+                instr.readFromSocket(buffer);
+            }
+
+            @Override
+            public void writable() {
+                outstr.writeToSocket();
+            }
+        });
     }
 
     @Override
@@ -93,6 +118,11 @@ public class SocketConnection<T> implements RemoteConnection<T> {
         }
     }
 
+    @Override
+    public void receiveAsync(Executor executor, Receiver<T> receiver) {
+        instr.deliverTo(executor, receiver);
+    }
+
     private static boolean isEndOfStream(Exception e) {
         if (e instanceof EOFException) {
             return true;
@@ -113,7 +143,13 @@ public class SocketConnection<T> implements RemoteConnection<T> {
 
     public void dispatch(T message) throws MessageIOException {
         try {
-            objectWriter.write(message);
+            try {
+                objectWriter.write(message);
+                encoder.flush();
+                outstr.writeFrame(messageBuffer);
+            } finally {
+                messageBuffer.reset();
+            }
         } catch (ObjectStreamException e) {
             throw new RecoverableMessageIOException(String.format("Could not write message %s to '%s'.", message, remoteAddress), e);
         } catch (ClassNotFoundException e) {
@@ -128,7 +164,6 @@ public class SocketConnection<T> implements RemoteConnection<T> {
     @Override
     public void flush() throws MessageIOException {
         try {
-            encoder.flush();
             outstr.flush();
         } catch (Exception e) {
             throw new MessageIOException(String.format("Could not write '%s'.", remoteAddress), e);
@@ -141,21 +176,137 @@ public class SocketConnection<T> implements RemoteConnection<T> {
             public void close() throws IOException {
                 flush();
             }
-        }, instr, outstr, socket).stop();
+        }, instr, new Closeable() {
+            @Override
+            public void close() throws IOException {
+                registration.close();
+            }
+        }).stop();
+    }
+
+    /**
+     * Collects the serialized form of a single message.
+     */
+    private static class MessageBuffer extends ByteArrayOutputStream {
+        MessageBuffer() {
+            super(4096);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
     }
 
-    private static class SocketInputStream extends InputStream {
-        private final Selector selector;
-        private final ByteBuffer buffer;
-        private final SocketChannel socket;
+    /**
+     * The content of the frames received from the socket. The frames are assembled by a selector thread, and the stream blocks only when a frame has not been
+     * completely received yet.
+     */
+    private class FrameInputStream extends InputStream implements Runnable {
         private final byte[] readBuffer = new byte[1];
+        private final Deque<byte[]> frames = new ArrayDeque<byte[]>();
+        private byte[] current;
+        private int currentPos;
+        private int bufferedBytes;
+        private int undeliveredFrames;
+        private boolean readSuspended;
+        private boolean endOfStream;
+        private IOException failure;
+        private Executor executor;
+        private Receiver<T> receiver;
+        private boolean delivering;
+        private boolean receiverFinished;
 
-        public SocketInputStream(SocketChannel socket) throws IOException {
-            this.socket = socket;
-            selector = Selector.open();
-            socket.register(selector, SelectionKey.OP_READ);
-            buffer = ByteBuffer.allocateDirect(4096);
-            buffer.limit(0);
+        // The frame being assembled, accessed by the selector thread only
+        private final ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+        private byte[] frame;
+        private int framePos;
+
+        void readFromSocket(ByteBuffer buffer) {
+            int nread;
+            try {
+                nread = socket.read(buffer);
+            } catch (IOException e) {
+                endOfStream(isEndOfStream(e) ? null : e);
+                return;
+            }
+            if (nread < 0) {
+                endOfStream(null);
+                return;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                if (frame == null) {
+                    while (header.hasRemaining() && buffer.hasRemaining()) {
+                        header.put(buffer.get());
+                    }
+                    if (header.hasRemaining()) {
+                        return;
+                    }
+                    int length = header.getInt(0);
+                    header.clear();
+                    if (length < 0 || length > MAX_FRAME_SIZE) {
+                        endOfStream(new StreamCorruptedException(String.format("Received a frame with invalid length %s.", length)));
+                        return;
+                    }
+                    frame = new byte[length];
+                    framePos = 0;
+                }
+                int count = Math.min(buffer.remaining(), frame.length - framePos);
+                buffer.get(frame, framePos, count);
+                framePos += count;
+                if (framePos == frame.length) {
+                    frameReceived(frame);
+                    frame = null;
+                }
+            }
+        }
+
+        private synchronized void frameReceived(byte[] frame) {
+            frames.add(frame);
+            bufferedBytes += frame.length;
+            undeliveredFrames++;
+            if (bufferedBytes >= MAX_BUFFERED_BYTES && !readSuspended) {
+                // The messages are not being consumed as fast as they arrive, so leave the remainder in the socket until they are
+                readSuspended = true;
+                registration.setReadInterest(false);
+            }
+            notifyAll();
+            maybeDeliver();
+        }
+
+        private synchronized void endOfStream(IOException failure) {
+            if (endOfStream) {
+                return;
+            }
+            endOfStream = true;
+            this.failure = failure;
+            registration.setReadInterest(false);
+            notifyAll();
+            maybeDeliver();
+        }
+
+        /**
+         * Stops reading from the socket, discarding any messages that have not been read yet.
+         */
+        @Override
+        public void close() {
+            boolean notifyReceiver;
+            synchronized (this) {
+                frames.clear();
+                current = null;
+                undeliveredFrames = 0;
+                endOfStream = true;
+                registration.setReadInterest(false);
+                notifyAll();
+                notifyReceiver = receiver != null && !delivering && !receiverFinished;
+                if (notifyReceiver) {
+                    delivering = true;
+                    receiverFinished = true;
+                }
+            }
+            if (notifyReceiver) {
+                receiver.endOfStream();
+            }
         }
 
         @Override
@@ -164,140 +315,207 @@ public class SocketConnection<T> implements RemoteConnection<T> {
             if (nread <= 0) {
                 return nread;
             }
-            return readBuffer[0];
+            return readBuffer[0] & 0xff;
         }
 
         @Override
-        public int read(byte[] dest, int offset, int max) throws IOException {
+        public synchronized int read(byte[] dest, int offset, int max) throws IOException {
             if (max == 0) {
                 return 0;
             }
-
-            if (buffer.remaining() == 0) {
-                try {
-                    selector.select();
-                } catch (ClosedSelectorException e) {
-                    return -1;
-                }
-                if (!selector.isOpen()) {
+            while (current == null || currentPos == current.length) {
+                current = frames.poll();
+                currentPos = 0;
+                if (current != null) {
+                    bufferedBytes -= current.length;
+                    if (readSuspended && bufferedBytes < MAX_BUFFERED_BYTES / 2) {
+                        readSuspended = false;
+                        registration.setReadInterest(true);
+                    }
+                } else if (endOfStream) {
+                    if (failure != null) {
+                        IOException e = failure;
+                        failure = null;
+                        throw e;
+                    }
                     return -1;
+                } else {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        throw UncheckedException.throwAsUncheckedException(e);
+                    }
                 }
+            }
+            int count = Math.min(current.length - currentPos, max);
+            System.arraycopy(current, currentPos, dest, offset, count);
+            currentPos += count;
+            return count;
+        }
 
-                buffer.clear();
-                int nread;
-                try {
-                    nread = socket.read(buffer);
-                } catch (IOException e) {
-                    if (isEndOfStream(e)) {
-                        buffer.position(0);
-                        buffer.limit(0);
-                        return -1;
+        synchronized void deliverTo(Executor executor, Receiver<T> receiver) {
+            this.executor = executor;
+            this.receiver = receiver;
+            maybeDeliver();
+        }
+
+        private void maybeDeliver() {
+            if (receiver != null && !delivering && !receiverFinished && (undeliveredFrames > 0 || endOfStream)) {
+                delivering = true;
+                executor.execute(this);
+            }
+        }
+
+        /**
+         * Delivers the messages that have been completely received, so that reading them does not block.
+         */
+        @Override
+        public void run() {
+            while (true) {
+                synchronized (this) {
+                    if (undeliveredFrames > 0) {
+                        undeliveredFrames--;
+                    } else if (!endOfStream) {
+                        delivering = false;
+                        return;
                     }
-                    throw e;
                 }
-                buffer.flip();
-
-                if (nread < 0) {
-                    return -1;
+                T message;
+                try {
+                    message = receive();
+                } catch (RecoverableMessageIOException e) {
+                    receiver.receiveFailed(e);
+                    continue;
+                } catch (MessageIOException e) {
+                    finished();
+                    receiver.receiveFailed(e);
+                    return;
+                }
+                if (message == null) {
+                    finished();
+                    receiver.endOfStream();
+                    return;
+                }
+                if (!receiver.messageReceived(message)) {
+                    finished();
+                    return;
                 }
             }
-
-            int count = Math.min(buffer.remaining(), max);
-            buffer.get(dest, offset, count);
-            return count;
         }
 
-        @Override
-        public void close() throws IOException {
-            selector.close();
+        private synchronized void finished() {
+            receiverFinished = true;
         }
     }
 
-    private static class SocketOutputStream extends OutputStream {
-        private static final int RETRIES_WHEN_BUFFER_FULL = 2;
-        private Selector selector;
-        private final SocketChannel socket;
-        private final ByteBuffer buffer;
-        private final byte[] writeBuffer = new byte[1];
+    /**
+     * Collects frames in direct buffers, and writes them to the socket in batches. Writes happen on the dispatching thread where possible, and are otherwise
+     * completed by a selector thread once the socket can accept more bytes.
+     */
+    private class FrameOutputStream {
+        private static final int BUFFER_SIZE = 32 * 1024;
+        private static final int MAX_FREE_BUFFERS = 2;
+        private final ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+        private final Deque<ByteBuffer> queued = new ArrayDeque<ByteBuffer>();
+        private final List<ByteBuffer> free = new ArrayList<ByteBuffer>();
+        private ByteBuffer current;
+        private int queuedBytes;
+        private boolean waitingForSocket;
+        private IOException failure;
 
-        public SocketOutputStream(SocketChannel socket) throws IOException {
-            this.socket = socket;
-            buffer = ByteBuffer.allocateDirect(32 * 1024);
+        synchronized void writeFrame(MessageBuffer message) throws IOException {
+            if (message.size() > MAX_FRAME_SIZE) {
+                throw new IOException(String.format("Message of %s bytes exceeds the maximum frame length of %s bytes.", message.size(), MAX_FRAME_SIZE));
+            }
+            header.clear();
+            header.putInt(message.size());
+            append(header.array(), 0, FRAME_HEADER_SIZE);
+            append(message.getBuffer(), 0, message.size());
+            if (queuedBytes >= MAX_BUFFERED_BYTES) {
+                drain();
+            }
         }
 
-        @Override
-        public void write(int b) throws IOException {
-            writeBuffer[0] = (byte) b;
-            write(writeBuffer);
+        synchronized void flush() throws IOException {
+            if (current != null && current.position() > 0) {
+                queue(current);
+                current = null;
+            }
+            drain();
         }
 
-        @Override
-        public void write(byte[] src, int offset, int max) throws IOException {
-            int remaining = max;
-            int currentPos = offset;
-            while (remaining > 0) {
-                int count = Math.min(remaining, buffer.remaining());
-                if (count > 0) {
-                    buffer.put(src, currentPos, count);
-                    remaining -= count;
-                    currentPos += count;
+        private void append(byte[] src, int offset, int length) {
+            int pos = offset;
+            int end = offset + length;
+            while (pos < end) {
+                if (current == null) {
+                    current = free.isEmpty() ? ByteBuffer.allocateDirect(BUFFER_SIZE) : free.remove(free.size() - 1);
                 }
-                while (buffer.remaining() == 0) {
-                    writeBufferToChannel();
+                int count = Math.min(end - pos, current.remaining());
+                current.put(src, pos, count);
+                pos += count;
+                if (!current.hasRemaining()) {
+                    queue(current);
+                    current = null;
                 }
             }
         }
 
-        @Override
-        public void flush() throws IOException {
-            while (buffer.position() > 0) {
-                writeBufferToChannel();
-            }
-        }
-
-        private void writeBufferToChannel() throws IOException {
+        private void queue(ByteBuffer buffer) {
             buffer.flip();
-            int count = writeWithNonBlockingRetry();
-            if (count == 0) {
-                // buffer was still full after non-blocking retries, now block
-                waitForWriteBufferToDrain();
-            }
-            buffer.compact();
+            queued.add(buffer);
+            queuedBytes += buffer.remaining();
         }
 
-        private int writeWithNonBlockingRetry() throws IOException {
-            int count = 0;
-            int retryCount = 0;
-            while (count == 0 && retryCount++ < RETRIES_WHEN_BUFFER_FULL) {
-                count = socket.write(buffer);
-                if (count < 0) {
-                    throw new EOFException();
-                } else if (count == 0) {
-                    // buffer was full, just call Thread.yield
-                    Thread.yield();
+        /**
+         * Blocks until the queued buffers have been written to the socket.
+         */
+        private void drain() throws IOException {
+            write();
+            while (!queued.isEmpty()) {
+                if (!waitingForSocket) {
+                    waitingForSocket = true;
+                    registration.setWriteInterest(true);
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+                if (failure != null) {
+                    throw failure;
                 }
             }
-            return count;
         }
 
-        private void waitForWriteBufferToDrain() throws IOException {
-            if (selector == null) {
-                selector = Selector.open();
+        synchronized void writeToSocket() {
+            try {
+                write();
+            } catch (IOException e) {
+                failure = e;
+            }
+            if (queued.isEmpty() || failure != null) {
+                waitingForSocket = false;
+                registration.setWriteInterest(false);
+                notifyAll();
             }
-            SelectionKey key = socket.register(selector, SelectionKey.OP_WRITE);
-            // block until ready for write operations
-            selector.select();
-            // cancel OP_WRITE selection
-            key.cancel();
-            // complete cancelling key
-            selector.selectNow();
         }
 
-        @Override
-        public void close() throws IOException {
-            if (selector != null) {
-                selector.close();
-                selector = null;
+        private void write() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            if (queued.isEmpty()) {
+                return;
+            }
+            long written = socket.write(queued.toArray(new ByteBuffer[0]));
+            queuedBytes -= written;
+            while (!queued.isEmpty() && !queued.peek().hasRemaining()) {
+                ByteBuffer buffer = queued.remove();
+                if (free.size() < MAX_FREE_BUFFERS) {
+                    buffer.clear();
+                    free.add(buffer);
+                }
             }
         }
     }
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.remote.internal.inet;
+
+import org.gradle.internal.UncheckedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Performs the socket I/O for all {@link SocketConnection} instances of this process, using a small pool of selector threads that is shared by all of the
+ * connections. The threads are daemon threads and are started when the first socket is registered.
+ */
+class SocketMultiplexer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SocketMultiplexer.class);
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final SocketMultiplexer INSTANCE = new SocketMultiplexer(Math.min(2, Runtime.getRuntime().availableProcessors()));
+
+    private final SelectorThread[] threads;
+    private final AtomicInteger nextThread = new AtomicInteger();
+
+    static SocketMultiplexer getInstance() {
+        return INSTANCE;
+    }
+
+    SocketMultiplexer(int threadCount) {
+        threads = new SelectorThread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new SelectorThread("Socket I/O thread " + (i + 1));
+        }
+    }
+
+    /**
+     * Registers the given non-blocking channel, which initially has interest in reads only. The handler is notified on a selector thread.
+     */
+    Registration register(SocketChannel channel, Handler handler) {
+        SelectorThread thread = threads[(nextThread.getAndIncrement() & Integer.MAX_VALUE) % threads.length];
+        Registration registration = new Registration(thread, channel, handler);
+        thread.submit(registration);
+        return registration;
+    }
+
+    interface Handler {
+        /**
+         * Called when the channel has bytes available, or has reached the end of the stream. The given buffer is shared with other channels and may be used
+         * to read the bytes into.
+         */
+        void readable(ByteBuffer buffer);
+
+        /**
+         * Called when the channel can accept more bytes.
+         */
+        void writable();
+    }
+
+    static class Registration implements Runnable {
+        private final SelectorThread thread;
+        private final SocketChannel channel;
+        private final Handler handler;
+        private SelectionKey key;
+        private int interestOps = SelectionKey.OP_READ;
+
+        private Registration(SelectorThread thread, SocketChannel channel, Handler handler) {
+            this.thread = thread;
+            this.channel = channel;
+            this.handler = handler;
+        }
+
+        void setReadInterest(boolean interested) {
+            setInterest(SelectionKey.OP_READ, interested);
+        }
+
+        void setWriteInterest(boolean interested) {
+            setInterest(SelectionKey.OP_WRITE, interested);
+        }
+
+        private void setInterest(int op, boolean interested) {
+            synchronized (this) {
+                interestOps = interested ? interestOps | op : interestOps & ~op;
+            }
+            thread.submit(new Runnable() {
+                @Override
+                public void run() {
+                    updateInterest();
+                }
+            });
+        }
+
+        /**
+         * Closes the channel, which is removed from the selector the next time the selector thread wakes up.
+         */
+        void close() throws IOException {
+            channel.close();
+            thread.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                key = channel.register(thread.selector, 0, this);
+                updateInterest();
+            } catch (IOException e) {
+                // The channel has been closed
+            }
+        }
+
+        private void updateInterest() {
+            if (key == null || !key.isValid()) {
+                return;
+            }
+            synchronized (this) {
+                key.interestOps(interestOps);
+            }
+        }
+    }
+
+    private static class SelectorThread implements Runnable {
+        private final String name;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+        private Selector selector;
+        private ByteBuffer readBuffer;
+
+        SelectorThread(String name) {
+            this.name = name;
+        }
+
+        void submit(Runnable task) {
+            start();
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void wakeup() {
+            start();
+            selector.wakeup();
+        }
+
+        private synchronized void start() {
+            if (selector != null) {
+                return;
+            }
+            try {
+                selector = Selector.open();
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+            readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+            Thread thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                    for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+                        task.run();
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        process(key);
+                    }
+                } catch (Throwable t) {
+                    LOGGER.error("Unexpected failure in " + name + ".", t);
+                }
+            }
+        }
+
+        private void process(SelectionKey key) {
+            Registration registration = (Registration) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    readBuffer.clear();
+                    registration.handler.readable(readBuffer);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    registration.handler.writable();
+                }
+            } catch (CancelledKeyException e) {
+                // The channel has been closed
+            }
+        }
+    }
+}
@@ -50,6 +50,36 @@ class DefaultMethodArgsSerializerTest extends SerializerSpec {
         defaultArgsBuilder.forTypes(_) >> serializer
 
         expect:
-        this.serializer.forTypes([String, Long, String] as Class[]) == serializer
+        this.serializer.forTypes([Long, Runnable, Long] as Class[]) == serializer
+    }
+
+    def "uses the first serializer registry that knows about each type"() {
+        given:
+        registry1.register(Long, BaseSerializerFactory.LONG_SERIALIZER)
+        registry2.register(File, BaseSerializerFactory.FILE_SERIALIZER)
+
+        expect:
+        def arraySerializer = serializer.forTypes([File, Long] as Class[])
+        serialize([new File("a"), 12L] as Object[], arraySerializer) == [new File("a"), 12L] as Object[]
+    }
+
+    def "serializes strings and primitive values without a serializer registry"() {
+        expect:
+        def arraySerializer = serializer.forTypes([String, int, long, boolean, String] as Class[])
+        serialize(["a", 12, 45L, true, null] as Object[], arraySerializer) == ["a", 12, 45L, true, null] as Object[]
+    }
+
+    def "serializes the args that no serializer registry knows about together using the default"() {
+        given:
+        registry1.register(Long, BaseSerializerFactory.LONG_SERIALIZER)
+        def javaArgsSerializer = new JavaSerializationBackedMethodArgsSerializer(getClass().classLoader)
+
+        when:
+        def arraySerializer = serializer.forTypes([List, Long, String, Set] as Class[])
+        def result = serialize([[1, 2], 12L, "a", ["b"] as Set] as Object[], arraySerializer)
+
+        then:
+        1 * defaultArgsBuilder.forTypes([List, Set] as Class[]) >> javaArgsSerializer.forTypes([List, Set] as Class[])
+        result == [[1, 2], 12L, "a", ["b"] as Set] as Object[]
     }
 }
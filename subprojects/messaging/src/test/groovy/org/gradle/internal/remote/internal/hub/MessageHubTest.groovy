@@ -19,6 +19,7 @@ package org.gradle.internal.remote.internal.hub
 import org.gradle.api.Action
 import org.gradle.internal.dispatch.BoundedDispatch
 import org.gradle.internal.dispatch.Dispatch
+import org.gradle.internal.remote.internal.AsyncRemoteConnection
 import org.gradle.internal.remote.internal.RemoteConnection
 import org.gradle.internal.remote.internal.TestConnection
 import org.gradle.internal.remote.internal.hub.protocol.ChannelIdentifier
@@ -30,6 +31,7 @@ import spock.lang.Timeout
 
 import java.util.concurrent.BlockingQueue
 import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executor
 import java.util.concurrent.LinkedBlockingQueue
 
 @Timeout(60)
@@ -283,6 +285,32 @@ class MessageHubTest extends ConcurrentSpec {
         instant.message1Received < instant.message2Received
     }
 
+    def "incoming messages are delivered by asynchronous connection without blocking a worker"() {
+        def connection = new MockAsyncConnection()
+        Dispatch<String> handler = Mock()
+
+        given:
+        hub.addHandler("channel", handler)
+        hub.addConnection(connection)
+
+        when:
+        def accepted = connection.receiver.messageReceived(new ChannelMessage(new ChannelIdentifier("channel"), "message 1"))
+        thread.blockUntil.message1Received
+
+        then:
+        accepted
+        1 * handler.dispatch("message 1") >> {
+            instant.message1Received
+        }
+        0 * _._
+
+        when:
+        accepted = connection.receiver.messageReceived(new EndOfStream())
+
+        then:
+        !accepted
+    }
+
     def "queued incoming messages are dispatched when handler added"() {
         def connection = new TestConnection()
         Dispatch<String> handler = Mock()
@@ -719,4 +747,27 @@ class MessageHubTest extends ConcurrentSpec {
             incoming.put(new EndOfStream())
         }
     }
+
+    private static class MockAsyncConnection implements AsyncRemoteConnection<InterHubMessage> {
+        AsyncRemoteConnection.Receiver<InterHubMessage> receiver
+
+        @Override
+        void receiveAsync(Executor executor, AsyncRemoteConnection.Receiver<InterHubMessage> receiver) {
+            this.receiver = receiver
+        }
+
+        void dispatch(InterHubMessage message) {
+        }
+
+        @Override
+        void flush() {
+        }
+
+        InterHubMessage receive() {
+            throw new UnsupportedOperationException()
+        }
+
+        void stop() {
+        }
+    }
 }
@@ -162,4 +162,55 @@ class MultiEndPointQueueTest extends AbstractQueueTest {
         messages.size() == 1
         messages[0] instanceof EndOfStream
     }
+
+    def "poll drains queued messages without waiting"() {
+        given:
+        def message1 = unicast()
+        def message2 = unicast()
+        def endpoint = queue.newEndpoint()
+        def action = Mock(Runnable)
+
+        and:
+        queue.dispatch(message1)
+        queue.dispatch(message2)
+
+        when:
+        def messages = []
+        def result = endpoint.poll(messages, action)
+
+        then:
+        result
+        messages == [message1, message2]
+        0 * action._
+    }
+
+    def "poll runs action when next message is forwarded to endpoint"() {
+        given:
+        def message = unicast()
+        def endpoint = queue.newEndpoint()
+        def action = Mock(Runnable)
+
+        when:
+        def messages = []
+        def result = endpoint.poll(messages, action)
+
+        then:
+        !result
+        messages.empty
+        0 * action._
+
+        when:
+        queue.dispatch(message)
+
+        then:
+        1 * action.run()
+
+        when:
+        queue.dispatch(unicast())
+        endpoint.poll(messages, action)
+
+        then:
+        messages == [message]
+        0 * action._
+    }
 }
@@ -17,9 +17,11 @@ package org.gradle.internal.remote.internal.inet
 
 import org.gradle.api.Action
 import org.gradle.internal.id.UUIDGenerator
+import org.gradle.internal.remote.internal.AsyncRemoteConnection
 import org.gradle.internal.remote.internal.ConnectCompletion
 import org.gradle.internal.remote.internal.ConnectException
 import org.gradle.internal.remote.internal.MessageIOException
+import org.gradle.internal.remote.internal.RemoteConnection
 import org.gradle.internal.serialize.BaseSerializerFactory
 import org.gradle.internal.serialize.Decoder
 import org.gradle.internal.serialize.Encoder
@@ -33,7 +35,9 @@ import spock.lang.Shared
 import spock.lang.Timeout
 import spock.lang.Unroll
 
+import java.io.StreamCorruptedException
 import java.nio.channels.SocketChannel
+import java.util.concurrent.LinkedBlockingQueue
 
 @Timeout(60)
 class TcpConnectorTest extends ConcurrentSpec {
@@ -223,6 +227,112 @@ class TcpConnectorTest extends ConcurrentSpec {
         acceptor?.stop()
     }
 
+    def "can send messages larger than the socket buffers"() {
+        def large = "x" * (3 * 1024 * 1024)
+
+        when:
+        def acceptor = incomingConnector.accept({ ConnectCompletion event ->
+            def connection = event.create(serializer)
+            connection.dispatch(large)
+            connection.dispatch("small")
+            connection.stop()
+        } as Action, false)
+
+        def connection = outgoingConnector.connect(acceptor.address).create(serializer)
+
+        then:
+        connection.receive() == large
+        connection.receive() == "small"
+        connection.receive() == null
+
+        cleanup:
+        connection?.stop()
+        acceptor?.stop()
+    }
+
+    def "can deliver received messages to receiver"() {
+        def receiver = Mock(AsyncRemoteConnection.Receiver)
+
+        when:
+        def acceptor = incomingConnector.accept({ ConnectCompletion event ->
+            def connection = event.create(serializer)
+            connection.dispatch("one")
+            connection.dispatch("two")
+            connection.stop()
+        } as Action, false)
+
+        def connection = outgoingConnector.connect(acceptor.address).create(serializer)
+        connection.receiveAsync(executor, receiver)
+        thread.blockUntil.end
+
+        then:
+        1 * receiver.messageReceived("one") >> true
+
+        then:
+        1 * receiver.messageReceived("two") >> true
+
+        then:
+        1 * receiver.endOfStream() >> { instant.end }
+        0 * receiver._
+
+        cleanup:
+        connection?.stop()
+        acceptor?.stop()
+    }
+
+    def "stops delivering received messages when receiver declines them"() {
+        def receiver = Mock(AsyncRemoteConnection.Receiver)
+
+        when:
+        def acceptor = incomingConnector.accept({ ConnectCompletion event ->
+            def connection = event.create(serializer)
+            connection.dispatch("one")
+            connection.dispatch("two")
+            connection.stop()
+            instant.closed
+        } as Action, false)
+
+        def connection = outgoingConnector.connect(acceptor.address).create(serializer)
+        connection.receiveAsync(executor, receiver)
+        thread.blockUntil.received
+        thread.blockUntil.closed
+        connection.stop()
+
+        then:
+        1 * receiver.messageReceived("one") >> {
+            instant.received
+            false
+        }
+        0 * receiver._
+
+        cleanup:
+        acceptor?.stop()
+    }
+
+    def "notifies receiver of end of stream when connection is stopped"() {
+        def receiver = Mock(AsyncRemoteConnection.Receiver)
+
+        when:
+        def acceptor = incomingConnector.accept({ ConnectCompletion event ->
+            instant.connected
+            thread.blockUntil.stopped
+            event.create(serializer).stop()
+        } as Action, false)
+
+        def connection = outgoingConnector.connect(acceptor.address).create(serializer)
+        connection.receiveAsync(executor, receiver)
+        thread.blockUntil.connected
+        connection.stop()
+        instant.stopped
+
+        then:
+        1 * receiver.endOfStream()
+        0 * receiver._
+
+        cleanup:
+        acceptor?.stop()
+    }
+
     def "returns null on failure to receive due to truncated input"() {
         given:
         def incomingSerializer = { Encoder encoder, String value ->
@@ -280,6 +390,36 @@ class TcpConnectorTest extends ConcurrentSpec {
         acceptor?.stop()
     }
 
+    def "fails to receive when peer sends a frame that is too large"() {
+        given:
+        def received = new LinkedBlockingQueue<RemoteConnection<String>>()
+        def action = { ConnectCompletion completion ->
+            received.add(completion.create(serializer))
+        } as Action
+
+        when:
+        def acceptor = incomingConnector.accept(action, false)
+        def socket = new Socket(acceptor.address.candidates[0], acceptor.address.port)
+        // Looks like an HTTP request, whose first 4 bytes decode to a frame length of more than 1GB
+        socket.outputStream.write("GET / HTTP/1.1\r\n\r\n".bytes)
+        socket.outputStream.flush()
+        def connection = received.take()
+        connection.receive()
+
+        then:
+        MessageIOException e = thrown()
+        def cause = e
+        while (cause.cause != null) {
+            cause = cause.cause
+        }
+        cause instanceof StreamCorruptedException
+
+        cleanup:
+        socket?.close()
+        connection?.stop()
+        acceptor?.stop()
+    }
+
     @Issue("GRADLE-2316")
     def "detects self connect when outgoing connection binds to same port"() {
         given:
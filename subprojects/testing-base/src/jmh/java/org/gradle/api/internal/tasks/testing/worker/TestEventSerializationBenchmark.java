@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor;
+import org.gradle.api.internal.tasks.testing.DefaultTestMethodDescriptor;
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.api.tasks.testing.TestResult;
+import org.gradle.internal.dispatch.MethodInvocation;
+import org.gradle.internal.id.CompositeIdGenerator;
+import org.gradle.internal.remote.internal.hub.DefaultMethodArgsSerializer;
+import org.gradle.internal.remote.internal.hub.JavaSerializationBackedMethodArgsSerializer;
+import org.gradle.internal.remote.internal.hub.MethodArgsSerializer;
+import org.gradle.internal.remote.internal.hub.MethodInvocationSerializer;
+import org.gradle.internal.serialize.ObjectReader;
+import org.gradle.internal.serialize.ObjectWriter;
+import org.gradle.internal.serialize.SerializerRegistry;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures how many {@link TestResultProcessor} messages per second can be written to and read back from a worker connection.
+ */
+@State(Scope.Benchmark)
+public class TestEventSerializationBenchmark {
+    private static final int TEST_COUNT = 100;
+    // Each test starts, writes some output and completes, and one in ten fails
+    private static final int MESSAGE_COUNT = 2 + TEST_COUNT * 3 + TEST_COUNT / 10;
+
+    MethodInvocationSerializer serializer;
+    List<MethodInvocation> messages;
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    @Setup
+    public void prepare() throws Exception {
+        ClassLoader classLoader = getClass().getClassLoader();
+        MethodArgsSerializer argsSerializer = new DefaultMethodArgsSerializer(Collections.<SerializerRegistry>singletonList(TestEventSerializer.create()), new JavaSerializationBackedMethodArgsSerializer(classLoader));
+        serializer = new MethodInvocationSerializer(classLoader, argsSerializer);
+
+        Method started = TestResultProcessor.class.getMethod("started", TestDescriptorInternal.class, TestStartEvent.class);
+        Method completed = TestResultProcessor.class.getMethod("completed", Object.class, TestCompleteEvent.class);
+        Method output = TestResultProcessor.class.getMethod("output", Object.class, TestOutputEvent.class);
+        Method failure = TestResultProcessor.class.getMethod("failure", Object.class, Throwable.class);
+
+        messages = new ArrayList<MethodInvocation>(MESSAGE_COUNT);
+        Object classId = new CompositeIdGenerator.CompositeId(1L, 1L);
+        messages.add(new MethodInvocation(started, new Object[]{new DefaultTestClassDescriptor(classId, "org.gradle.SomeTest"), new TestStartEvent(1000L)}));
+        Throwable testFailure = new AssertionError("expected:<1> but was:<2>");
+        for (int i = 0; i < TEST_COUNT; i++) {
+            Object testId = new CompositeIdGenerator.CompositeId(1L, (long) i + 2);
+            messages.add(new MethodInvocation(started, new Object[]{new DefaultTestMethodDescriptor(testId, "org.gradle.SomeTest", "test" + i), new TestStartEvent(1000L + i, classId)}));
+            messages.add(new MethodInvocation(output, new Object[]{testId, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "some output from test " + i + "\n")}));
+            if (i % 10 == 0) {
+                messages.add(new MethodInvocation(failure, new Object[]{testId, testFailure}));
+            }
+            messages.add(new MethodInvocation(completed, new Object[]{testId, new TestCompleteEvent(1001L + i, i % 10 == 0 ? TestResult.ResultType.FAILURE : null)}));
+        }
+        messages.add(new MethodInvocation(completed, new Object[]{classId, new TestCompleteEvent(2000L)}));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGE_COUNT)
+    public void write_and_read(Blackhole bh) throws Exception {
+        outputStream.reset();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+        ObjectWriter<MethodInvocation> writer = serializer.newWriter(encoder);
+        for (MethodInvocation message : messages) {
+            writer.write(message);
+        }
+        encoder.flush();
+
+        KryoBackedDecoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(outputStream.toByteArray()));
+        ObjectReader<MethodInvocation> reader = serializer.newReader(decoder);
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            bh.consume(reader.read());
+        }
+    }
+}
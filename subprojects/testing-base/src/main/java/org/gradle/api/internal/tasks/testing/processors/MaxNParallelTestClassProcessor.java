@@ -27,26 +27,38 @@ import org.gradle.internal.actor.ActorFactory;
 import org.gradle.internal.dispatch.DispatchException;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Manages a set of parallel TestClassProcessors. Uses a simple round-robin algorithm to assign test classes to
- * processors.
+ * Manages a set of parallel TestClassProcessors.
+ *
+ * <p>The processors are started while the test classes are being detected. Once detection is complete, the test classes are assigned longest first,
+ * each to the processor with the least estimated work assigned so far, using the durations of the test classes in a previous run.
+ * Test classes without a known duration are assumed to take the average known duration, which results in a round-robin assignment when no durations are known.</p>
  */
 public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     private final int maxProcessors;
     private final Factory<TestClassProcessor> factory;
     private final ActorFactory actorFactory;
+    private final Map<String, Long> previousClassDurations;
     private TestResultProcessor resultProcessor;
-    private int pos;
     private List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
     private List<Actor> actors = new ArrayList<Actor>();
+    private final List<TestClassRunInfo> pendingClasses = new ArrayList<TestClassRunInfo>();
     private Actor resultProcessorActor;
 
     public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory) {
+        this(maxProcessors, factory, actorFactory, Collections.<String, Long>emptyMap());
+    }
+
+    public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory, Map<String, Long> previousClassDurations) {
         this.maxProcessors = maxProcessors;
         this.factory = factory;
         this.actorFactory = actorFactory;
+        this.previousClassDurations = previousClassDurations;
     }
 
     @Override
@@ -58,27 +70,74 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
 
     @Override
     public void processTestClass(TestClassRunInfo testClass) {
-        TestClassProcessor processor;
         if (processors.size() < maxProcessors) {
-            processor = factory.create();
+            // Start the processor now, so that it starts up while the remaining test classes are detected
+            TestClassProcessor processor = factory.create();
             Actor actor = actorFactory.createActor(processor);
             processor = actor.getProxy(TestClassProcessor.class);
             actors.add(actor);
             processors.add(processor);
             processor.startProcessing(resultProcessor);
+        }
+        if (maxProcessors == 1) {
+            // Nothing to balance
+            processors.get(0).processTestClass(testClass);
         } else {
-            processor = processors.get(pos);
-            pos = (pos + 1) % processors.size();
+            pendingClasses.add(testClass);
         }
-        processor.processTestClass(testClass);
     }
 
     @Override
     public void stop() {
+        assignPendingClasses();
         try {
             CompositeStoppable.stoppable(processors).add(actors).add(resultProcessorActor).stop();
         } catch (DispatchException e) {
             throw UncheckedException.throwAsUncheckedException(e.getCause());
         }
     }
+
+    private void assignPendingClasses() {
+        if (pendingClasses.isEmpty()) {
+            return;
+        }
+        long knownDurations = 0;
+        int knownCount = 0;
+        for (TestClassRunInfo testClass : pendingClasses) {
+            Long duration = previousClassDurations.get(testClass.getTestClassName());
+            if (duration != null) {
+                knownDurations += duration;
+                knownCount++;
+            }
+        }
+        final long defaultDuration = knownCount == 0 ? 1 : Math.max(1, knownDurations / knownCount);
+        // Stable sort, so that test classes with the same estimate keep the order in which they were detected
+        Collections.sort(pendingClasses, new Comparator<TestClassRunInfo>() {
+            @Override
+            public int compare(TestClassRunInfo left, TestClassRunInfo right) {
+                long leftDuration = estimateDuration(left, defaultDuration);
+                long rightDuration = estimateDuration(right, defaultDuration);
+                return leftDuration > rightDuration ? -1 : leftDuration == rightDuration ? 0 : 1;
+            }
+        });
+
+        long[] assignedWork = new long[processors.size()];
+        for (TestClassRunInfo testClass : pendingClasses) {
+            int leastLoaded = 0;
+            for (int i = 1; i < assignedWork.length; i++) {
+                if (assignedWork[i] < assignedWork[leastLoaded]) {
+                    leastLoaded = i;
+                }
+            }
+            assignedWork[leastLoaded] += estimateDuration(testClass, defaultDuration);
+            processors.get(leastLoaded).processTestClass(testClass);
+        }
+        pendingClasses.clear();
+    }
+
+    private long estimateDuration(TestClassRunInfo testClass, long defaultDuration) {
+        Long duration = previousClassDurations.get(testClass.getTestClassName());
+        // Classes that took no measurable time still count, so that they are spread across the processors
+        return duration == null ? defaultDuration : Math.max(1, duration);
+    }
 }
@@ -74,11 +74,14 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         1 * actorFactory.createActor(processor1) >> actor1
         1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
         1 * asyncProcessor1.startProcessing(asyncResultProcessor)
-        1 * asyncProcessor1.processTestClass(test)
+        0 * asyncProcessor1.processTestClass(test)
 
         when:
         processor.stop()
 
+        then:
+        1 * asyncProcessor1.processTestClass(test)
+
         then:
         1 * asyncProcessor1.stop()
         1 * actor1.stop()
@@ -104,7 +107,6 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         1 * actorFactory.createActor(processor1) >> actor1
         1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
         1 * asyncProcessor1.startProcessing(asyncResultProcessor)
-        1 * asyncProcessor1.processTestClass(test)
 
         when:
         processor.processTestClass(test)
@@ -114,57 +116,108 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         1 * actorFactory.createActor(processor2) >> actor2
         1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
         1 * asyncProcessor2.startProcessing(asyncResultProcessor)
-        1 * asyncProcessor2.processTestClass(test)
 
         when:
         processor.stop()
 
+        then:
+        1 * asyncProcessor1.processTestClass(test)
+        1 * asyncProcessor2.processTestClass(test)
+
         then:
         1 * asyncProcessor1.stop()
         1 * asyncProcessor2.stop()
     }
 
-    def roundRobinsTestClassesToProcessors() {
-        TestClassRunInfo test = Mock()
-        TestClassProcessor processor1 = Mock()
-        TestClassProcessor processor2 = Mock()
-        TestClassProcessor asyncProcessor1 = Mock()
-        TestClassProcessor asyncProcessor2 = Mock()
-        Actor actor1 = Mock()
-        Actor actor2 = Mock()
+    def roundRobinsTestClassesToProcessorsWhenNoDurationsAreKnown() {
+        def tests = (1..4).collect { testClass("Test$it") }
+        def asyncProcessor1 = startsAsyncProcessor()
+        def asyncProcessor2 = startsAsyncProcessor()
 
         startProcessor()
+        tests.each { processor.processTestClass(it) }
 
         when:
-        processor.processTestClass(test)
+        processor.stop()
 
         then:
-        1 * factory.create() >> processor1
-        1 * actorFactory.createActor(processor1) >> actor1
-        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
-        1 * asyncProcessor1.startProcessing(asyncResultProcessor)
-        1 * asyncProcessor1.processTestClass(test)
+        1 * asyncProcessor1.processTestClass(tests[0])
+        1 * asyncProcessor2.processTestClass(tests[1])
+        1 * asyncProcessor1.processTestClass(tests[2])
+        1 * asyncProcessor2.processTestClass(tests[3])
+    }
+
+    def assignsLongestTestClassesFirstToLeastLoadedProcessor() {
+        def parallelProcessor = new MaxNParallelTestClassProcessor(2, factory, actorFactory, [Slow: 100L, Medium: 60L, Fast: 30L, Fastest: 10L])
+        def slow = testClass("Slow")
+        def medium = testClass("Medium")
+        def fast = testClass("Fast")
+        def fastest = testClass("Fastest")
+        def unknown = testClass("Unknown")
+        def asyncProcessor1 = startsAsyncProcessor()
+        def asyncProcessor2 = startsAsyncProcessor()
+
+        1 * actorFactory.createActor(resultProcessor) >> resultProcessorActor
+        1 * resultProcessorActor.getProxy(TestResultProcessor) >> asyncResultProcessor
+        parallelProcessor.startProcessing(resultProcessor)
+        [fastest, fast, unknown, medium, slow].each { parallelProcessor.processTestClass(it) }
 
         when:
-        processor.processTestClass(test)
+        parallelProcessor.stop()
 
         then:
-        1 * factory.create() >> processor2
-        1 * actorFactory.createActor(processor2) >> actor2
-        1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
-        1 * asyncProcessor2.startProcessing(asyncResultProcessor)
-        1 * asyncProcessor2.processTestClass(test)
+        1 * asyncProcessor1.processTestClass(slow)
+
+        then:
+        1 * asyncProcessor2.processTestClass(medium)
+
+        then:
+        // Unknown classes are estimated to take the average known duration
+        1 * asyncProcessor2.processTestClass(unknown)
+
+        then:
+        1 * asyncProcessor1.processTestClass(fast)
+
+        then:
+        1 * asyncProcessor2.processTestClass(fastest)
+    }
+
+    def dispatchesTestClassesImmediatelyWhenThereIsASingleProcessor() {
+        def singleProcessor = new MaxNParallelTestClassProcessor(1, factory, actorFactory, [Test2: 100L])
+        def test1 = testClass("Test1")
+        def test2 = testClass("Test2")
+        def asyncProcessor1 = startsAsyncProcessor()
+
+        1 * actorFactory.createActor(resultProcessor) >> resultProcessorActor
+        1 * resultProcessorActor.getProxy(TestResultProcessor) >> asyncResultProcessor
+        singleProcessor.startProcessing(resultProcessor)
 
         when:
-        processor.processTestClass(test)
+        singleProcessor.processTestClass(test1)
 
         then:
-        1 * asyncProcessor1.processTestClass(test)
+        1 * asyncProcessor1.processTestClass(test1)
 
         when:
-        processor.processTestClass(test)
+        singleProcessor.processTestClass(test2)
 
         then:
-        1 * asyncProcessor2.processTestClass(test)
+        1 * asyncProcessor1.processTestClass(test2)
+    }
+
+    private TestClassRunInfo testClass(String name) {
+        Stub(TestClassRunInfo) {
+            getTestClassName() >> name
+        }
+    }
+
+    private TestClassProcessor startsAsyncProcessor() {
+        TestClassProcessor processor = Mock()
+        TestClassProcessor asyncProcessor = Mock()
+        Actor actor = Mock()
+        1 * factory.create() >> processor
+        1 * actorFactory.createActor(processor) >> actor
+        1 * actor.getProxy(TestClassProcessor) >> asyncProcessor
+        return asyncProcessor
     }
 }
@@ -74,6 +74,23 @@ public class DaemonForkOptions {
                 && getNormalizedSharedPackages(sharedPackages).containsAll(getNormalizedSharedPackages(other.sharedPackages));
     }
 
+    /**
+     * Returns how closely these options match the given options, from 0 for nothing in common to 1 for the same classpath, JVM arguments and shared packages.
+     * Used to choose between daemons that are all compatible with the given options.
+     */
+    public double getOverlapWith(DaemonForkOptions other) {
+        return (overlap(getNormalizedClasspath(classpath), getNormalizedClasspath(other.classpath))
+                + overlap(getNormalizedJvmArgs(jvmArgs), getNormalizedJvmArgs(other.jvmArgs))
+                + overlap(getNormalizedSharedPackages(sharedPackages), getNormalizedSharedPackages(other.sharedPackages))) / 3;
+    }
+
+    private static double overlap(Set<?> left, Set<?> right) {
+        if (left.isEmpty() && right.isEmpty()) {
+            return 1;
+        }
+        return (double) Sets.intersection(left, right).size() / Sets.union(left, right).size();
+    }
+
     // one way to merge fork options, good for current use case
     public DaemonForkOptions mergeWith(DaemonForkOptions other) {
         String mergedMinHeapSize = mergeHeapSize(minHeapSize, other.minHeapSize);
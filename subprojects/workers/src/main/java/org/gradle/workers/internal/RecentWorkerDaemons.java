@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.workers.internal;
+
+import com.google.common.collect.ImmutableList;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Remembers how the worker daemons used by the most recent build session were started, so that the next session can start equivalent daemons before
+ * any work is submitted to them.
+ *
+ * <p>The number of daemons to start ahead of time is set with the {@value #WARM_DAEMONS_PROPERTY_KEY} system property, and defaults to none.</p>
+ */
+@ThreadSafe
+public class RecentWorkerDaemons {
+    public static final String WARM_DAEMONS_PROPERTY_KEY = "org.gradle.workers.internal.warm-daemons";
+
+    private final Object lock = new Object();
+    private List<DaemonStart> daemons = ImmutableList.of();
+
+    /**
+     * Records the daemons used by a build session, most recently used first. A session that used no daemons leaves the previous record in place.
+     */
+    public void sessionCompleted(List<DaemonStart> mostRecentlyUsedFirst) {
+        if (mostRecentlyUsedFirst.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            daemons = ImmutableList.copyOf(mostRecentlyUsedFirst);
+        }
+    }
+
+    /**
+     * Returns the daemons to start at the beginning of a build session, most recently used first.
+     */
+    public List<DaemonStart> getDaemonsToWarm() {
+        int count = Integer.getInteger(WARM_DAEMONS_PROPERTY_KEY, 0);
+        synchronized (lock) {
+            return daemons.subList(0, Math.max(0, Math.min(count, daemons.size())));
+        }
+    }
+
+    /**
+     * The parameters a worker daemon was started with.
+     */
+    public static class DaemonStart {
+        private final Class<? extends WorkerProtocol<?>> implementationClass;
+        private final File workingDir;
+        private final DaemonForkOptions forkOptions;
+
+        public DaemonStart(Class<? extends WorkerProtocol<?>> implementationClass, File workingDir, DaemonForkOptions forkOptions) {
+            this.implementationClass = implementationClass;
+            this.workingDir = workingDir;
+            this.forkOptions = forkOptions;
+        }
+
+        public Class<? extends WorkerProtocol<?>> getImplementationClass() {
+            return implementationClass;
+        }
+
+        public File getWorkingDir() {
+            return workingDir;
+        }
+
+        public DaemonForkOptions getForkOptions() {
+            return forkOptions;
+        }
+    }
+}
@@ -66,6 +66,10 @@ class WorkerDaemonClient<T extends WorkSpec> implements Worker<T>, Stoppable {
         return forkOptions.isCompatibleWith(required);
     }
 
+    public double getOverlapWith(DaemonForkOptions required) {
+        return forkOptions.getOverlapWith(required);
+    }
+
     JvmMemoryStatus getJvmMemoryStatus() {
         return workerProcess.getJvmMemoryStatus();
     }
@@ -19,14 +19,18 @@ package org.gradle.workers.internal;
 import org.gradle.api.Transformer;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.concurrent.CompositeStoppable;
 import org.gradle.util.CollectionUtils;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 public class WorkerDaemonClientsManager {
 
@@ -35,6 +39,8 @@ public class WorkerDaemonClientsManager {
     private final Object lock = new Object();
     private final List<WorkerDaemonClient> allClients = new ArrayList<WorkerDaemonClient>();
     private final List<WorkerDaemonClient> idleClients = new ArrayList<WorkerDaemonClient>();
+    private final Map<WorkerDaemonClient, RecentWorkerDaemons.DaemonStart> daemonStarts = new IdentityHashMap<WorkerDaemonClient, RecentWorkerDaemons.DaemonStart>();
+    private final List<DaemonForkOptions> startingIdleClients = new ArrayList<DaemonForkOptions>();
 
     private WorkerDaemonStarter workerDaemonStarter;
 
@@ -42,22 +48,55 @@ public class WorkerDaemonClientsManager {
         this.workerDaemonStarter = workerDaemonStarter;
     }
 
+    /**
+     * Reserves a compatible idle client. When there is none, but a compatible client is being started by {@link #startIdleClient}, waits for that client
+     * rather than returning {@code null}, so that the caller does not start another daemon alongside it.
+     */
     // TODO - should supply and check for the same parameters as passed to reserveNewClient()
     public <T extends WorkSpec> WorkerDaemonClient<T> reserveIdleClient(DaemonForkOptions forkOptions) {
-        return reserveIdleClient(forkOptions, idleClients);
+        synchronized (lock) {
+            while (true) {
+                WorkerDaemonClient client = reserveIdleClient(forkOptions, idleClients);
+                if (client != null || !isStartingCompatibleClient(forkOptions)) {
+                    return client;
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+        }
+    }
+
+    private boolean isStartingCompatibleClient(DaemonForkOptions forkOptions) {
+        for (DaemonForkOptions startingForkOptions : startingIdleClients) {
+            if (startingForkOptions.isCompatibleWith(forkOptions)) {
+                return true;
+            }
+        }
+        return false;
     }
 
+    /**
+     * Reserves the compatible client whose fork options overlap the most with the given options, so that daemons with a broader classpath or extra JVM
+     * arguments remain available for the work that needs them. The first such client is taken when several match equally well.
+     */
     WorkerDaemonClient reserveIdleClient(DaemonForkOptions forkOptions, List<WorkerDaemonClient> clients) {
         synchronized (lock) {
-            Iterator<WorkerDaemonClient> it = clients.iterator();
-            while (it.hasNext()) {
-                WorkerDaemonClient candidate = it.next();
+            int bestIndex = -1;
+            double bestOverlap = -1;
+            for (int i = 0; i < clients.size(); i++) {
+                WorkerDaemonClient candidate = clients.get(i);
                 if (candidate.isCompatibleWith(forkOptions)) {
-                    it.remove();
-                    return candidate;
+                    double overlap = candidate.getOverlapWith(forkOptions);
+                    if (overlap > bestOverlap) {
+                        bestIndex = i;
+                        bestOverlap = overlap;
+                    }
                 }
             }
-            return null;
+            return bestIndex < 0 ? null : clients.remove(bestIndex);
         }
     }
 
@@ -66,13 +105,80 @@ public class WorkerDaemonClientsManager {
         WorkerDaemonClient client = workerDaemonStarter.startDaemon(workerProtocolImplementationClass, workingDir, forkOptions);
         synchronized (lock) {
             allClients.add(client);
+            daemonStarts.put(client, new RecentWorkerDaemons.DaemonStart(workerProtocolImplementationClass, workingDir, forkOptions));
         }
         return client;
     }
 
+    /**
+     * Starts a new client using the given executor, and makes it available as an idle client once it has started.
+     */
+    public <T extends WorkSpec> void startIdleClient(final Class<? extends WorkerProtocol<T>> workerProtocolImplementationClass, final File workingDir, final DaemonForkOptions forkOptions, Executor executor) {
+        synchronized (lock) {
+            startingIdleClients.add(forkOptions);
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    WorkerDaemonClient client = null;
+                    try {
+                        client = reserveNewClient(workerProtocolImplementationClass, workingDir, forkOptions);
+                    } catch (Exception e) {
+                        LOGGER.info("Could not start worker daemon ahead of time with fork options {}.", forkOptions, e);
+                    } finally {
+                        idleClientStarted(forkOptions, client);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            idleClientStarted(forkOptions, null);
+            throw e;
+        }
+    }
+
+    private void idleClientStarted(DaemonForkOptions forkOptions, WorkerDaemonClient client) {
+        synchronized (lock) {
+            startingIdleClients.remove(forkOptions);
+            if (client != null) {
+                release(client);
+            }
+            lock.notifyAll();
+        }
+    }
+
     public void release(WorkerDaemonClient client) {
         synchronized (lock) {
             idleClients.add(client);
+            // Keep all clients in order of last use
+            if (allClients.remove(client)) {
+                allClients.add(client);
+            }
+        }
+    }
+
+    /**
+     * Returns all clients, whether idle or in use.
+     */
+    public List<WorkerDaemonClient> getAllClients() {
+        synchronized (lock) {
+            return new ArrayList<WorkerDaemonClient>(allClients);
+        }
+    }
+
+    /**
+     * Returns how the daemons that have run work were started, most recently used first.
+     */
+    public List<RecentWorkerDaemons.DaemonStart> getRecentlyUsedDaemons() {
+        synchronized (lock) {
+            List<RecentWorkerDaemons.DaemonStart> daemons = new ArrayList<RecentWorkerDaemons.DaemonStart>();
+            for (WorkerDaemonClient client : allClients) {
+                if (client.getUses() > 0 && daemonStarts.containsKey(client)) {
+                    daemons.add(daemonStarts.get(client));
+                }
+            }
+            Collections.reverse(daemons);
+            return daemons;
         }
     }
 
@@ -82,6 +188,8 @@ public class WorkerDaemonClientsManager {
             CompositeStoppable.stoppable(allClients).stop();
             LOGGER.info("Stopped {} worker daemon(s).", allClients.size());
             allClients.clear();
+            idleClients.clear();
+            daemonStarts.clear();
         }
     }
 
@@ -102,6 +210,9 @@ public class WorkerDaemonClientsManager {
             if (!clientsToStop.isEmpty()) {
                 idleClients.removeAll(clientsToStop);
                 allClients.removeAll(clientsToStop);
+                for (WorkerDaemonClient client : clientsToStop) {
+                    daemonStarts.remove(client);
+                }
                 LOGGER.debug("Stopping {} worker daemon(s).", clientsToStop.size());
                 CompositeStoppable.stoppable(clientsToStop).stop();
                 LOGGER.info("Stopped {} worker daemon(s).", clientsToStop.size());
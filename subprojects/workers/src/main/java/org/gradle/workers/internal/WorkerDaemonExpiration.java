@@ -26,10 +26,19 @@ import org.gradle.process.internal.health.memory.MemoryHolder;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Stops idle worker daemons to release memory, either when the OS runs low on memory or to keep all worker daemons within the budget
+ * set with the {@value #MEMORY_BUDGET_PROPERTY_KEY} system property.
+ *
+ * <p>The budget is best-effort. Only idle daemons are stopped to make room, so a new daemon is still started when the daemons that
+ * are running work already use the whole budget. Callers that start daemons at the same time also check the budget against the same
+ * daemons, without counting the daemons the other callers are about to start, so together they can exceed it.</p>
+ */
 public class WorkerDaemonExpiration implements MemoryHolder {
 
     private static final Logger LOGGER = Logging.getLogger(WorkerDaemonExpiration.class);
     private static final String DISABLE_EXPIRATION_PROPERTY_KEY = "org.gradle.workers.internal.disable-daemons-expiration";
+    public static final String MEMORY_BUDGET_PROPERTY_KEY = "org.gradle.workers.internal.max-daemons-memory";
 
     private final WorkerDaemonClientsManager clientsManager;
     private final long osTotalMemory;
@@ -54,6 +63,73 @@ public class WorkerDaemonExpiration implements MemoryHolder {
         return selector.getReleasedBytes();
     }
 
+    /**
+     * Stops idle daemons, least used first, until a new daemon with the given fork options fits within the memory budget shared by all worker daemons.
+     * Does nothing when no budget is set with the {@value #MEMORY_BUDGET_PROPERTY_KEY} system property. Does not prevent the new daemon from
+     * starting when stopping the idle daemons does not release enough memory.
+     */
+    public void makeRoomFor(DaemonForkOptions forkOptions) {
+        long budget = getMemoryBudget();
+        if (budget < 0) {
+            return;
+        }
+        long required = getEstimatedMemoryUsage(forkOptions);
+        for (WorkerDaemonClient client : clientsManager.getAllClients()) {
+            required += getMemoryUsage(client);
+        }
+        if (required > budget) {
+            LOGGER.debug("Worker Daemons need {} MB more than the budget of {} MB, will attempt to release it", (required - budget) / 1024 / 1024, budget / 1024 / 1024);
+            SimpleMemoryExpirationSelector selector = new SimpleMemoryExpirationSelector(required - budget);
+            clientsManager.selectIdleClientsToStop(selector);
+            if (selector.getReleasedBytes() < required - budget) {
+                LOGGER.info("Worker Daemons will use {} MB more than the budget of {} MB, as not enough idle daemons could be stopped.",
+                    (required - budget - selector.getReleasedBytes()) / 1024 / 1024, budget / 1024 / 1024);
+            }
+        }
+    }
+
+    /**
+     * Returns the memory budget shared by all worker daemons in bytes, or -1 when there is none.
+     */
+    public long getMemoryBudget() {
+        return MemoryAmount.parseNotation(System.getProperty(MEMORY_BUDGET_PROPERTY_KEY));
+    }
+
+    /**
+     * Returns the memory a daemon started with the given fork options is expected to use.
+     */
+    public long getEstimatedMemoryUsage(DaemonForkOptions forkOptions) {
+        long parsed = MemoryAmount.parseNotation(forkOptions.getMaxHeapSize());
+        if (parsed != -1) {
+            // From fork options
+            return parsed;
+        }
+
+        // If we don't know what the max heap is, approximate it based on OS total memory
+        // according to JVM documentation
+        if (osTotalMemory != -1) {
+            return new MaximumHeapHelper().getDefaultMaximumHeapSize(osTotalMemory);
+        }
+
+        // If we get here, we have no idea how much memory the worker is using
+        return 0;
+    }
+
+    private long getMemoryUsage(WorkerDaemonClient<?> client) {
+        // prefer to use the actual memory usage reported by the worker
+        try {
+            return client.getJvmMemoryStatus().getCommittedMemory();
+        } catch (UnsupportedOperationException e) {
+            // This means the client does not support reporting jvm memory info
+        } catch (IllegalStateException e) {
+            // This means the client has not reported memory usage yet
+        }
+
+        // if the worker has not reported memory usage yet for some reason, or does not support it,
+        // use the max heap as an approximation
+        return getEstimatedMemoryUsage(client.getForkOptions());
+    }
+
     /**
      * Simple implementation of memory based expiration.
      *
@@ -90,34 +166,5 @@ public class WorkerDaemonExpiration implements MemoryHolder {
             }
             return toExpire;
         }
-
-        private long getMemoryUsage(WorkerDaemonClient<?> idleClient) {
-            // prefer to use the actual memory usage reported by the worker
-            try {
-                return idleClient.getJvmMemoryStatus().getCommittedMemory();
-            } catch (UnsupportedOperationException e) {
-                // This means the client does not support reporting jvm memory info
-            } catch (IllegalStateException e) {
-                // This means the client has not reported memory usage yet
-            }
-
-            // if the worker has not reported memory usage yet for some reason, or does not support it,
-            // use the max heap as an approximation
-            String forkOptionsMaxHeapSize = idleClient.getForkOptions().getMaxHeapSize();
-            long parsed = MemoryAmount.parseNotation(forkOptionsMaxHeapSize);
-            if (parsed != -1) {
-                // From fork options
-                return parsed;
-            }
-
-            // If we don't know what the max heap is, approximate it based on OS total memory
-            // according to JVM documentation
-            if (osTotalMemory != -1) {
-                return new MaximumHeapHelper().getDefaultMaximumHeapSize(osTotalMemory);
-            }
-
-            // If we get here, we have no idea how much memory the worker is using
-            return 0;
-        }
     }
 }
@@ -17,7 +17,9 @@
 package org.gradle.workers.internal;
 
 import net.jcip.annotations.ThreadSafe;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
 import org.gradle.internal.operations.BuildOperationWorkerRegistry;
 import org.gradle.internal.operations.BuildOperationWorkerRegistry.Operation;
 import org.gradle.internal.progress.BuildOperationExecutor;
@@ -25,6 +27,7 @@ import org.gradle.process.internal.health.memory.MemoryManager;
 import org.gradle.process.internal.health.memory.TotalPhysicalMemoryProvider;
 
 import java.io.File;
+import java.util.List;
 
 /**
  * Controls the lifecycle of the worker daemon and provides access to it.
@@ -36,14 +39,46 @@ public class WorkerDaemonFactory implements WorkerFactory, Stoppable {
     private final WorkerDaemonExpiration workerDaemonExpiration;
     private final BuildOperationWorkerRegistry buildOperationWorkerRegistry;
     private final BuildOperationExecutor buildOperationExecutor;
+    private final RecentWorkerDaemons recentWorkerDaemons;
+    private final StoppableExecutor warmUpExecutor;
 
     public WorkerDaemonFactory(WorkerDaemonClientsManager clientsManager, MemoryManager memoryManager, BuildOperationWorkerRegistry buildOperationWorkerRegistry, BuildOperationExecutor buildOperationExecutor) {
+        this(clientsManager, memoryManager, buildOperationWorkerRegistry, buildOperationExecutor, null, null);
+    }
+
+    public WorkerDaemonFactory(WorkerDaemonClientsManager clientsManager, MemoryManager memoryManager, BuildOperationWorkerRegistry buildOperationWorkerRegistry, BuildOperationExecutor buildOperationExecutor,
+                               RecentWorkerDaemons recentWorkerDaemons, ExecutorFactory executorFactory) {
         this.clientsManager = clientsManager;
         this.memoryManager = memoryManager;
         this.workerDaemonExpiration = new WorkerDaemonExpiration(clientsManager, getTotalPhysicalMemory());
         memoryManager.addMemoryHolder(workerDaemonExpiration);
         this.buildOperationWorkerRegistry = buildOperationWorkerRegistry;
         this.buildOperationExecutor = buildOperationExecutor;
+        this.recentWorkerDaemons = recentWorkerDaemons;
+        List<RecentWorkerDaemons.DaemonStart> daemonsToWarm = recentWorkerDaemons == null ? null : recentWorkerDaemons.getDaemonsToWarm();
+        if (daemonsToWarm != null && !daemonsToWarm.isEmpty()) {
+            this.warmUpExecutor = executorFactory.create("Worker daemon warm up");
+            startWarmDaemons(daemonsToWarm);
+        } else {
+            this.warmUpExecutor = null;
+        }
+    }
+
+    /**
+     * Starts daemons used by the previous build session in the background and makes them available as idle daemons, as many as fit within the memory
+     * budget. Work that needs a compatible daemon while one of them is still starting waits for it rather than starting another daemon.
+     */
+    @SuppressWarnings("unchecked")
+    private void startWarmDaemons(List<RecentWorkerDaemons.DaemonStart> daemons) {
+        long budget = workerDaemonExpiration.getMemoryBudget();
+        long required = 0;
+        for (RecentWorkerDaemons.DaemonStart daemon : daemons) {
+            required += workerDaemonExpiration.getEstimatedMemoryUsage(daemon.getForkOptions());
+            if (budget >= 0 && required > budget) {
+                break;
+            }
+            clientsManager.startIdleClient((Class) daemon.getImplementationClass(), daemon.getWorkingDir(), daemon.getForkOptions(), warmUpExecutor);
+        }
     }
 
     @Override
@@ -52,6 +87,7 @@ public class WorkerDaemonFactory implements WorkerFactory, Stoppable {
             public DefaultWorkResult execute(T spec, Operation parentWorkerOperation, BuildOperationExecutor.Operation parentBuildOperation) {
                 WorkerDaemonClient<T> client = clientsManager.reserveIdleClient(forkOptions);
                 if (client == null) {
+                    workerDaemonExpiration.makeRoomFor(forkOptions);
                     client = clientsManager.reserveNewClient(workerImplementationClass, workingDir, forkOptions);
                 }
                 try {
@@ -70,6 +106,12 @@ public class WorkerDaemonFactory implements WorkerFactory, Stoppable {
 
     @Override
     public void stop() {
+        if (warmUpExecutor != null) {
+            warmUpExecutor.stop();
+        }
+        if (recentWorkerDaemons != null) {
+            recentWorkerDaemons.sessionCompleted(clientsManager.getRecentlyUsedDaemons());
+        }
         clientsManager.stop();
         memoryManager.removeMemoryHolder(workerDaemonExpiration);
     }
@@ -173,4 +173,22 @@ class DaemonForkOptionsTest extends Specification {
         settings1.isCompatibleWith(settings2)
         !settings1.isCompatibleWith(settings3)
     }
+
+    def "overlaps completely with same settings"() {
+        def settings1 = new DaemonForkOptions("128m", "1g", ["-server", "-esa"], [new File("lib/lib1.jar"), new File("lib/lib2.jar")], ["foo.bar"])
+        def settings2 = new DaemonForkOptions("256m", "2g", ["-esa", "-server"], [new File("lib/lib2.jar"), new File("lib/lib1.jar")], ["foo.bar"])
+
+        expect:
+        settings1.getOverlapWith(settings2) == 1
+    }
+
+    def "overlaps less when classpath, jvm args or shared packages differ"() {
+        def required = new DaemonForkOptions(null, null, ["-server"], [new File("lib/lib1.jar")], ["foo.bar"])
+        def extraClasspath = new DaemonForkOptions(null, null, ["-server"], [new File("lib/lib1.jar"), new File("lib/lib2.jar")], ["foo.bar"])
+        def extraClasspathAndArgs = new DaemonForkOptions(null, null, ["-server", "-esa"], [new File("lib/lib1.jar"), new File("lib/lib2.jar")], ["foo.bar"])
+
+        expect:
+        extraClasspath.getOverlapWith(required) == (0.5d + 1 + 1) / 3
+        extraClasspathAndArgs.getOverlapWith(required) < extraClasspath.getOverlapWith(required)
+    }
 }
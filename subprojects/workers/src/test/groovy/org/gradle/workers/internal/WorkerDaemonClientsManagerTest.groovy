@@ -20,6 +20,9 @@ import org.gradle.api.Transformer
 import org.gradle.util.ConcurrentSpecification
 import spock.lang.Subject
 
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
 class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
 
     def workingDir = new File("some-dir")
@@ -97,6 +100,56 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
         manager.reserveIdleClient(options) == client
     }
 
+    def "waits for a compatible client that is being started instead of reserving none"() {
+        def client = Stub(WorkerDaemonClient) { isCompatibleWith(_) >> true }
+        def daemonStarted = new CountDownLatch(1)
+        def clientReserved = new CountDownLatch(1)
+        def reserved = null
+        options.isCompatibleWith(_) >> true
+        starter.startDaemon(serverImpl.class, workingDir, options) >> {
+            daemonStarted.await()
+            client
+        }
+
+        when:
+        manager.startIdleClient(serverImpl.class, workingDir, options, executor)
+        start {
+            reserved = manager.reserveIdleClient(options)
+            clientReserved.countDown()
+        }
+
+        then:
+        !clientReserved.await(200, TimeUnit.MILLISECONDS)
+
+        when:
+        daemonStarted.countDown()
+        finished()
+
+        then:
+        reserved == client
+    }
+
+    def "does not wait for a client that is being started when it is not compatible"() {
+        def client = Stub(WorkerDaemonClient)
+        def daemonStarted = new CountDownLatch(1)
+        def otherOptions = Stub(DaemonForkOptions)
+        options.isCompatibleWith(_) >> false
+        starter.startDaemon(serverImpl.class, workingDir, options) >> {
+            daemonStarted.await()
+            client
+        }
+
+        when:
+        manager.startIdleClient(serverImpl.class, workingDir, options, executor)
+
+        then:
+        manager.reserveIdleClient(otherOptions) == null
+
+        cleanup:
+        daemonStarted.countDown()
+        finished()
+    }
+
     def "prefers to stop less frequently used idle clients when releasing memory"() {
         def client1 = Mock(WorkerDaemonClient) { _ * getUses() >> 5 }
         def client2 = Mock(WorkerDaemonClient) { _ * getUses() >> 1 }
@@ -149,4 +202,40 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
         0 * client2.stop()
         1 * client3.stop()
     }
+
+    def "reserves the compatible idle client with the most overlapping fork options"() {
+        def noMatch = Stub(WorkerDaemonClient) { isCompatibleWith(_) >> false; getOverlapWith(_) >> 1 }
+        def broadMatch = Stub(WorkerDaemonClient) { isCompatibleWith(_) >> true; getOverlapWith(_) >> 0.5 }
+        def closeMatch = Stub(WorkerDaemonClient) { isCompatibleWith(_) >> true; getOverlapWith(_) >> 0.9 }
+        def otherCloseMatch = Stub(WorkerDaemonClient) { isCompatibleWith(_) >> true; getOverlapWith(_) >> 0.9 }
+        def input = [noMatch, broadMatch, closeMatch, otherCloseMatch]
+
+        expect:
+        manager.reserveIdleClient(options, input) == closeMatch
+        input == [noMatch, broadMatch, otherCloseMatch]
+    }
+
+    def "reports daemons that have run work, most recently used first"() {
+        def client1 = Stub(WorkerDaemonClient) { getUses() >> 1 }
+        def client2 = Stub(WorkerDaemonClient) { getUses() >> 1 }
+        def unused = Stub(WorkerDaemonClient) { getUses() >> 0 }
+        def options1 = Stub(DaemonForkOptions)
+        def options2 = Stub(DaemonForkOptions)
+        starter.startDaemon(serverImpl.class, workingDir, options1) >> client1
+        starter.startDaemon(serverImpl.class, workingDir, options2) >> client2
+        starter.startDaemon(serverImpl.class, workingDir, options) >> unused
+
+        when:
+        manager.reserveNewClient(serverImpl.class, workingDir, options1)
+        manager.reserveNewClient(serverImpl.class, workingDir, options2)
+        manager.reserveNewClient(serverImpl.class, workingDir, options)
+        manager.release(client2)
+        manager.release(client1)
+        def daemons = manager.recentlyUsedDaemons
+
+        then:
+        daemons*.forkOptions == [options1, options2]
+        daemons*.implementationClass == [serverImpl.class, serverImpl.class]
+        daemons*.workingDir == [workingDir, workingDir]
+    }
 }
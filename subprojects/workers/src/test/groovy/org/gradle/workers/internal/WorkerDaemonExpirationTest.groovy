@@ -20,11 +20,16 @@ import org.gradle.internal.jvm.Jvm
 import org.gradle.process.internal.health.memory.JvmMemoryStatus
 import org.gradle.process.internal.health.memory.MaximumHeapHelper
 import org.gradle.process.internal.health.memory.MemoryAmount
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
 import spock.lang.Specification
 
 class WorkerDaemonExpirationTest extends Specification {
     static final int OS_MEMORY_GB = 6
 
+    @Rule
+    SetSystemProperties systemProperties = new SetSystemProperties()
+
     def workingDir = new File("some-dir")
     def defaultOptions = new DaemonForkOptions(null, null, ['default-options'])
     def oneGbOptions = new DaemonForkOptions('1g', '1g', ['one-gb-options'])
@@ -186,6 +191,52 @@ class WorkerDaemonExpirationTest extends Specification {
         released == new MaximumHeapHelper().getDefaultMaximumHeapSize(MemoryAmount.ofGigaBytes(OS_MEMORY_GB).bytes)
     }
 
+    def "expires idle worker daemons to keep all worker daemons within the memory budget"() {
+        given:
+        System.setProperty(WorkerDaemonExpiration.MEMORY_BUDGET_PROPERTY_KEY, "6g")
+        def client1 = reserveNewClient(twoGbOptions)
+        def client2 = reserveNewClient(oneGbOptions)
+        def busy = reserveNewClient(twoGbOptions)
+
+        and:
+        clientsManager.release(client1)
+        clientsManager.release(client2)
+
+        when:
+        expiration.makeRoomFor(twoGbOptions)
+
+        then:
+        1 * client1.stop()
+        0 * client2.stop()
+        0 * busy.stop()
+    }
+
+    def "does not expire worker daemons when the new daemon fits within the memory budget"() {
+        given:
+        System.setProperty(WorkerDaemonExpiration.MEMORY_BUDGET_PROPERTY_KEY, "6g")
+        def client = reserveNewClient(threeGbOptions)
+        clientsManager.release(client)
+
+        when:
+        expiration.makeRoomFor(threeGbOptions)
+
+        then:
+        0 * client.stop()
+    }
+
+    def "does not expire worker daemons when there is no memory budget"() {
+        given:
+        def client = reserveNewClient(threeGbOptions)
+        clientsManager.release(client)
+
+        when:
+        expiration.makeRoomFor(threeGbOptions)
+        expiration.makeRoomFor(threeGbOptions)
+
+        then:
+        0 * client.stop()
+    }
+
     private WorkerDaemonClient reserveNewClient(DaemonForkOptions forkOptions) {
         return clientsManager.reserveNewClient(WorkerDaemonServer, workingDir, forkOptions)
     }